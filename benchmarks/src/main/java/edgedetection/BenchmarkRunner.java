@@ -0,0 +1,27 @@
+package edgedetection;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Klasa uruchamiająca testy JMH z profilerem GC, który dla każdego testu raportuje m.in. gc.alloc.rate.norm,
+ * czyli liczbę bajtów zaalokowanych na jedno wywołanie. Przyjmuje te same argumenty co org.openjdk.jmh.Main.
+ * @author Aneta Bień, Anna Plęs
+ */
+public class BenchmarkRunner {
+
+    /**
+     * @param args argumenty JMH, np. "StageBenchmark -p size=VGA -rf json"
+     * @throws Exception błąd wykonania testów lub niepoprawne argumenty
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+    }
+}
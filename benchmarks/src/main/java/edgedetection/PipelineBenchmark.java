@@ -0,0 +1,234 @@
+package edgedetection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Testy wydajności pełnych potoków: algorytmu Canny'ego i filtrów masek, od obrazu wejściowego do mapy krawędzi
+ * oraz do zakodowanego pliku, bez zapisu na dysk: JPEG, tak jak w metodach detectEdges, oraz formaty bezstratne
+ * @author Aneta Bień, Anna Plęs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class PipelineBenchmark {
+
+    @Param({"VGA", "12MP", "50MP"})
+    public String size;
+
+    /** Implementacja pętli splotu; każda kombinacja parametrów działa w osobnej JVM, więc wybór jest ustalany w setup */
+    @Param({"vector", "scalar"})
+    public String backend;
+
+    @Param({"1", "8"})
+    public int parallelism;
+
+    private BufferedImage image;
+    private EdgeDetection edgeDetection;
+    /** Detekcja z pamięcią podręczną zawierającą już wynik obrazu testowego, więc każde wywołanie jest trafieniem */
+    private EdgeDetection cachedEdgeDetection;
+    /** Mapa wyniku nadpisywana przez warianty Reused, które po rozgrzaniu nie alokują tablic pikseli */
+    private EdgeMap reuse;
+    /** Sekwencja klatek algorytmu Canny'ego i klatka różniąca się od obrazu testowego jednym małym kwadratem */
+    private CannySequence sequence;
+    private BufferedImage movedFrame;
+    private boolean moved;
+
+    /** Wszystkie filtry masek, liczone jednym wywołaniem lub osobno */
+    private static final List<String> MASK_FILTERS = List.of(EdgeDetection.VERTICAL, EdgeDetection.HORIZONTAL,
+            EdgeDetection.SOBEL_VERTICAL, EdgeDetection.SOBEL_HORIZONTAL, EdgeDetection.SCHARR_VERTICAL,
+            EdgeDetection.SCHARR_HORIZONTAL);
+
+    /** Koder domyślnego miejsca zapisu metod detectEdges */
+    private static final EdgeEncoder JPEG = EdgeEncoders.imageIO("jpg");
+    private static final EdgeEncoder PGM = EdgeEncoders.pgm();
+    private static final EdgeEncoder PACKED_BITS = EdgeEncoders.packedBits();
+    private static final EdgeEncoder PNG = EdgeEncoders.png(EdgeEncoders.DEFAULT_PNG_COMPRESSION);
+
+    @Setup
+    public void setup() {
+        System.setProperty("edgedetection.backend", backend);
+        image = SyntheticImages.create(size);
+        edgeDetection = new EdgeDetection();
+        cachedEdgeDetection = new EdgeDetection(FilterRegistry.standard(),
+                new ResultCache(ResultCache.DEFAULT_MAX_BYTES));
+        cannyComputeEdgesCached();
+        sequence = new CannySequence(EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD,
+                CannySequence.DEFAULT_TILE_SIZE, 0, parallelism);
+        movedFrame = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        Graphics2D graphics = movedFrame.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(image.getWidth() / 3, image.getHeight() / 3, 48, 48);
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public EdgeMap cannyComputeEdges() {
+        return edgeDetection.computeEdges(image, EdgeDetection.CANNY_EDGE_DETECTION,
+                EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD, parallelism);
+    }
+
+    @Benchmark
+    public EdgeMap cannyComputeEdgesFixedPoint() {
+        return new Canny(EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD, Canny.Arithmetic.FIXED_POINT)
+                .computeEdges(image, parallelism);
+    }
+
+    @Benchmark
+    public EdgeMap sobelComputeEdges() {
+        return edgeDetection.computeEdges(image, EdgeDetection.SOBEL_VERTICAL,
+                EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD, parallelism);
+    }
+
+    /** Maska 5x5 rozkładana na jeden czynnik separowalny */
+    @Benchmark
+    public EdgeMap sobel5x5ComputeEdges() {
+        return edgeDetection.computeEdges(image, EdgeDetection.SOBEL_5X5_VERTICAL,
+                EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD, parallelism);
+    }
+
+    /** Maska 7x7 rozkładana na dwa czynniki separowalne */
+    @Benchmark
+    public EdgeMap laplacianOfGaussianComputeEdges() {
+        return edgeDetection.computeEdges(image, EdgeDetection.LAPLACIAN_OF_GAUSSIAN,
+                EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD, parallelism);
+    }
+
+    @Benchmark
+    public EdgeMap cannyComputeEdgesReused() {
+        reuse = edgeDetection.computeEdges(image, EdgeDetection.CANNY_EDGE_DETECTION,
+                EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD, parallelism, reuse);
+        return reuse;
+    }
+
+    @Benchmark
+    public EdgeMap sobelComputeEdgesReused() {
+        reuse = edgeDetection.computeEdges(image, EdgeDetection.SOBEL_VERTICAL,
+                EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD, parallelism, reuse);
+        return reuse;
+    }
+
+    @Benchmark
+    public Map<String, EdgeMap> allMasksComputeEdges() {
+        return edgeDetection.computeEdges(image, MASK_FILTERS, parallelism);
+    }
+
+    @Benchmark
+    public EdgeMap allMasksComputeEdgesSeparately() {
+        EdgeMap output = null;
+        for (String filter : MASK_FILTERS) {
+            output = edgeDetection.computeEdges(image, filter,
+                    EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD, parallelism);
+        }
+        return output;
+    }
+
+    /** Kolejne klatki są identyczne, więc po pierwszej klatce przeliczana jest tylko detekcja zmian */
+    @Benchmark
+    public EdgeMap cannySequenceStaticFrame() {
+        reuse = sequence.next(image, reuse);
+        return reuse;
+    }
+
+    /** Kolejne klatki różnią się kwadratem 48x48 pikseli, który na przemian pojawia się i znika */
+    @Benchmark
+    public EdgeMap cannySequenceMovingObject() {
+        moved = !moved;
+        reuse = sequence.next(moved ? movedFrame : image, reuse);
+        return reuse;
+    }
+
+    /** Budowa piramidy i Canny na poziomie 2 (1/16 pikseli), jak podgląd w GUI */
+    @Benchmark
+    public EdgeMap cannyPyramidPreview() {
+        ImagePyramid pyramid = new ImagePyramid(image, ImagePyramid.DEFAULT_LEVELS, parallelism);
+        return new Canny(EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD)
+                .computeEdges(pyramid, ImagePyramid.DEFAULT_LEVELS - 1, parallelism);
+    }
+
+    /** Pełna rozdzielczość tylko w otoczeniu krawędzi znalezionych na poziomie 2 piramidy */
+    @Benchmark
+    public EdgeMap cannyPyramidRefined() {
+        ImagePyramid pyramid = new ImagePyramid(image, ImagePyramid.DEFAULT_LEVELS, parallelism);
+        return new Canny(EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD)
+                .computeEdgesRefined(pyramid, ImagePyramid.DEFAULT_LEVELS - 1, parallelism);
+    }
+
+    /** Trafienie w pamięci podręcznej: skrót pikseli obrazu i odtworzenie mapy zapisanej jako jeden bit na piksel */
+    @Benchmark
+    public EdgeMap cannyComputeEdgesCached() {
+        reuse = cachedEdgeDetection.computeEdges(image, EdgeDetection.CANNY_EDGE_DETECTION,
+                EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD, parallelism, reuse);
+        return reuse;
+    }
+
+    /** Obszar zainteresowania o polu 1/16 obrazu, w jego środku */
+    @Benchmark
+    public EdgeMap cannyRegionOfInterest() {
+        Rectangle region = new Rectangle(image.getWidth() * 3 / 8, image.getHeight() * 3 / 8, image.getWidth() / 4,
+                image.getHeight() / 4);
+        return new Canny(EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD)
+                .computeEdges(image, region, parallelism);
+    }
+
+    @Benchmark
+    public EdgeMap cannyDetectEdges() throws IOException {
+        return encode(cannyComputeEdges(), JPEG);
+    }
+
+    @Benchmark
+    public EdgeMap cannyDetectEdgesPackedBits() throws IOException {
+        return encode(cannyComputeEdges(), PACKED_BITS);
+    }
+
+    @Benchmark
+    public EdgeMap cannyDetectEdgesPng() throws IOException {
+        return encode(cannyComputeEdges(), PNG);
+    }
+
+    @Benchmark
+    public EdgeMap sobelDetectEdges() throws IOException {
+        return encode(sobelComputeEdges(), JPEG);
+    }
+
+    @Benchmark
+    public EdgeMap sobelDetectEdgesPgm() throws IOException {
+        return encode(sobelComputeEdges(), PGM);
+    }
+
+    @Benchmark
+    public EdgeMap sobelDetectEdgesPng() throws IOException {
+        return encode(sobelComputeEdges(), PNG);
+    }
+
+    /**
+     * Metoda koduje mapę krawędzi podanym koderem, odrzucając wynik
+     */
+    private static EdgeMap encode(EdgeMap edges, EdgeEncoder encoder) throws IOException {
+        encoder.encode(edges.toImage(), OutputStream.nullOutputStream());
+        return edges;
+    }
+}
@@ -0,0 +1,136 @@
+package edgedetection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Testy wydajności pojedynczych etapów algorytmu Canny'ego i filtrów masek, wykonywanych w jednym wątku.
+ * Każdy etap czyta dane wejściowe przygotowane raz, w metodzie setup, przez etapy poprzedzające.
+ * @author Aneta Bień, Anna Plęs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class StageBenchmark {
+    private static final double[][] SOBEL_MASK_VERTICAL = {{1, 0, -1}, {2, 0, -2}, {1, 0, -1}};
+
+    @Param({"VGA", "12MP", "50MP"})
+    public String size;
+
+    /** Implementacja pętli splotu; każda kombinacja parametrów działa w osobnej JVM, więc wybór jest ustalany w setup */
+    @Param({"vector", "scalar"})
+    public String backend;
+
+    private BufferedImage image;
+    private Canny canny;
+    private Kernel gaussian;
+    private Kernel sobel;
+    private PixelPlane gray;
+    private PixelPlane denoised;
+    private PixelPlane magnitude;
+    private byte[] direction;
+    private PixelPlane suppressed;
+    private byte[] thresholded;
+    private byte[] flags;
+    private PixelPlane output;
+    private int height;
+
+    @Setup
+    public void setup() {
+        System.setProperty("edgedetection.backend", backend);
+        image = SyntheticImages.create(size);
+        canny = new Canny(EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD);
+        gaussian = Kernel.of(Canny.gaussianKernel);
+        sobel = Kernel.of(SOBEL_MASK_VERTICAL);
+        int width = image.getWidth();
+        height = image.getHeight();
+        gray = ImageConverter.toGrayscale(image);
+        denoised = Convolution.convolve(gray, gaussian, Convolution.Border.REFLECT);
+        magnitude = new PixelPlane(width, height);
+        direction = new byte[width * height];
+        canny.computeGradient(denoised, magnitude, direction, 0, height);
+        suppressed = new PixelPlane(width, height);
+        canny.nonMaximumSuppression(direction, magnitude, suppressed, 0, height);
+        thresholded = new byte[width * height];
+        canny.setStrengthFlag(suppressed, thresholded, 0, height);
+        flags = new byte[width * height];
+        output = new PixelPlane(width, height);
+    }
+
+    @Benchmark
+    public PixelPlane[] toChannels() {
+        return ImageConverter.toChannels(image);
+    }
+
+    @Benchmark
+    public PixelPlane toGrayscale() {
+        ImageConverter.toGrayscale(image, output, 0, height);
+        return output;
+    }
+
+    @Benchmark
+    public PixelPlane gaussianBlur() {
+        Convolution.convolve(gray, gaussian, Convolution.Border.REFLECT, output);
+        return output;
+    }
+
+    @Benchmark
+    public PixelPlane gradient() {
+        canny.computeGradient(denoised, output, direction, 0, height);
+        return output;
+    }
+
+    @Benchmark
+    public PixelPlane nonMaximumSuppression() {
+        canny.nonMaximumSuppression(direction, magnitude, output, 0, height);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] threshold() {
+        canny.setStrengthFlag(suppressed, flags, 0, height);
+        return flags;
+    }
+
+    /**
+     * Histereza modyfikuje flagi w miejscu, więc każde wywołanie zaczyna od skopiowania wyniku progowania;
+     * koszt kopii można odczytać z testu threshold, który zapisuje tyle samo bajtów
+     */
+    @Benchmark
+    public byte[] hysteresis() {
+        System.arraycopy(thresholded, 0, flags, 0, flags.length);
+        Hysteresis.track(flags, image.getWidth(), height, 1);
+        return flags;
+    }
+
+    @Benchmark
+    public PixelPlane mix2D() {
+        return Mix.mix2D(gray, SOBEL_MASK_VERTICAL, 3, 3);
+    }
+
+    @Benchmark
+    public PixelPlane mix2DEdge() {
+        Convolution.convolve(gray, sobel, Convolution.Border.ZERO, output);
+        return output;
+    }
+
+    @Benchmark
+    public EdgeMap toEdgeMap() {
+        return ImageConverter.toEdgeMap(suppressed);
+    }
+}
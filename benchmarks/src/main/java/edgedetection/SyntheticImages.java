@@ -0,0 +1,95 @@
+package edgedetection;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Klasa generująca powtarzalne obrazy testowe: gradient tła, figury o ostrych i rozmytych krawędziach oraz szum
+ * @author Aneta Bień, Anna Plęs
+ */
+final class SyntheticImages {
+    /** Ziarno generatora, dzięki któremu kolejne uruchomienia testów przetwarzają ten sam obraz */
+    private static final long SEED = 20240501L;
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * Metoda zwraca wymiary obrazu dla nazwy rozmiaru używanej w parametrach testów
+     * @param size "VGA" (640x480), "12MP" (4000x3000) lub "50MP" (8160x6120)
+     * @return szerokość i wysokość
+     */
+    static int[] dimensions(String size) {
+        switch (size) {
+            case "VGA":
+                return new int[]{640, 480};
+            case "12MP":
+                return new int[]{4000, 3000};
+            case "50MP":
+                return new int[]{8160, 6120};
+            default:
+                throw new IllegalArgumentException("Nieznany rozmiar obrazu: " + size);
+        }
+    }
+
+    /**
+     * Metoda tworzy obraz testowy TYPE_INT_RGB o podanym rozmiarze
+     * @param size nazwa rozmiaru (patrz {@link #dimensions(String)})
+     * @return obraz testowy
+     */
+    static BufferedImage create(String size) {
+        int[] dimensions = dimensions(size);
+        int width = dimensions[0];
+        int height = dimensions[1];
+        Random random = new Random(SEED);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.DARK_GRAY, width, height, Color.LIGHT_GRAY));
+        graphics.fillRect(0, 0, width, height);
+        int shapes = Math.max(50, width * height / 20000);
+        int scale = Math.max(width, height) / 8;
+        for (int i = 0; i < shapes; ++i) {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, random.nextBoolean()
+                    ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            int w = 4 + random.nextInt(scale);
+            int h = 4 + random.nextInt(scale);
+            switch (random.nextInt(3)) {
+                case 0:
+                    graphics.fillOval(x, y, w, h);
+                    break;
+                case 1:
+                    graphics.fillRect(x, y, w, h);
+                    break;
+                default:
+                    graphics.setStroke(new BasicStroke(1 + random.nextInt(6)));
+                    graphics.drawLine(x, y, x + w - scale / 2, y + h - scale / 2);
+            }
+        }
+        graphics.dispose();
+        int[] row = new int[width];
+        for (int y = 0; y < height; ++y) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; ++x) {
+                int noise = random.nextInt(9) - 4;
+                int r = clamp(((row[x] >> 16) & 0xFF) + noise);
+                int g = clamp(((row[x] >> 8) & 0xFF) + noise);
+                int b = clamp((row[x] & 0xFF) + noise);
+                row[x] = (r << 16) | (g << 8) | b;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,111 @@
+package edgedetection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Klasa zapisująca mapy krawędzi w osobnych wątkach zapisu, dzięki czemu kodowanie jednego obrazu odbywa się
+ * równocześnie z wykrywaniem krawędzi w następnym. Liczba map oczekujących na zapis jest ograniczona, więc gdy koder
+ * nie nadąża, metoda {@link #submit} czeka na zwolnienie miejsca zamiast gromadzić mapy w pamięci.
+ * Mapa przekazana do zapisu nie może być modyfikowana ani użyta ponownie, dopóki zwrócony wynik nie zostanie
+ * zakończony.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class AsyncEdgeSink implements AutoCloseable {
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+    private final ImageFileSink sink;
+    private final ExecutorService executor;
+    private final Semaphore pending;
+
+    /**
+     * Konstruktor ustawiający miejsce zapisu, z jednym wątkiem zapisu i dwiema mapami oczekującymi na zapis
+     * @param sink miejsce zapisu wywoływane w wątkach zapisu
+     */
+    public AsyncEdgeSink(ImageFileSink sink) {
+        this(sink, 1, 2);
+    }
+
+    /**
+     * Konstruktor ustawiający miejsce zapisu i liczbę wątków zapisu
+     * @param sink miejsce zapisu wywoływane w wątkach zapisu
+     * @param writers liczba wątków zapisu
+     * @param capacity największa liczba map przekazanych do zapisu, ale jeszcze niezapisanych
+     */
+    public AsyncEdgeSink(ImageFileSink sink, int writers, int capacity) {
+        if (writers <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Liczba wątków zapisu i pojemność kolejki muszą być dodatnie");
+        }
+        this.sink = sink;
+        this.pending = new Semaphore(capacity);
+        this.executor = Executors.newFixedThreadPool(writers, task -> {
+            Thread thread = new Thread(task, "edgedetection-writer-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Metoda przekazuje mapę krawędzi do zapisu w nowym pliku katalogu docelowego
+     * @param edges mapa krawędzi
+     * @return wynik kończony utworzonym plikiem lub wyjątkiem {@link UncheckedIOException} z błędem zapisu
+     * @throws InterruptedException przerwanie oczekiwania na miejsce w kolejce
+     */
+    public CompletableFuture<File> submit(EdgeMap edges) throws InterruptedException {
+        return submit(edges, null);
+    }
+
+    /**
+     * Metoda przekazuje mapę krawędzi do zapisu w pliku o podanej nazwie, nadpisując istniejący plik
+     * @param edges mapa krawędzi
+     * @param baseName nazwa pliku bez rozszerzenia lub null dla nowego pliku o unikalnej nazwie
+     * @return wynik kończony zapisanym plikiem lub wyjątkiem {@link UncheckedIOException} z błędem zapisu
+     * @throws InterruptedException przerwanie oczekiwania na miejsce w kolejce
+     */
+    public CompletableFuture<File> submit(EdgeMap edges, String baseName) throws InterruptedException {
+        pending.acquire();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return baseName == null ? sink.write(edges) : sink.write(edges, baseName);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    pending.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            pending.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Metoda zwraca miejsce zapisu
+     * @return miejsce zapisu wywoływane w wątkach zapisu
+     */
+    public ImageFileSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Metoda kończy przyjmowanie map i czeka na zapisanie wszystkich przekazanych wcześniej.
+     * Błędy zapisu są zgłaszane przez wyniki metody {@link #submit}. Przerwanie oczekiwania kończy je wcześniej
+     * i ustawia ponownie flagę przerwania wątku.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
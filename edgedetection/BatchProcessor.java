@@ -0,0 +1,524 @@
+package edgedetection;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Klasa przetwarzająca wsadowo wiele obrazów bez interfejsu graficznego.
+ * Obrazy są przetwarzane współbieżnie przez stałą liczbę wątków, a liczba obrazów wczytanych do pamięci
+ * jednocześnie jest ograniczona do dwukrotności liczby wątków. Opcjonalnie wyniki są kodowane w osobnych wątkach
+ * zapisu (patrz {@link AsyncEdgeSink}), a wątek roboczy w tym czasie przetwarza kolejny obraz.
+ * @author Aneta Bień, Anna Plęs
+ */
+public class BatchProcessor {
+    private final EdgeDetection edgeDetection;
+    private final String filter;
+    private final double lowerThreshold;
+    private final double higherThreshold;
+    private final ImageFileSink sink;
+    private final int workers;
+    private final int tileParallelism;
+    private final int stripRows;
+    private final int writerThreads;
+    private final int pyramidLevel;
+    private final boolean refine;
+    /**
+     * Zapisana już mapa wyniku wątku roboczego, nadpisywana przy kolejnym obrazie tego samego rozmiaru.
+     * Przy zapisie w osobnym wątku mapa wraca tu dopiero po zakończeniu zapisu, więc wątek roboczy na zmianę używa
+     * dwóch map: jedna jest zapisywana, a druga wypełniana wynikiem następnego obrazu.
+     */
+    private final ThreadLocal<AtomicReference<EdgeMap>> spareEdges = ThreadLocal.withInitial(AtomicReference::new);
+
+    /**
+     * Konstruktor ustawiający parametry przetwarzania
+     * @param filter nazwa filtru (jedna ze stałych klasy EdgeDetection)
+     * @param lowerThreshold dolny próg algorytmu Canny'ego
+     * @param higherThreshold górny próg algorytmu Canny'ego
+     * @param outputDirectory katalog, do którego zapisywane są wyniki
+     * @param formatName format plików wynikowych (patrz {@link EdgeEncoders#forName})
+     * @param workers liczba obrazów przetwarzanych jednocześnie
+     * @param tileParallelism liczba kafelków, na które dzielony jest pojedynczy obraz
+     */
+    public BatchProcessor(String filter, double lowerThreshold, double higherThreshold, File outputDirectory,
+                          String formatName, int workers, int tileParallelism) {
+        this(filter, lowerThreshold, higherThreshold, outputDirectory, formatName, workers, tileParallelism, 0);
+    }
+
+    /**
+     * Konstruktor ustawiający parametry przetwarzania, z opcjonalnym przetwarzaniem pasami
+     * @param filter nazwa filtru (jedna ze stałych klasy EdgeDetection)
+     * @param lowerThreshold dolny próg algorytmu Canny'ego
+     * @param higherThreshold górny próg algorytmu Canny'ego
+     * @param outputDirectory katalog, do którego zapisywane są wyniki
+     * @param formatName format plików wynikowych (patrz {@link EdgeEncoders#forName})
+     * @param workers liczba obrazów przetwarzanych jednocześnie
+     * @param tileParallelism liczba kafelków, na które dzielony jest pojedynczy obraz lub pas
+     * @param stripRows wysokość pasa dla przetwarzania bez wczytywania całego obrazu
+     *                  (patrz {@link StreamingEdgeDetection}); 0 oznacza wczytanie całego obrazu
+     */
+    public BatchProcessor(String filter, double lowerThreshold, double higherThreshold, File outputDirectory,
+                          String formatName, int workers, int tileParallelism, int stripRows) {
+        this(filter, lowerThreshold, higherThreshold, new ImageFileSink(outputDirectory, formatName), workers,
+                tileParallelism, stripRows, 0);
+    }
+
+    /**
+     * Konstruktor ustawiający wszystkie parametry przetwarzania
+     * @param filter nazwa filtru (jedna ze stałych klasy EdgeDetection)
+     * @param lowerThreshold dolny próg algorytmu Canny'ego
+     * @param higherThreshold górny próg algorytmu Canny'ego
+     * @param sink miejsce zapisu wyników
+     * @param workers liczba obrazów przetwarzanych jednocześnie
+     * @param tileParallelism liczba kafelków, na które dzielony jest pojedynczy obraz lub pas
+     * @param stripRows wysokość pasa dla przetwarzania bez wczytywania całego obrazu
+     *                  (patrz {@link StreamingEdgeDetection}); 0 oznacza wczytanie całego obrazu
+     * @param writerThreads liczba wątków kodujących wyniki (patrz {@link AsyncEdgeSink}); 0 oznacza kodowanie
+     *                      w wątku roboczym. Nie dotyczy przetwarzania pasami, w którym koder czyta wiersze w trakcie
+     *                      ich wyliczania.
+     */
+    public BatchProcessor(String filter, double lowerThreshold, double higherThreshold, ImageFileSink sink,
+                          int workers, int tileParallelism, int stripRows, int writerThreads) {
+        this(filter, lowerThreshold, higherThreshold, sink, workers, tileParallelism, stripRows, writerThreads, 0, false);
+    }
+
+    /**
+     * Konstruktor ustawiający wszystkie parametry przetwarzania, z opcjonalnym użyciem piramidy obrazu
+     * (patrz {@link ImagePyramid}) przez algorytm Canny'ego, np. do szybkiej selekcji obrazów
+     * @param filter nazwa filtru (jedna ze stałych klasy EdgeDetection)
+     * @param lowerThreshold dolny próg algorytmu Canny'ego
+     * @param higherThreshold górny próg algorytmu Canny'ego
+     * @param sink miejsce zapisu wyników
+     * @param workers liczba obrazów przetwarzanych jednocześnie
+     * @param tileParallelism liczba kafelków, na które dzielony jest pojedynczy obraz lub pas
+     * @param stripRows wysokość pasa dla przetwarzania bez wczytywania całego obrazu
+     *                  (patrz {@link StreamingEdgeDetection}); 0 oznacza wczytanie całego obrazu
+     * @param writerThreads liczba wątków kodujących wyniki (patrz {@link AsyncEdgeSink}); 0 oznacza kodowanie
+     *                      w wątku roboczym
+     * @param pyramidLevel poziom piramidy, dla którego wyznaczane są krawędzie; 0 oznacza pełną rozdzielczość
+     *                     bez budowania piramidy
+     * @param refine false: zapisywana jest mapa o wymiarach poziomu piramidy; true: krawędzie poziomu wskazują
+     *               obszary przeliczane w pełnej rozdzielczości (patrz {@link Canny#computeEdgesRefined})
+     * @throws IllegalArgumentException gdy piramida jest użyta z filtrem innym niż Canny lub z przetwarzaniem pasami
+     */
+    public BatchProcessor(String filter, double lowerThreshold, double higherThreshold, ImageFileSink sink,
+                          int workers, int tileParallelism, int stripRows, int writerThreads, int pyramidLevel,
+                          boolean refine) {
+        this(filter, lowerThreshold, higherThreshold, sink, workers, tileParallelism, stripRows, writerThreads,
+                pyramidLevel, refine, null);
+    }
+
+    /**
+     * Konstruktor ustawiający wszystkie parametry przetwarzania, z pamięcią podręczną wyników. Przy pamięci podręcznej
+     * plik jest czytany w całości, a jego zawartość wyznacza klucz wyniku (patrz
+     * {@link EdgeDetection#computeEdges(File, String, double, double, int, EdgeMap)}), więc ponownie przetwarzany
+     * plik nie jest dekodowany. Pamięć podręczna nie dotyczy przetwarzania pasami i piramidy obrazu.
+     * @param filter nazwa filtru (jedna ze stałych klasy EdgeDetection)
+     * @param lowerThreshold dolny próg algorytmu Canny'ego
+     * @param higherThreshold górny próg algorytmu Canny'ego
+     * @param sink miejsce zapisu wyników
+     * @param workers liczba obrazów przetwarzanych jednocześnie
+     * @param tileParallelism liczba kafelków, na które dzielony jest pojedynczy obraz lub pas
+     * @param stripRows wysokość pasa dla przetwarzania bez wczytywania całego obrazu
+     *                  (patrz {@link StreamingEdgeDetection}); 0 oznacza wczytanie całego obrazu
+     * @param writerThreads liczba wątków kodujących wyniki (patrz {@link AsyncEdgeSink}); 0 oznacza kodowanie
+     *                      w wątku roboczym
+     * @param pyramidLevel poziom piramidy, dla którego wyznaczane są krawędzie; 0 oznacza pełną rozdzielczość
+     *                     bez budowania piramidy
+     * @param refine false: zapisywana jest mapa o wymiarach poziomu piramidy; true: krawędzie poziomu wskazują
+     *               obszary przeliczane w pełnej rozdzielczości (patrz {@link Canny#computeEdgesRefined})
+     * @param cache pamięć podręczna wyników lub null
+     * @throws IllegalArgumentException gdy piramida jest użyta z filtrem innym niż Canny lub z przetwarzaniem pasami
+     */
+    public BatchProcessor(String filter, double lowerThreshold, double higherThreshold, ImageFileSink sink,
+                          int workers, int tileParallelism, int stripRows, int writerThreads, int pyramidLevel,
+                          boolean refine, ResultCache cache) {
+        if (pyramidLevel > 0 && (!filter.equals(EdgeDetection.CANNY_EDGE_DETECTION) || stripRows > 0)) {
+            throw new IllegalArgumentException("Piramida obrazu jest dostępna tylko dla algorytmu Canny'ego"
+                    + " bez przetwarzania pasami");
+        }
+        this.filter = filter;
+        this.lowerThreshold = lowerThreshold;
+        this.higherThreshold = higherThreshold;
+        this.sink = sink;
+        this.workers = Math.max(1, workers);
+        this.tileParallelism = Math.max(1, tileParallelism);
+        this.stripRows = stripRows;
+        this.writerThreads = Math.max(0, writerThreads);
+        this.pyramidLevel = Math.max(0, pyramidLevel);
+        this.refine = refine;
+        this.edgeDetection = new EdgeDetection(FilterRegistry.standard(), cache);
+    }
+
+    /**
+     * Metoda zamienia nazwę filtru podaną w linii poleceń na stałą klasy EdgeDetection.
+     * Akceptowane są nazwy wyświetlane w GUI oraz nazwy stałych, bez względu na wielkość liter i z '-' zamiast '_'.
+     * @param name nazwa filtru, np. "sobel-vertical", "SCHARR_HORIZONTAL" lub "canny"
+     * @return wartość stałej klasy EdgeDetection
+     * @throws IllegalArgumentException dla nieznanej nazwy
+     */
+    public static String resolveFilter(String name) {
+        String key = name.trim().toUpperCase(Locale.ROOT).replace('-', '_').replace(' ', '_');
+        switch (key) {
+            case "HORIZONTAL":
+            case "HORIZONTAL_FILTER":
+                return EdgeDetection.HORIZONTAL;
+            case "VERTICAL":
+            case "VERTICAL_FILTER":
+                return EdgeDetection.VERTICAL;
+            case "SOBEL_VERTICAL":
+            case "SOBEL_VERTICAL_FILTER":
+                return EdgeDetection.SOBEL_VERTICAL;
+            case "SOBEL_HORIZONTAL":
+            case "SOBEL_HORIZONTAL_FILTER":
+                return EdgeDetection.SOBEL_HORIZONTAL;
+            case "SCHARR_VERTICAL":
+            case "SCHARR_VERTICAL_FILTER":
+                return EdgeDetection.SCHARR_VERTICAL;
+            case "SCHARR_HORIZONTAL":
+            case "SCHARR_HORIZONTAL_FILTER":
+                return EdgeDetection.SCHARR_HORIZONTAL;
+            case "SOBEL_5X5_VERTICAL":
+            case "SOBEL_5X5_VERTICAL_FILTER":
+                return EdgeDetection.SOBEL_5X5_VERTICAL;
+            case "SOBEL_5X5_HORIZONTAL":
+            case "SOBEL_5X5_HORIZONTAL_FILTER":
+                return EdgeDetection.SOBEL_5X5_HORIZONTAL;
+            case "LOG":
+            case "LAPLACIAN_OF_GAUSSIAN":
+            case "LAPLACIAN_OF_GAUSSIAN_7X7_FILTER":
+                return EdgeDetection.LAPLACIAN_OF_GAUSSIAN;
+            case "CANNY":
+            case "CANNY_ALGORITHM":
+            case "CANNY_EDGE_DETECTION":
+                return EdgeDetection.CANNY_EDGE_DETECTION;
+            default:
+                throw new IllegalArgumentException("Nieznany filtr: " + name);
+        }
+    }
+
+    /**
+     * Metoda wyszukuje pliki wejściowe. Dla katalogu zwracane są zawarte w nim pliki o rozszerzeniach obsługiwanych
+     * przez ImageIO, w pozostałych przypadkach argument jest traktowany jako wzorzec glob, np. "zdjecia/**.jpg"
+     * @param input ścieżka katalogu lub wzorzec glob
+     * @return posortowana lista plików
+     * @throws IOException błąd odczytu katalogu
+     */
+    public static List<Path> findInputs(String input) throws IOException {
+        Path path = Paths.get(input);
+        if (Files.isDirectory(path)) {
+            Set<String> suffixes = new HashSet<>();
+            for (String suffix : ImageIO.getReaderFileSuffixes()) {
+                suffixes.add(suffix.toLowerCase(Locale.ROOT));
+            }
+            try (Stream<Path> files = Files.list(path)) {
+                return files.filter(Files::isRegularFile)
+                        .filter(file -> suffixes.contains(extension(file)))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        int firstGlob = indexOfGlob(input);
+        int separator = Math.max(input.lastIndexOf('/', firstGlob), input.lastIndexOf(File.separatorChar, firstGlob));
+        Path base = separator < 0 ? Paths.get(".") : Paths.get(input.substring(0, Math.max(separator, 1)));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+        try (Stream<Path> files = Files.walk(base)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(separator < 0 ? base.relativize(file) : file))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int indexOfGlob(String pattern) {
+        for (int i = 0; i < pattern.length(); ++i) {
+            if ("*?[{".indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Metoda wyznacza nazwy plików wynikowych bez rozszerzeń. Nazwą jest ścieżka pliku wejściowego względem
+     * najgłębszego wspólnego katalogu wszystkich plików, bez rozszerzenia, więc podkatalogi przeszukane przez wzorzec
+     * glob są odtwarzane w katalogu wynikowym i pliki a/x.png oraz b/x.png nie nadpisują nawzajem swoich wyników.
+     * Pliki z jednego katalogu różniące się tylko rozszerzeniem zachowują je w nazwie, np. wyniki PNG plików x.jpg
+     * i x.png to x.jpg.png i x.png.png.
+     * @param inputs pliki wejściowe
+     * @return nazwy plików wynikowych, z '/' między katalogami, dla kolejnych plików wejściowych
+     * @throws IllegalArgumentException gdy dwa pliki wejściowe mimo to mają tę samą nazwę wyniku
+     */
+    static Map<Path, String> outputNames(List<Path> inputs) {
+        Map<Path, String> names = new HashMap<>();
+        if (inputs.isEmpty()) {
+            return names;
+        }
+        Path base = inputs.get(0).toAbsolutePath().normalize().getParent();
+        for (Path input : inputs) {
+            Path file = input.toAbsolutePath().normalize();
+            while (base != null && !file.startsWith(base)) {
+                base = base.getParent();
+            }
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        Map<Path, String> relativeNames = new HashMap<>();
+        for (Path input : inputs) {
+            Path relative = base == null ? input.toAbsolutePath().normalize()
+                    : base.relativize(input.toAbsolutePath().normalize());
+            StringBuilder name = new StringBuilder();
+            for (Path element : relative) {
+                name.append(name.length() == 0 ? "" : "/").append(element);
+            }
+            relativeNames.put(input, name.toString());
+            counts.merge(withoutExtension(name.toString()), 1, Integer::sum);
+        }
+        Map<String, Path> owners = new HashMap<>();
+        for (Path input : inputs) {
+            String relative = relativeNames.get(input);
+            String name = counts.get(withoutExtension(relative)) > 1 ? relative : withoutExtension(relative);
+            Path previous = owners.putIfAbsent(name, input);
+            if (previous != null && !previous.equals(input)) {
+                throw new IllegalArgumentException("Pliki " + previous + " i " + input + " mają ten sam plik wynikowy "
+                        + name);
+            }
+            names.put(input, name);
+        }
+        return names;
+    }
+
+    private static String withoutExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot <= name.lastIndexOf('/') ? name : name.substring(0, dot);
+    }
+
+    /**
+     * Metoda przetwarza wszystkie pliki i czeka na zakończenie pracy.
+     * Błędy pojedynczych plików są wypisywane i zliczane, ale nie przerywają przetwarzania.
+     * Nazwy plików wynikowych są wyznaczane przed przetwarzaniem (patrz {@link #outputNames}).
+     * @param inputs pliki wejściowe
+     * @return podsumowanie przetwarzania
+     * @throws InterruptedException przerwanie oczekiwania na zakończenie
+     * @throws IllegalArgumentException gdy dwa pliki wejściowe mają ten sam plik wynikowy
+     */
+    public Summary process(List<Path> inputs) throws InterruptedException {
+        Map<Path, String> outputNames = outputNames(inputs);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        AsyncEdgeSink writer = writerThreads > 0 && stripRows <= 0
+                ? new AsyncEdgeSink(sink, writerThreads, 2 * writerThreads) : null;
+        Semaphore inFlight = new Semaphore(2 * workers);
+        long[] latencies = new long[inputs.size()];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong pixels = new AtomicLong();
+        long start = System.nanoTime();
+        try {
+            for (Path input : inputs) {
+                inFlight.acquire();
+                executor.execute(() -> {
+                    long begin = System.nanoTime();
+                    BiConsumer<Long, Throwable> done = (processed, error) -> {
+                        if (error == null) {
+                            latencies[completed.getAndIncrement()] = System.nanoTime() - begin;
+                            pixels.addAndGet(processed);
+                        } else {
+                            failed.incrementAndGet();
+                            Throwable cause = error;
+                            while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                                    && cause.getCause() != null) {
+                                cause = cause.getCause();
+                            }
+                            System.err.println("Błąd przetwarzania pliku " + input + ": " + cause.getMessage());
+                        }
+                        inFlight.release();
+                    };
+                    try {
+                        processOne(input, outputNames.get(input), writer, done);
+                    } catch (IOException | RuntimeException e) {
+                        done.accept(0L, e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        done.accept(0L, e);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        if (writer != null) {
+            writer.close();
+        }
+        long wall = System.nanoTime() - start;
+        return new Summary(Arrays.copyOf(latencies, completed.get()), failed.get(), pixels.get(), wall);
+    }
+
+    /**
+     * Metoda przetwarza jeden plik i zgłasza zakończenie po zapisaniu wyniku
+     * @param input plik wejściowy
+     * @param outputName nazwa pliku wynikowego bez rozszerzenia, względem katalogu wynikowego
+     * @param writer wątki zapisu lub null dla zapisu w bieżącym wątku
+     * @param done odbiorca liczby pikseli obrazu albo błędu zapisu w wątku zapisu
+     * @throws IOException błąd odczytu lub zapisu w bieżącym wątku
+     * @throws InterruptedException przerwanie oczekiwania na miejsce w kolejce zapisu
+     */
+    private void processOne(Path input, String outputName, AsyncEdgeSink writer, BiConsumer<Long, Throwable> done)
+            throws IOException, InterruptedException {
+        Files.createDirectories(sink.getOutputFile(outputName).toPath().getParent());
+        if (stripRows > 0) {
+            StreamingEdgeDetection streaming = new StreamingEdgeDetection(filter, lowerThreshold, higherThreshold,
+                    stripRows, StreamingEdgeDetection.DEFAULT_HYSTERESIS_ROWS, tileParallelism);
+            done.accept(streaming.process(input.toFile(), sink.getOutputFile(outputName), sink.getEncoder()), null);
+            return;
+        }
+        AtomicReference<EdgeMap> spare = spareEdges.get();
+        if (edgeDetection.getResultCache() != null && pyramidLevel == 0) {
+            EdgeMap edges = edgeDetection.computeEdges(input.toFile(), filter, lowerThreshold, higherThreshold,
+                    tileParallelism, spare.getAndSet(null));
+            finish(outputName, edges, (long) edges.getWidth() * edges.getHeight(), writer, done);
+            return;
+        }
+        BufferedImage image = ImageIO.read(input.toFile());
+        if (image == null) {
+            throw new IOException("nieobsługiwany format obrazu");
+        }
+        EdgeMap edges;
+        if (pyramidLevel > 0) {
+            ImagePyramid pyramid = new ImagePyramid(image, pyramidLevel + 1, tileParallelism);
+            Canny canny = new Canny(lowerThreshold, higherThreshold);
+            edges = refine ? canny.computeEdgesRefined(pyramid, pyramidLevel, tileParallelism)
+                    : canny.computeEdges(pyramid, pyramidLevel, tileParallelism);
+        } else {
+            edges = edgeDetection.computeEdges(image, filter, lowerThreshold, higherThreshold, tileParallelism,
+                    spare.getAndSet(null));
+        }
+        finish(outputName, edges, (long) image.getWidth() * image.getHeight(), writer, done);
+    }
+
+    /**
+     * Metoda zapisuje wynik obrazu i zgłasza zakończenie; zapisana mapa wraca do ponownego użycia przez wątek roboczy
+     * @param outputName nazwa pliku wynikowego bez rozszerzenia
+     * @param edges mapa krawędzi obrazu
+     * @param processed liczba pikseli obrazu
+     * @param writer wątki zapisu lub null dla zapisu w bieżącym wątku
+     * @param done odbiorca liczby pikseli obrazu albo błędu zapisu w wątku zapisu
+     * @throws IOException błąd zapisu w bieżącym wątku
+     * @throws InterruptedException przerwanie oczekiwania na miejsce w kolejce zapisu
+     */
+    private void finish(String outputName, EdgeMap edges, long processed, AsyncEdgeSink writer,
+                        BiConsumer<Long, Throwable> done) throws IOException, InterruptedException {
+        AtomicReference<EdgeMap> spare = spareEdges.get();
+        if (writer == null) {
+            sink.write(edges, outputName);
+            spare.set(edges);
+            done.accept(processed, null);
+            return;
+        }
+        writer.submit(edges, outputName).whenComplete((file, error) -> {
+            spare.set(edges);
+            done.accept(processed, error);
+        });
+    }
+
+    /**
+     * Klasa przechowująca podsumowanie przetwarzania wsadowego
+     */
+    public static final class Summary {
+        private final long[] latencies;
+        private final int failed;
+        private final long pixels;
+        private final long wallNanos;
+
+        Summary(long[] latencies, int failed, long pixels, long wallNanos) {
+            this.latencies = latencies;
+            Arrays.sort(this.latencies);
+            this.failed = failed;
+            this.pixels = pixels;
+            this.wallNanos = wallNanos;
+        }
+
+        /**
+         * Metoda zwraca liczbę poprawnie przetworzonych obrazów
+         * @return liczba obrazów
+         */
+        public int getProcessed() {
+            return latencies.length;
+        }
+
+        /**
+         * Metoda zwraca liczbę obrazów, których nie udało się przetworzyć
+         * @return liczba błędów
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * Metoda zwraca przepustowość w obrazach na sekundę
+         * @return liczba obrazów na sekundę
+         */
+        public double imagesPerSecond() {
+            return latencies.length / (wallNanos / 1e9);
+        }
+
+        /**
+         * Metoda zwraca przepustowość w megapikselach na sekundę
+         * @return liczba megapikseli na sekundę
+         */
+        public double megapixelsPerSecond() {
+            return pixels / 1e6 / (wallNanos / 1e9);
+        }
+
+        /**
+         * Metoda zwraca percentyl czasu przetwarzania pojedynczego obrazu (metoda najbliższej rangi)
+         * @param percentile percentyl z zakresu (0, 100]
+         * @return czas w milisekundach lub 0, jeśli nie przetworzono żadnego obrazu
+         */
+        public double latencyMillis(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+            return latencies[Math.max(rank, 1) - 1] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Przetworzono %d obrazów (błędy: %d) w %.2f s: %.2f obrazów/s, %.2f MP/s, opóźnienie p50 %.1f ms, p99 %.1f ms",
+                    latencies.length, failed, wallNanos / 1e9, imagesPerSecond(), megapixelsPerSecond(),
+                    latencyMillis(50), latencyMillis(99));
+        }
+    }
+}
@@ -1,22 +1,74 @@
 package edgedetection;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.time.LocalTime;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Klasa przetwarzająca obrazy za pomocą algorytmu Canny'ego
  * @author Anna Plęs
  */
 public class Canny {
-    private static final double[][] xGradientKernel = {{-1, 0, 1}, {-2, 0, 2}, {-1, 0, 1}};
-    private static final double[][] yGradientKernel = {{1, 2, 1}, {0, 0, 0}, {-1, -2, -1}};
+
+    /**
+     * Arytmetyka kroków algorytmu poprzedzających histerezę
+     */
+    public enum Arithmetic {
+        /** Płaszczyzny liczb typu float i natężenie gradientu jako pierwiastek */
+        FLOAT,
+        /**
+         * Dokładne obliczenia na liczbach całkowitych dla obrazów 8-bitowych, z kwadratami natężenia gradientu
+         * porównywanymi z kwadratami progów; gradient, pocienianie krawędzi i progowanie są wykonywane jednym
+         * przebiegiem i zgłaszane jako etap progowania (patrz {@link FixedPointCanny})
+         */
+        FIXED_POINT
+    }
+
+    /**
+     * Jądro Gaussa 5x5 (sigma ok. 1.4) stosowane do odszumiania, zapisane jako [wiersz][kolumna].
+     * Jądro jest rzędu 3, więc splot jest wykonywany jako dwuwymiarowy.
+     */
     public static final double[][] gaussianKernel = {{2./159, 4./159, 5./159, 4./159, 2./159}, {4./159, 9./159, 12./159, 9./159, 4./159}, {5./159, 12./159, 15./159, 12./159, 5./159}, {4./159, 9./159, 12./159, 9./159, 4./159}, {2./159, 4./159, 5./159, 4./159, 2./159}};
+    static final Kernel gaussian = Kernel.of(gaussianKernel);
+    /** Liczba wierszy sąsiedniego kafelka czytanych przez rozmycie Gaussa */
+    static final int GAUSSIAN_HALO = 2;
+    /** Liczba wierszy sąsiedniego kafelka czytanych przez obliczenie gradientu Sobela */
+    static final int GRADIENT_HALO = 1;
+    /** Liczba wierszy sąsiedniego kafelka czytanych przez pocienianie krawędzi */
+    static final int SUPPRESSION_HALO = 1;
+    /** Łączna liczba wierszy sąsiednich, od których zależy flaga siły piksela przed histerezą */
+    static final int TOTAL_HALO = GAUSSIAN_HALO + GRADIENT_HALO + SUPPRESSION_HALO;
+    /** Kod kierunku gradientu poziomego (0°) */
+    static final byte DIRECTION_0 = 0;
+    /** Kod kierunku gradientu wzdłuż przekątnej w prawo w dół (45°) */
+    static final byte DIRECTION_45 = 1;
+    /** Kod kierunku gradientu pionowego (90°) */
+    static final byte DIRECTION_90 = 2;
+    /** Kod kierunku gradientu wzdłuż przekątnej w lewo w dół (135°) */
+    static final byte DIRECTION_135 = 3;
+    private static final float TAN_22_5 = (float) Math.tan(Math.toRadians(22.5));
+    private static final float TAN_67_5 = (float) Math.tan(Math.toRadians(67.5));
+    /** Liczba etapów algorytmu zgłaszanych odbiorcy postępu */
+    static final int STAGE_COUNT = 6;
+    /** Długość boku kafelków pełnej rozdzielczości przeliczanych przez {@link #computeEdgesRefined} */
+    static final int REFINE_TILE_SIZE = 32;
+    /** Początkowy zapas wokół obszaru zainteresowania, w którym histereza śledzi krawędzie wychodzące poza obszar */
+    static final int REGION_MARGIN = 32;
+    private static final String SUPPRESSION_STAGE = "Pocienianie krawędzi";
+    private static final String THRESHOLD_STAGE = "Progowanie";
     private double lowerThreshold;
     private double higherThreshold;
+    private final Arithmetic arithmetic;
+    /** Obraz, dla którego zapamiętano natężenie gradientu po pocienianiu krawędzi */
+    private BufferedImage cachedImage;
+    private PixelPlane cachedSuppressedMagnitude;
+    /** Zapamiętane kwadraty natężenia po pocienianiu krawędzi dla arytmetyki {@link Arithmetic#FIXED_POINT} */
+    private long[] cachedSuppressedSquares;
 
     /**
      * Metoda pozwalająca na ustawienie wartosci wyzszego i nizszego progu klasy Canny
@@ -24,403 +76,859 @@ public class Canny {
      * @param higherThresholdValue wartość wyższego progu
      */
     public Canny(double lowerThresholdValue, double higherThresholdValue) {
+        this(lowerThresholdValue, higherThresholdValue, Arithmetic.FLOAT);
+    }
+
+    /**
+     * Metoda pozwalająca na ustawienie progów i arytmetyki algorytmu
+     * @param lowerThresholdValue wartość niższego progu
+     * @param higherThresholdValue wartość wyższego progu
+     * @param arithmetic arytmetyka kroków poprzedzających histerezę
+     */
+    public Canny(double lowerThresholdValue, double higherThresholdValue, Arithmetic arithmetic) {
         this.lowerThreshold = lowerThresholdValue;
         this.higherThreshold = higherThresholdValue;
+        this.arithmetic = arithmetic;
     }
 
     /**
-     * Główna metoda będąca ciągiem kolejnych kroków algorytmu
+     * Metoda pozwalająca na zmianę progów bez utraty zapamiętanych wyników (patrz {@link #computeEdgesCached})
+     * @param lowerThresholdValue wartość niższego progu
+     * @param higherThresholdValue wartość wyższego progu
+     */
+    public synchronized void setThresholds(double lowerThresholdValue, double higherThresholdValue) {
+        this.lowerThreshold = lowerThresholdValue;
+        this.higherThreshold = higherThresholdValue;
+    }
+
+    /**
+     * Główna metoda będąca ciągiem kolejnych kroków algorytmu, wykonywanych w bieżącym wątku.
+     * Wynik jest zapisywany jako plik JPEG w katalogu roboczym.
      * @param sourceImage wczytany obraz wejsciowy
      * @return obraz przetworzony przez algorytm
      * @throws IOException błąd wejścia/wyjścia na jednym z etapów algorytmu
      */
     public File detectEdges(BufferedImage sourceImage) throws IOException {
-        double[][][] pixelArray = convertToArray(sourceImage);
-        double[][] grayscaleArray = convertToGrayscale(pixelArray);
-        double[][] denoisedArray = applyKernel(grayscaleArray, gaussianKernel);
-        double[][] xGradient = applyKernel(denoisedArray, xGradientKernel);
-        double[][] yGradient = applyKernel(denoisedArray, yGradientKernel);
-        double[][] magnitude = computeMagnitude(xGradient, yGradient);
-        int[][] direction = computeDirection(xGradient, yGradient);
-        double[][] suppressedMagnitude = nonMaximumSuppression(direction, magnitude);
-        double[][] thresholdFlags = setStrengthFlag(suppressedMagnitude);
-        double[][] connected = checkWeakPixelConnection(thresholdFlags, suppressedMagnitude);
-        return createImageFromMatrix(connected);
-    }
-
-    /** Metoda pozwalająca na konwersję obrazka na trójkanałową macierz zawierającą wartości pikseli
-     * @param image obraz wejściowy
-     * @return trójkanałowa macierz wartosci pikseli
-     */
-    private double[][][] convertToArray(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-
-        double[][][] pixelArray = new double[width][height][3];
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                Color color = new Color(image.getRGB(i, j));
-                pixelArray[i][j][0] = color.getRed();
-                pixelArray[i][j][1] = color.getGreen();
-                pixelArray[i][j][2] = color.getBlue();
-            }
-        }
-        return pixelArray;
+        return detectEdges(sourceImage, 1);
+    }
+
+    /**
+     * Metoda wykonująca algorytm na kafelkach wierszy (patrz {@link #computeEdges(BufferedImage, int)})
+     * i zapisująca wynik jako plik JPEG w katalogu roboczym
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param parallelism liczba kafelków przetwarzanych równolegle; 1 oznacza przetwarzanie w bieżącym wątku
+     * @return obraz przetworzony przez algorytm
+     * @throws IOException błąd wejścia/wyjścia na jednym z etapów algorytmu
+     */
+    public File detectEdges(BufferedImage sourceImage, int parallelism) throws IOException {
+        return EdgeDetection.DEFAULT_SINK.write(computeEdges(sourceImage, parallelism));
     }
 
     /**
-     * Metoda pozwalająca na konwersję obrazu do skali szarości
-     * @param pixelArray trójkanałowa macierz wartości pikseli
-     * @return macierz wartości pikseli w skali szarości
+     * Metoda wykonująca algorytm w bieżącym wątku i zwracająca wynik w pamięci
+     * @param sourceImage wczytany obraz wejsciowy
+     * @return mapa krawędzi z wartościami 0 lub 255
      */
-    private double[][] convertToGrayscale(double[][][] pixelArray){
-        int width = pixelArray.length;
-        int height = pixelArray[0].length;
-        double[][] grayscaleArray = new double[width][height];
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                double gray = (pixelArray[i][j][0] + pixelArray[i][j][1] + pixelArray[i][j][2])/3;
-                grayscaleArray[i][j] = gray;
-            }
+    public EdgeMap computeEdges(BufferedImage sourceImage) {
+        return computeEdges(sourceImage, 1);
+    }
+
+    /**
+     * Główna metoda będąca ciągiem kolejnych kroków algorytmu, wykonywanych równolegle na kafelkach wierszy
+     * we wspólnej puli ForkJoin. Kafelki czytają z poprzedniego etapu halo o szerokości
+     * {@value #GAUSSIAN_HALO} wierszy dla rozmycia oraz {@value #GRADIENT_HALO} dla gradientu i pocieniania krawędzi,
+     * a wynik jest identyczny z wynikiem sekwencyjnym. Żaden plik nie jest zapisywany.
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param parallelism liczba kafelków przetwarzanych równolegle; 1 oznacza przetwarzanie w bieżącym wątku
+     * @return mapa krawędzi z wartościami 0 lub 255
+     */
+    public EdgeMap computeEdges(BufferedImage sourceImage, int parallelism) {
+        return computeEdges(sourceImage, parallelism, null);
+    }
+
+    /**
+     * Metoda wykonująca algorytm tak jak {@link #computeEdges(BufferedImage, int)}, zapisująca wynik do podanej mapy.
+     * Płaszczyzny pośrednie są brane z obszaru roboczego bieżącego wątku ({@link Workspace}), więc przy kolejnych
+     * obrazach tego samego rozmiaru i ponownym użyciu mapy wyniku algorytm nie alokuje tablic pikseli.
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param parallelism liczba kafelków przetwarzanych równolegle; 1 oznacza przetwarzanie w bieżącym wątku
+     * @param reuse mapa poprzedniego wyniku, nadpisywana, jeśli ma rozmiary obrazu; null lub inne rozmiary oznaczają nową mapę
+     * @return mapa krawędzi z wartościami 0 lub 255
+     */
+    public EdgeMap computeEdges(BufferedImage sourceImage, int parallelism, EdgeMap reuse) {
+        return computeEdges(sourceImage, parallelism, reuse, ProgressListener.NONE);
+    }
+
+    /**
+     * Metoda wykonująca algorytm tak jak {@link #computeEdges(BufferedImage, int, EdgeMap)}, zgłaszająca zakończenie
+     * każdego z {@value #STAGE_COUNT} etapów. Czas, liczba pikseli i pamięć każdego etapu są też zapisywane
+     * jako zdarzenia JFR i w rejestrze {@link MetricsRegistry#global()}.
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param parallelism liczba kafelków przetwarzanych równolegle; 1 oznacza przetwarzanie w bieżącym wątku
+     * @param reuse mapa poprzedniego wyniku, nadpisywana, jeśli ma rozmiary obrazu; null lub inne rozmiary oznaczają nową mapę
+     * @param listener odbiorca postępu, który może przerwać algorytm wyjątkiem CancellationException
+     * @return mapa krawędzi z wartościami 0 lub 255
+     */
+    public EdgeMap computeEdges(BufferedImage sourceImage, int parallelism, EdgeMap reuse, ProgressListener listener) {
+        Workspace workspace = Workspace.acquire();
+        try {
+            ProgressListener recorder = new StageRecorder(listener, (long) sourceImage.getWidth() * sourceImage.getHeight());
+            EdgeMap output = computeStrengthFlags(sourceImage, parallelism, reuse, workspace, recorder);
+            Hysteresis.track(output.getPixels(), output.getWidth(), output.getHeight(), parallelism);
+            recorder.stageFinished("Histereza", 6, STAGE_COUNT);
+            return output;
+        } finally {
+            workspace.release();
         }
-        return grayscaleArray;
     }
 
     /**
-     * Metoda pozwalająca na tworzenie macierzy wypełnionej zerami
-     * @param width pożądana szerokość macierzy
-     * @param height pożądana wysokość macierzy
-     * @return stworzona macierz wypełniona zerami
+     * Metoda wykonuje algorytm tylko dla prostokąta obrazu w pamięci (patrz
+     * {@link #computeEdges(ImageRegionReader, Rectangle, int)})
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param region obszar zainteresowania; część poza obrazem jest pomijana
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @return mapa krawędzi o wymiarach części obszaru leżącej w obrazie
      */
-    private double[][] createZerosArray(int width, int height){
-        double[][] array = new double[width][height];
-        for (int i = 0; i < width; ++i) {
-            for (int j = 0; j < height; ++j) {
-                array[i][j] = 0;
-            }
+    public EdgeMap computeEdges(BufferedImage sourceImage, Rectangle region, int parallelism) {
+        try {
+            return computeEdges(new ImageRegionReader(sourceImage), region, parallelism);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return array;
-    }
-
-    /**
-     * Metoda pozwalająca na stworzenie obramowania przy pomocy odbicia lustrzanego pikseli granicznych obrazu
-     * @param smallArray macierz obrazka mającego zostać poddanego działaniu metody
-     * @param kernel jądro maski
-     * @return macierz wejściowa o wymiarach macierzy wejściowej + wymiar maski - 1
-     */
-    private double[][] createPaddedArray(double[][] smallArray, double[][] kernel){
-        int smallArrayWidth = smallArray.length;
-        int smallArrayHeight = smallArray[0].length;
-        int kernelWidth = kernel.length;
-        int kernelHeight = kernel[0].length;
-        int gapWidth = (int) ((kernelWidth) / 2.0);
-        int gapHeight = (int) ((kernelHeight) / 2.0);
-        int width = smallArrayWidth + 2*gapWidth;
-        int height = smallArrayHeight + 2*gapHeight;
-
-        double[][] paddedArray = new double[width][height];
-        for(int i = 0; i < gapWidth; ++i){
-            for(int j = 0; j < gapHeight; ++j){
-                //górny lewy róg
-                paddedArray[i][j] = smallArray[gapWidth-1-i][gapHeight-1-j];
-                //górny prawy róg
-                paddedArray[width-i-1][j] = smallArray[(smallArrayWidth)-gapWidth+i][gapHeight-1-j];
-                //dolny lewy róg
-                paddedArray[i][height-j-1] = smallArray[gapWidth-i-1][(smallArrayHeight)-gapHeight+i-1];
-                //dolny prawy róg
-                paddedArray[width-i-1][height-j-1] =  smallArray[(smallArrayWidth)-gapWidth+i][(smallArrayHeight)-gapHeight+i];
-            }
+    }
+
+    /**
+     * Metoda wykonuje algorytm tylko dla prostokąta obrazu z pliku, dekodując tylko jego otoczenie,
+     * i zapisuje wynik jako plik JPEG w katalogu roboczym
+     * @param input plik obrazu wejściowego
+     * @param region obszar zainteresowania; część poza obrazem jest pomijana
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @return plik z mapą krawędzi obszaru
+     * @throws IOException błąd odczytu lub zapisu
+     */
+    public File detectEdges(File input, Rectangle region, int parallelism) throws IOException {
+        try (ImageRegionReader reader = new ImageRegionReader(input)) {
+            return EdgeDetection.DEFAULT_SINK.write(computeEdges(reader, region, parallelism));
         }
-        //górny pas
-        for(int i = gapWidth; i < smallArrayWidth + gapWidth; ++i) {
-            for (int j = 0; j < gapHeight; ++j) {
-                paddedArray[i][j] = smallArray[i-gapWidth][gapHeight-1-j];
-            }
+    }
+
+    /**
+     * Metoda wykonuje algorytm tylko dla prostokąta obrazu (obszaru zainteresowania), a wynik jest identyczny
+     * z fragmentem wyniku {@link #computeEdges(BufferedImage, int)} dla całego obrazu. Flagi siły pikseli są wyznaczane
+     * dla obszaru powiększonego o zapas {@value #REGION_MARGIN} pikseli, z fragmentu obrazu powiększonego dodatkowo
+     * o halo {@value #TOTAL_HALO} pikseli etapów przed histerezą, więc są takie same jak dla całego obrazu.
+     * Histereza jest wykonywana w obszarze z zapasem; jeśli niepołączony łańcuch pikseli słabych prowadzi z obszaru
+     * do brzegu zapasu, za którym mógłby się połączyć z krawędzią, zapas jest podwajany, flagi są wyznaczane tylko
+     * dla dołożonego pierścienia, a histereza jest powtarzana, w skrajnym przypadku dla całego obrazu.
+     * Koszt zależy więc od pola obszaru, a nie od rozmiaru obrazu, poza obrazami z długimi łańcuchami słabych pikseli.
+     * @param source źródło fragmentów obrazu
+     * @param region obszar zainteresowania; część poza obrazem jest pomijana
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @return mapa krawędzi o wymiarach części obszaru leżącej w obrazie
+     * @throws IOException błąd odczytu fragmentu obrazu
+     * @throws IllegalArgumentException gdy obszar nie ma części wspólnej z obrazem
+     */
+    public EdgeMap computeEdges(ImageRegionReader source, Rectangle region, int parallelism) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        Rectangle bounds = new Rectangle(width, height);
+        Rectangle target = region.intersection(bounds);
+        if (target.isEmpty()) {
+            throw new IllegalArgumentException("Obszar " + region + " nie ma części wspólnej z obrazem");
         }
-        //lewy pas
-        for(int i = 0; i < gapWidth; ++i) {
-            for (int j = gapHeight; j < smallArrayHeight + gapHeight; ++j) {
-                paddedArray[i][j] = smallArray[gapWidth-1-i][j-gapHeight];
+        Rectangle known = new Rectangle();
+        byte[] strength = new byte[0];
+        for (int margin = REGION_MARGIN; ; margin *= 2) {
+            Rectangle grown = grow(target, margin, margin, width, height);
+            strength = growStrengthFlags(source, known, strength, grown, parallelism);
+            known = grown;
+            byte[] edges = strength.clone();
+            Hysteresis.track(edges, known.width, known.height, parallelism);
+            // prostokąty we współrzędnych tablicy flag
+            Rectangle knownTarget = new Rectangle(target.x - known.x, target.y - known.y, target.width, target.height);
+            Rectangle knownBounds = new Rectangle(-known.x, -known.y, width, height);
+            if (known.equals(bounds) || !Hysteresis.reachesUnknown(strength, edges, known.width,
+                    new Rectangle(known.width, known.height), knownBounds, knownTarget)) {
+                byte[] pixels = new byte[target.width * target.height];
+                for (int y = 0; y < target.height; ++y) {
+                    System.arraycopy(edges, (knownTarget.y + y) * known.width + knownTarget.x, pixels,
+                            y * target.width, target.width);
+                }
+                return new EdgeMap(target.width, target.height, pixels);
             }
         }
-        //prawy pas
-        for(int i = 0; i < gapWidth; ++i) {
-            for (int j = gapHeight; j < smallArrayHeight + gapHeight; ++j) {
-                paddedArray[width-1-i][j] = smallArray[smallArrayWidth-gapWidth-1+i][j-gapHeight];
-            }
+    }
+
+    /**
+     * Metoda powiększa tablicę flag siły pikseli z prostokąta known do prostokąta grown, wyznaczając flagi tylko
+     * dla pierścienia dołożonego wokół known. Fragment obrazu z halo jest czytany raz dla całego prostokąta grown.
+     * @param source źródło fragmentów obrazu
+     * @param known prostokąt, dla którego wyznaczono już flagi; pusty przy pierwszym wywołaniu
+     * @param strength flagi prostokąta known zapisane wierszami
+     * @param grown prostokąt zawierający known
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @return flagi prostokąta grown zapisane wierszami
+     * @throws IOException błąd odczytu fragmentu obrazu
+     */
+    private byte[] growStrengthFlags(ImageRegionReader source, Rectangle known, byte[] strength, Rectangle grown,
+                                     int parallelism) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        byte[] flags = new byte[grown.width * grown.height];
+        for (int y = 0; y < known.height; ++y) {
+            System.arraycopy(strength, y * known.width, flags,
+                    (known.y - grown.y + y) * grown.width + known.x - grown.x, known.width);
         }
-        //dolny pas
-        for(int i = gapWidth; i < smallArrayWidth + gapWidth; ++i) {
-            for (int j = 0; j < gapHeight; ++j) {
-                paddedArray[i][height-1-j] = smallArray[i-gapWidth][smallArrayHeight-gapHeight-1+j];
-            }
+        List<Rectangle> ring = new ArrayList<>();
+        if (known.isEmpty()) {
+            ring.add(grown);
+        } else {
+            int knownBottom = known.y + known.height;
+            int knownRight = known.x + known.width;
+            ring.add(new Rectangle(grown.x, grown.y, grown.width, known.y - grown.y));
+            ring.add(new Rectangle(grown.x, knownBottom, grown.width, grown.y + grown.height - knownBottom));
+            ring.add(new Rectangle(grown.x, known.y, known.x - grown.x, known.height));
+            ring.add(new Rectangle(knownRight, known.y, grown.x + grown.width - knownRight, known.height));
         }
-        //wnętrze obrazka
-        for(int i = gapWidth; i < smallArrayWidth + gapWidth; ++i) {
-            for (int j = gapHeight; j < smallArrayHeight + gapHeight; ++j) {
-                paddedArray[i][j] = smallArray[i-gapWidth][j-gapHeight];
+        Rectangle crop = grow(grown, TOTAL_HALO, TOTAL_HALO, width, height);
+        BufferedImage image = source.read(crop);
+        Workspace workspace = Workspace.acquire();
+        try {
+            for (Rectangle part : ring) {
+                if (part.isEmpty()) {
+                    continue;
+                }
+                Rectangle partCrop = grow(part, TOTAL_HALO, TOTAL_HALO, width, height);
+                ProgressListener recorder = new StageRecorder(ProgressListener.NONE, (long) partCrop.width * partCrop.height);
+                byte[] partFlags = computeStrengthFlags(image.getSubimage(partCrop.x - crop.x, partCrop.y - crop.y,
+                        partCrop.width, partCrop.height), parallelism, null, workspace, recorder).getPixels();
+                for (int y = 0; y < part.height; ++y) {
+                    System.arraycopy(partFlags, (part.y - partCrop.y + y) * partCrop.width + part.x - partCrop.x, flags,
+                            (part.y - grown.y + y) * grown.width + part.x - grown.x, part.width);
+                }
             }
+        } finally {
+            workspace.release();
         }
-        return paddedArray;
+        return flags;
     }
 
     /**
-     * Metoda pozwalająca na stworzenie paddingu i zaaplikowanie konwolucji dla całego obrazu
-     * @param pixelArray macierz obrazu wejściowego
-     * @param kernel maska, która ma zostać zaaplikowana
-     * @return macierz obrazu po konwolucji
+     * Metoda wykonuje kroki algorytmu poprzedzające histerezę w wybranej arytmetyce
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @param reuse mapa nadpisywana, jeśli ma rozmiary obrazu, lub null
+     * @param workspace obszar roboczy, z którego brane są płaszczyzny pośrednie
+     * @param recorder odbiorca postępu
+     * @return mapa flag siły pikseli (patrz {@link Hysteresis})
      */
-    private double[][] applyKernel(double[][] pixelArray, double[][] kernel){
-        double[][] biggerPixelArray = createPaddedArray(pixelArray, kernel);
-        return applyConvolution(biggerPixelArray, kernel);
+    private EdgeMap computeStrengthFlags(BufferedImage sourceImage, int parallelism, EdgeMap reuse, Workspace workspace,
+                                         ProgressListener recorder) {
+        if (arithmetic == Arithmetic.FIXED_POINT) {
+            int width = sourceImage.getWidth();
+            int height = sourceImage.getHeight();
+            int[] denoised = computeDenoised(sourceImage, parallelism, workspace, recorder);
+            long lower = FixedPointCanny.squaredThreshold(lowerThreshold);
+            long higher = FixedPointCanny.squaredThreshold(higherThreshold);
+            return strengthFlags(width, height, parallelism, reuse, recorder, (edges, fromRow, toRow) ->
+                    FixedPointCanny.suppressAndThreshold(denoised, width, height, fromRow, toRow, null, lower, higher, edges));
+        }
+        PixelPlane suppressedMagnitude = workspace.plane(Workspace.Slot.SUPPRESSED, sourceImage.getWidth(), sourceImage.getHeight());
+        computeSuppressedMagnitude(sourceImage, suppressedMagnitude, parallelism, workspace, recorder);
+        return strengthFlags(suppressedMagnitude.getWidth(), suppressedMagnitude.getHeight(), parallelism, reuse, recorder,
+                (edges, fromRow, toRow) -> setStrengthFlag(suppressedMagnitude, edges, fromRow, toRow));
     }
 
     /**
-     * Metoda pozwalająca zaaplikowanie konwolucji dla całego obrazu
-     * @param input macierz obrazu wejściowego
-     * @param kernel maska, która ma zostać zaaplikowana
-     * @return macierz będąca wynikiem konwolucji
+     * Metoda wykonująca algorytm dla poziomu piramidy obrazu, np. jako szybki podgląd: poziom 1 ma 1/4, a poziom 2
+     * 1/16 pikseli obrazu. Dla poziomu 0 wynik jest identyczny z {@link #computeEdges(BufferedImage, int)}
+     * w arytmetyce {@link Arithmetic#FLOAT}, której metoda używa zawsze, bo poziomy piramidy są płaszczyznami float.
+     * Progi nie są skalowane: rozmycie poprzedzające pomniejszenie zachowuje wysokość skoku jasności na krawędzi,
+     * więc natężenie gradientu wyraźnych krawędzi jest na kolejnych poziomach podobne.
+     * @param pyramid piramida obrazu
+     * @param level numer poziomu
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @return mapa krawędzi o wymiarach poziomu (patrz {@link ImagePyramid#expand})
      */
-    private double[][] applyConvolution(double[][] input, double[][] kernel){
-        int width = input.length;
-        int height = input[0].length;
-        int kernelWidth = kernel.length;
-        int kernelHeight = kernel[0].length;
-        int gapWidth = (int) ((kernelWidth) / 2.0);
-        int gapHeight = (int) ((kernelHeight) / 2.0);
-        double[][] output = new double[width - 2*gapWidth][height - 2*gapHeight];
-        for (int i = gapWidth; i < width - gapWidth; ++i) {
-            for (int j = gapHeight; j < height - gapHeight; ++j) {
-                output[i-gapWidth][j-gapHeight] = returnConvValue(input, i, j, kernel);
-            }
+    public EdgeMap computeEdges(ImagePyramid pyramid, int level, int parallelism) {
+        PixelPlane gray = pyramid.getLevel(level);
+        Workspace workspace = Workspace.acquire();
+        try {
+            ProgressListener recorder = new StageRecorder(ProgressListener.NONE, (long) gray.getWidth() * gray.getHeight());
+            recorder.stageFinished("Skala szarości", 1, STAGE_COUNT);
+            PixelPlane suppressedMagnitude = workspace.plane(Workspace.Slot.SUPPRESSED, gray.getWidth(), gray.getHeight());
+            computeSuppressedMagnitude(gray, suppressedMagnitude, parallelism, workspace, recorder);
+            return threshold(suppressedMagnitude, parallelism, null, recorder);
+        } finally {
+            workspace.release();
         }
-        return output;
     }
 
     /**
-     * Metoda pozwalająca na obliczenie wartości wartości konkretnego piksela,
-     * będącego wynikiem splotu obrazu z maską
-     * @param input macierz obrazu wejściowego z uwzględnionym paddingiem
-     * @param x wartość indeksu x dla obliczanego piksela
-     * @param y wartość indeksu y dla obliczanego piksela
-     * @param kernel aplikowana maska
-     * @return wartość piksela po splocie obrazu z maską
-     */
-    private double returnConvValue(double[][] input, int x, int y, double[][] kernel){
-        double output = 0;
-        int kernelWidth = kernel.length;
-        int kernelHeight = kernel[0].length;
-        int gapWidth = (int) ((kernelWidth) / 2.0);
-        int gapHeight = (int) ((kernelHeight) / 2.0);
-        for (int i = 0; i < kernel.length; ++i) {
-            for (int j = 0; j < kernel[0].length; ++j) {
-                output = output + (input[x + i - gapWidth][y + j - gapHeight] * kernel[i][j]);
-            }
+     * Metoda wykonująca algorytm od poziomu zgrubnego do pełnej rozdzielczości: krawędzie są najpierw wyznaczane
+     * dla poziomu coarseLevel, a następnie w pełnej rozdzielczości przeliczane są tylko kafelki
+     * {@value #REFINE_TILE_SIZE}x{@value #REFINE_TILE_SIZE} zawierające piksele krawędzi zgrubnych, wraz z kafelkami
+     * sąsiednimi. W tych kafelkach flagi siły pikseli są identyczne z flagami dla całego obrazu, a pozostałe piksele
+     * nie są krawędziami, więc wynik różni się od {@link #computeEdges(BufferedImage, int)} tylko krawędziami
+     * niewidocznymi na poziomie zgrubnym i słabymi krawędziami, które łączyły się z silnymi poza przeliczonymi
+     * kafelkami. Dla obrazów z nielicznymi krawędziami koszt pełnej rozdzielczości maleje proporcjonalnie do
+     * pola przeliczonych kafelków. Obliczenia są wykonywane w arytmetyce {@link Arithmetic#FLOAT}.
+     * @param pyramid piramida obrazu
+     * @param coarseLevel numer poziomu, na którym wyszukiwane są krawędzie zgrubne
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @return mapa krawędzi o wymiarach obrazu
+     */
+    public EdgeMap computeEdgesRefined(ImagePyramid pyramid, int coarseLevel, int parallelism) {
+        EdgeMap coarse = computeEdges(pyramid, coarseLevel, parallelism);
+        PixelPlane gray = pyramid.getLevel(0);
+        int width = gray.getWidth();
+        int height = gray.getHeight();
+        List<Rectangle> tiles = refineTiles(coarse, coarseLevel, width, height);
+        long pixels = 0;
+        for (Rectangle tile : tiles) {
+            pixels += (long) tile.width * tile.height;
+        }
+        EdgeMap output = EdgeMap.reuseOrCreate(null, width, height);
+        byte[] flags = output.getPixels();
+        Workspace workspace = Workspace.acquire();
+        try {
+            ProgressListener recorder = new StageRecorder(ProgressListener.NONE, pixels);
+            recorder.stageFinished("Skala szarości", 1, STAGE_COUNT);
+            PixelPlane denoised = workspace.plane(Workspace.Slot.DENOISED, width, height);
+            PixelPlane magnitude = workspace.plane(Workspace.Slot.MAGNITUDE, width, height);
+            byte[] direction = workspace.bytes(Workspace.Slot.DIRECTION, width * height);
+            PixelPlane suppressed = workspace.plane(Workspace.Slot.SUPPRESSED, width, height);
+            int blurHalo = GRADIENT_HALO + SUPPRESSION_HALO;
+            forEachTile(tiles, height, parallelism, tile -> {
+                Rectangle blurred = grow(tile, blurHalo, blurHalo, width, height);
+                Convolution.convolve2D(gray, gaussian, Convolution.Border.REFLECT, denoised,
+                        blurred.y, blurred.y + blurred.height, blurred.x, blurred.x + blurred.width);
+            });
+            recorder.stageFinished("Rozmycie Gaussa", 2, STAGE_COUNT);
+            forEachTile(tiles, height, parallelism, tile -> {
+                Rectangle region = grow(tile, SUPPRESSION_HALO, SUPPRESSION_HALO, width, height);
+                computeGradient(denoised, magnitude, direction, region.y, region.y + region.height,
+                        region.x, region.x + region.width);
+            });
+            recorder.stageFinished("Gradient", 3, STAGE_COUNT);
+            forEachTile(tiles, height, parallelism, tile -> nonMaximumSuppression(direction, magnitude, suppressed,
+                    tile.y, tile.y + tile.height, tile.x, tile.x + tile.width));
+            recorder.stageFinished(SUPPRESSION_STAGE, 4, STAGE_COUNT);
+            forEachTile(tiles, height, parallelism, tile -> setStrengthFlag(suppressed, flags,
+                    tile.y, tile.y + tile.height, tile.x, tile.x + tile.width));
+            recorder.stageFinished(THRESHOLD_STAGE, 5, STAGE_COUNT);
+            Hysteresis.track(flags, width, height, parallelism);
+            recorder.stageFinished("Histereza", 6, STAGE_COUNT);
+            return output;
+        } finally {
+            workspace.release();
         }
-        return output;
     }
 
     /**
-     * Metoda pozwalająca na obliczenie natężenia gradientu obrazu
-     * @param xGradient macierz będąca wynikiem splotu macierzy z maską filtru horyzontalnego
-     * @param yGradient macierz będąca wynikiem splotu macierzy z maską filtru wertykalnego
-     * @return macierz natężeń gradietu obrazu
+     * Metoda wyznacza kafelki pełnej rozdzielczości pokrywające piksele krawędzi zgrubnych, powiększone
+     * o jeden kafelek w każdym kierunku
+     * @param coarse mapa krawędzi poziomu zgrubnego
+     * @param level numer poziomu zgrubnego
+     * @param width szerokość obrazu
+     * @param height wysokość obrazu
+     * @return prostokąty kafelków uporządkowane wierszami
      */
-    private double[][] computeMagnitude(double[][] xGradient, double[][] yGradient){
-        int width = xGradient.length;
-        int height = xGradient[0].length;
-        double[][] magnitude = new double[width][height];
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                double pixelMagnitude = Math.sqrt(Math.pow(xGradient[i][j], 2) + Math.pow(yGradient[i][j], 2));
-                magnitude[i][j] = pixelMagnitude;
+    static List<Rectangle> refineTiles(EdgeMap coarse, int level, int width, int height) {
+        int tilesAcross = (width + REFINE_TILE_SIZE - 1) / REFINE_TILE_SIZE;
+        int tilesDown = (height + REFINE_TILE_SIZE - 1) / REFINE_TILE_SIZE;
+        boolean[] covered = new boolean[tilesAcross * tilesDown];
+        byte[] pixels = coarse.getPixels();
+        int coarseWidth = coarse.getWidth();
+        for (int cy = 0; cy < coarse.getHeight(); ++cy) {
+            for (int cx = 0; cx < coarseWidth; ++cx) {
+                if (pixels[cy * coarseWidth + cx] == 0) {
+                    continue;
+                }
+                int fromX = Math.min(cx << level, width - 1) / REFINE_TILE_SIZE;
+                int toX = Math.min(((cx + 1) << level) - 1, width - 1) / REFINE_TILE_SIZE;
+                int fromY = Math.min(cy << level, height - 1) / REFINE_TILE_SIZE;
+                int toY = Math.min(((cy + 1) << level) - 1, height - 1) / REFINE_TILE_SIZE;
+                for (int ty = Math.max(fromY - 1, 0); ty <= Math.min(toY + 1, tilesDown - 1); ++ty) {
+                    for (int tx = Math.max(fromX - 1, 0); tx <= Math.min(toX + 1, tilesAcross - 1); ++tx) {
+                        covered[ty * tilesAcross + tx] = true;
+                    }
+                }
             }
         }
-        return magnitude;
-    }
-
-    /**
-     * Metoda pozwalająca na zwrócenie kierunku krawędzi
-     * zaokrąglona do jednej z czterech możliwych wartości - 0°, 45°, 90°, 135°.
-     * @param xGradient macierz będąca wynikiem splotu macierzy z maską filtru horyzontalnego
-     * @param yGradient macierz będąca wynikiem splotu macierzy z maską filtru wertykalnego
-     * @return macierz kierunków krawędzi
-     */
-    private int[][] computeDirection(double[][] xGradient, double[][] yGradient){
-        int width = xGradient.length;
-        int height = xGradient[0].length;
-        int roundedDirection = 0;
-        int[][] direction = new int[width][height];
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                double pixelDirection = Math.atan2(yGradient[i][j], xGradient[i][j]);
-                roundedDirection = roundDirection(pixelDirection);
-                direction[i][j] = roundedDirection;
+        List<Rectangle> tiles = new ArrayList<>();
+        for (int ty = 0; ty < tilesDown; ++ty) {
+            for (int tx = 0; tx < tilesAcross; ++tx) {
+                if (covered[ty * tilesAcross + tx]) {
+                    int x = tx * REFINE_TILE_SIZE;
+                    int y = ty * REFINE_TILE_SIZE;
+                    tiles.add(new Rectangle(x, y, Math.min(REFINE_TILE_SIZE, width - x), Math.min(REFINE_TILE_SIZE, height - y)));
+                }
             }
         }
-        return direction;
+        return tiles;
     }
 
     /**
-     * Metoda pozwalająca na zaokrąglanie kierunków krawędzi
-     * @param pixelDirection wartość kierunku dla danego poksela z zakresu od -pi do pi
-     * @return jedna z czterech możliwych wartości kierunku
+     * Interfejs operacji wykonywanej dla jednego kafelka
      */
-    private int roundDirection(double pixelDirection){
-        double absDirection = Math.abs(pixelDirection);
-        int roundedDirection = 0;
-        absDirection = Math.toDegrees(absDirection);
-        if((absDirection >= 0 && absDirection < 22.5) || (absDirection >= 157.5 && absDirection <= 180)){
-            roundedDirection = 0;
-        }
-        else if(absDirection >= 22.5 && absDirection < 67.5){
-            roundedDirection = 45;
-        }
-        else if(absDirection >= 67.5 && absDirection < 112.5){
-            roundedDirection = 90;
-        }
-        else if(absDirection >= 112.5 && absDirection < 157.5){
-            roundedDirection = 135;
-        }
-        return roundedDirection;
+    private interface TileAction {
+        void process(Rectangle tile);
     }
 
     /**
-     * Metoda pozwalająca na pocienianie wykrytych krawędzi, poprzez zerowanie pikseli niemaksymalnych
-     * @param direction macierz wartości kierunków krawędzi
-     * @param magnitude macierz natężeń gradietu obrazu
-     * @return macierz pocienionych krawędzi
+     * Metoda wykonuje operację dla kafelków, dzieląc je według pierwszego wiersza na kafelki wierszy przetwarzane
+     * równolegle. Kafelki sąsiednie zapisują w swoim halo te same wartości, więc kolejność nie zmienia wyniku.
      */
-    private double[][] nonMaximumSuppression(int[][] direction, double[][] magnitude) {
-        int width = magnitude.length;
-        int height = magnitude[0].length;
-        double[][] suppressedMagnitude = createZerosArray(width, height);
-
-        for (int i = 1; i < width-1; ++i) {
-            for (int j = 1; j < height-1; ++j) {
-                if (direction[i][j] == 0) {
-                    if ((magnitude[i][j] > magnitude[i-1][j]) && (magnitude[i][j] >   magnitude[i+1][j])) {
-                        suppressedMagnitude[i][j] = magnitude[i][j];
-                    }
+    private static void forEachTile(List<Rectangle> tiles, int height, int parallelism, TileAction action) {
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> {
+            for (Rectangle tile : tiles) {
+                if (tile.y >= fromRow && tile.y < toRow) {
+                    action.process(tile);
                 }
-                else if (direction[i][j] == 45) {
-                    if ((magnitude[i][j] > magnitude[i-1][j-1]) && (magnitude[i][j] > magnitude[i+1][j+1])) {
-                        suppressedMagnitude[i][j] = magnitude[i][j];
-                    }
-                }
-                else if (direction[i][j] == 90) {
-                    if ((magnitude[i][j] > magnitude[i][j+1]) && (magnitude[i][j] > magnitude[i][j-1])) {
-                        suppressedMagnitude[i][j] = magnitude[i][j];
+            }
+        });
+    }
+
+    /**
+     * Metoda powiększa prostokąt o podaną liczbę kolumn i wierszy z każdej strony, przycinając go do obrazu
+     */
+    private static Rectangle grow(Rectangle rectangle, int columns, int rows, int width, int height) {
+        Rectangle grown = new Rectangle(rectangle);
+        grown.grow(columns, rows);
+        return grown.intersection(new Rectangle(width, height));
+    }
+
+    /**
+     * Metoda wykonująca algorytm tak jak {@link #computeEdges(BufferedImage, int, EdgeMap)}, zapamiętująca natężenie
+     * gradientu po pocienianiu krawędzi. Tylko ten krok zależy od obrazu, a nie od progów, dlatego kolejne wywołanie
+     * dla tego samego obiektu obrazu, np. po zmianie progów metodą {@link #setThresholds}, powtarza wyłącznie
+     * progowanie i histerezę. Obraz jest rozpoznawany po tożsamości obiektu; po zmianie jego pikseli
+     * należy wywołać {@link #clearCache()}.
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param parallelism liczba kafelków przetwarzanych równolegle; 1 oznacza przetwarzanie w bieżącym wątku
+     * @param reuse mapa poprzedniego wyniku, nadpisywana, jeśli ma rozmiary obrazu; null lub inne rozmiary oznaczają nową mapę
+     * @return mapa krawędzi z wartościami 0 lub 255
+     */
+    public EdgeMap computeEdgesCached(BufferedImage sourceImage, int parallelism, EdgeMap reuse) {
+        return computeEdgesCached(sourceImage, parallelism, reuse, ProgressListener.NONE);
+    }
+
+    /**
+     * Metoda wykonująca algorytm tak jak {@link #computeEdgesCached(BufferedImage, int, EdgeMap)}, zgłaszająca
+     * zakończenie kolejnych etapów; etapy pominięte dzięki zapamiętanym wynikom są zgłaszane jednym wywołaniem.
+     * Przerwanie algorytmu przed pocienianiem krawędzi usuwa zapamiętane wyniki.
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param parallelism liczba kafelków przetwarzanych równolegle; 1 oznacza przetwarzanie w bieżącym wątku
+     * @param reuse mapa poprzedniego wyniku, nadpisywana, jeśli ma rozmiary obrazu; null lub inne rozmiary oznaczają nową mapę
+     * @param listener odbiorca postępu, który może przerwać algorytm wyjątkiem CancellationException
+     * @return mapa krawędzi z wartościami 0 lub 255
+     */
+    public synchronized EdgeMap computeEdgesCached(BufferedImage sourceImage, int parallelism, EdgeMap reuse,
+                                                   ProgressListener listener) {
+        int width = sourceImage.getWidth();
+        int height = sourceImage.getHeight();
+        ProgressListener recorder;
+        if (sourceImage != cachedImage) {
+            cachedImage = null;
+            recorder = new StageRecorder(listener, (long) width * height);
+            Workspace workspace = Workspace.acquire();
+            try {
+                if (arithmetic == Arithmetic.FIXED_POINT) {
+                    if (cachedSuppressedSquares == null || cachedSuppressedSquares.length != width * height) {
+                        cachedSuppressedSquares = new long[Math.multiplyExact(width, height)];
                     }
-                }
-                else if (direction[i][j] == 135) {
-                    if ((magnitude[i][j] > magnitude[i-1][j+1]) && (magnitude[i][j] > magnitude[i+1][j-1])) {
-                        suppressedMagnitude[i][j] = magnitude[i][j];
+                    int[] denoised = computeDenoised(sourceImage, parallelism, workspace, recorder);
+                    long[] suppressedSquares = cachedSuppressedSquares;
+                    RowTiles.forEach(height, parallelism, (fromRow, toRow) -> FixedPointCanny.suppressAndThreshold(
+                            denoised, width, height, fromRow, toRow, suppressedSquares, 0, 0, null));
+                    recorder.stageFinished(SUPPRESSION_STAGE, 4, STAGE_COUNT);
+                } else {
+                    if (cachedSuppressedMagnitude == null || cachedSuppressedMagnitude.getWidth() != width
+                            || cachedSuppressedMagnitude.getHeight() != height) {
+                        cachedSuppressedMagnitude = new PixelPlane(width, height);
                     }
+                    computeSuppressedMagnitude(sourceImage, cachedSuppressedMagnitude, parallelism, workspace, recorder);
                 }
+            } finally {
+                workspace.release();
             }
+            cachedImage = sourceImage;
+        } else {
+            listener.stageFinished(SUPPRESSION_STAGE, 4, STAGE_COUNT);
+            recorder = new StageRecorder(listener, (long) width * height);
+        }
+        if (arithmetic == Arithmetic.FIXED_POINT) {
+            return threshold(cachedSuppressedSquares, width, height, parallelism, reuse, recorder);
         }
-        return suppressedMagnitude;
+        return threshold(cachedSuppressedMagnitude, parallelism, reuse, recorder);
     }
 
     /**
-     * Metoda pozwalająca na ustawienie jednej z trzech wartości "siły" piksela
-     * @param suppressedMagnitude macierz pocienionych krawędzi
-     * @return macierz wartości siły dla każdego piksela:
-     * 1 dla piksela powyżej wyższego progu
-     * 0.5 dla piksela powyżej niższego progu, a poniżej wyższego
-     * 0 dla piksela poniżej niższego progu
-     */
-    private double[][] setStrengthFlag(double[][] suppressedMagnitude){
-        int width = suppressedMagnitude.length;
-        int height = suppressedMagnitude[0].length;
-        double[][] thresholdFlags = new double[width][height];
-        for (int i = 0; i < width; ++i) {
-            for (int j = 0; j < height; ++j) {
-                if (suppressedMagnitude[i][j] >= higherThreshold){
-                    thresholdFlags[i][j] = 1;
+     * Metoda usuwa zapamiętane natężenie gradientu, zwalniając jego pamięć
+     */
+    public synchronized void clearCache() {
+        cachedImage = null;
+        cachedSuppressedMagnitude = null;
+        cachedSuppressedSquares = null;
+    }
+
+    /**
+     * Metoda wykonuje kroki algorytmu niezależne od progów: konwersję do skali szarości, rozmycie, gradient
+     * i pocienianie krawędzi
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param suppressedMagnitude płaszczyzna o rozmiarach obrazu, do której zapisywane są pocienione krawędzie
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @param workspace obszar roboczy, z którego brane są płaszczyzny pośrednie
+     * @param listener odbiorca postępu
+     */
+    private void computeSuppressedMagnitude(BufferedImage sourceImage, PixelPlane suppressedMagnitude, int parallelism,
+                                            Workspace workspace, ProgressListener listener) {
+        int height = sourceImage.getHeight();
+        PixelPlane grayscaleArray = workspace.plane(Workspace.Slot.GRAY, sourceImage.getWidth(), height);
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> convertToGrayscale(sourceImage, grayscaleArray, fromRow, toRow));
+        listener.stageFinished("Skala szarości", 1, STAGE_COUNT);
+        computeSuppressedMagnitude(grayscaleArray, suppressedMagnitude, parallelism, workspace, listener);
+    }
+
+    /**
+     * Metoda wykonuje w arytmetyce stałoprzecinkowej konwersję do skali szarości (jako sumy składowych) i rozmycie
+     * @param sourceImage wczytany obraz wejsciowy
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @param workspace obszar roboczy, z którego brane są tablice pośrednie
+     * @param listener odbiorca postępu
+     * @return obraz po rozmyciu w jednostkach {@value FixedPointCanny#SCALE} na poziom jasności,
+     * tablica z miejsca {@link Workspace.Slot#DENOISED}
+     */
+    private int[] computeDenoised(BufferedImage sourceImage, int parallelism, Workspace workspace, ProgressListener listener) {
+        int width = sourceImage.getWidth();
+        int height = sourceImage.getHeight();
+        int pixels = Math.multiplyExact(width, height);
+        short[] graySum = workspace.shorts(Workspace.Slot.GRAY, pixels);
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> ImageConverter.toChannelSum(sourceImage, graySum, fromRow, toRow));
+        listener.stageFinished("Skala szarości", 1, STAGE_COUNT);
+        int[] denoised = workspace.ints(Workspace.Slot.DENOISED, pixels);
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> FixedPointCanny.blur(graySum, denoised, width, height, fromRow, toRow));
+        listener.stageFinished("Rozmycie Gaussa", 2, STAGE_COUNT);
+        return denoised;
+    }
+
+    /**
+     * Metoda wykonuje progowanie i histerezę na pocienionych krawędziach
+     * @param suppressedMagnitude płaszczyzna pocienionych krawędzi
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @param reuse mapa nadpisywana, jeśli ma rozmiary płaszczyzny, lub null
+     * @param listener odbiorca postępu
+     * @return mapa krawędzi z wartościami 0 lub 255
+     */
+    private EdgeMap threshold(PixelPlane suppressedMagnitude, int parallelism, EdgeMap reuse, ProgressListener listener) {
+        return threshold(suppressedMagnitude.getWidth(), suppressedMagnitude.getHeight(), parallelism, reuse, listener,
+                (edges, fromRow, toRow) -> setStrengthFlag(suppressedMagnitude, edges, fromRow, toRow));
+    }
+
+    /**
+     * Metoda wykonuje progowanie i histerezę na kwadratach natężenia pocienionych krawędzi
+     * @param suppressedSquares kwadraty natężenia pocienionych krawędzi w jednostkach stałoprzecinkowych
+     * @param width szerokość obrazu
+     * @param height wysokość obrazu
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @param reuse mapa nadpisywana, jeśli ma rozmiary obrazu, lub null
+     * @param listener odbiorca postępu
+     * @return mapa krawędzi z wartościami 0 lub 255
+     */
+    private EdgeMap threshold(long[] suppressedSquares, int width, int height, int parallelism, EdgeMap reuse,
+                              ProgressListener listener) {
+        long lower = FixedPointCanny.squaredThreshold(lowerThreshold);
+        long higher = FixedPointCanny.squaredThreshold(higherThreshold);
+        return threshold(width, height, parallelism, reuse, listener, (edges, fromRow, toRow) ->
+                FixedPointCanny.setStrengthFlags(suppressedSquares, lower, higher, edges, width, fromRow, toRow));
+    }
+
+    /**
+     * Interfejs operacji ustawiającej flagi siły pikseli dla zakresu wierszy [fromRow, toRow)
+     */
+    private interface StrengthFlags {
+        void set(byte[] thresholdFlags, int fromRow, int toRow);
+    }
+
+    /**
+     * Metoda wykonuje progowanie operacją flags, a następnie histerezę
+     */
+    private EdgeMap threshold(int width, int height, int parallelism, EdgeMap reuse, ProgressListener listener,
+                              StrengthFlags flags) {
+        EdgeMap output = strengthFlags(width, height, parallelism, reuse, listener, flags);
+        Hysteresis.track(output.getPixels(), width, height, parallelism);
+        listener.stageFinished("Histereza", 6, STAGE_COUNT);
+        return output;
+    }
+
+    /**
+     * Metoda wykonuje progowanie operacją flags, bez histerezy
+     */
+    private EdgeMap strengthFlags(int width, int height, int parallelism, EdgeMap reuse, ProgressListener listener,
+                                  StrengthFlags flags) {
+        EdgeMap output = EdgeMap.reuseOrCreate(reuse, width, height);
+        byte[] edges = output.getPixels();
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> flags.set(edges, fromRow, toRow));
+        listener.stageFinished(THRESHOLD_STAGE, 5, STAGE_COUNT);
+        return output;
+    }
+
+    /**
+     * Metoda wykonuje kroki algorytmu poprzedzające histerezę: rozmycie, gradient, pocienianie krawędzi i progowanie.
+     * Wiersz wyniku zależy tylko od wierszy płaszczyzny odległych o co najwyżej {@value #TOTAL_HALO},
+     * dlatego obraz może być przetwarzany pasami z takim zakładem (patrz {@link StreamingEdgeDetection}).
+     * Etapy są mierzone tak jak w {@link #computeEdges(BufferedImage, int, EdgeMap, ProgressListener)}.
+     * @param grayscaleArray płaszczyzna obrazu w skali szarości
+     * @param edges tablica o rozmiarze płaszczyzny, do której zapisywane są flagi siły pikseli
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @param workspace obszar roboczy, z którego brane są płaszczyzny pośrednie
+     */
+    void computeStrengthFlags(PixelPlane grayscaleArray, byte[] edges, int parallelism, Workspace workspace) {
+        PixelPlane suppressedMagnitude = workspace.plane(Workspace.Slot.SUPPRESSED, grayscaleArray.getWidth(), grayscaleArray.getHeight());
+        ProgressListener recorder = new StageRecorder(ProgressListener.NONE,
+                (long) grayscaleArray.getWidth() * grayscaleArray.getHeight());
+        computeSuppressedMagnitude(grayscaleArray, suppressedMagnitude, parallelism, workspace, recorder);
+        RowTiles.forEach(grayscaleArray.getHeight(), parallelism, (fromRow, toRow) -> setStrengthFlag(suppressedMagnitude, edges, fromRow, toRow));
+        recorder.stageFinished(THRESHOLD_STAGE, 5, STAGE_COUNT);
+    }
+
+    /**
+     * Metoda wykonuje rozmycie, obliczenie gradientu i pocienianie krawędzi płaszczyzny w skali szarości
+     * @param grayscaleArray płaszczyzna obrazu w skali szarości
+     * @param suppressedMagnitude płaszczyzna o rozmiarach wejścia, do której zapisywane są pocienione krawędzie
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @param workspace obszar roboczy, z którego brane są płaszczyzny pośrednie
+     * @param listener odbiorca postępu
+     */
+    private void computeSuppressedMagnitude(PixelPlane grayscaleArray, PixelPlane suppressedMagnitude, int parallelism,
+                                            Workspace workspace, ProgressListener listener) {
+        int width = grayscaleArray.getWidth();
+        int height = grayscaleArray.getHeight();
+        PixelPlane denoisedArray = workspace.plane(Workspace.Slot.DENOISED, width, height);
+        Convolution.convolve(grayscaleArray, gaussian, Convolution.Border.REFLECT, denoisedArray, parallelism, workspace);
+        listener.stageFinished("Rozmycie Gaussa", 2, STAGE_COUNT);
+        PixelPlane magnitude = workspace.plane(Workspace.Slot.MAGNITUDE, width, height);
+        byte[] direction = workspace.bytes(Workspace.Slot.DIRECTION, width * height);
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> computeGradient(denoisedArray, magnitude, direction, fromRow, toRow));
+        listener.stageFinished("Gradient", 3, STAGE_COUNT);
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> nonMaximumSuppression(direction, magnitude, suppressedMagnitude, fromRow, toRow));
+        listener.stageFinished(SUPPRESSION_STAGE, 4, STAGE_COUNT);
+    }
+
+    /**
+     * Metoda pozwalająca na konwersję wierszy obrazu do skali szarości,
+     * odczytująca piksele hurtowo z rastra bez płaszczyzn pośrednich dla składowych RGB
+     * @param image obraz wejściowy
+     * @param grayscaleArray płaszczyzna wartości pikseli w skali szarości
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    private void convertToGrayscale(BufferedImage image, PixelPlane grayscaleArray, int fromRow, int toRow){
+        ImageConverter.toGrayscale(image, grayscaleArray, fromRow, toRow);
+    }
+
+    /**
+     * Metoda pozwalająca na obliczenie w jednym przebiegu natężenia i kierunku gradientu obrazu.
+     * Gradienty Sobela w osi x i y są liczone z jednego odczytu sąsiedztwa 3x3 każdego piksela
+     * (z odbiciem lustrzanym na brzegach) i przechowywane tylko dla bieżącego wiersza, w buforach obszaru roboczego wątku.
+     * Kolumny wewnętrzne liczy implementacja z {@link ConvolutionBackends}, kolumny brzegowe pętla poniżej.
+     * @param denoisedArray płaszczyzna obrazu po odszumieniu
+     * @param magnitude płaszczyzna, do której zapisywane jest natężenie gradientu
+     * @param direction tablica, do której zapisywane są kody kierunków gradientu (patrz {@link #quantizeDirection})
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    void computeGradient(PixelPlane denoisedArray, PixelPlane magnitude, byte[] direction, int fromRow, int toRow){
+        computeGradient(denoisedArray, magnitude, direction, fromRow, toRow, 0, denoisedArray.getWidth());
+    }
+
+    /**
+     * Metoda oblicza natężenie i kierunek gradientu tak jak {@link #computeGradient(PixelPlane, PixelPlane, byte[], int, int)},
+     * tylko dla kolumn [fromX, toX); wynik jest identyczny co do bitu z wynikiem dla całych wierszy
+     * @param denoisedArray płaszczyzna obrazu po odszumieniu
+     * @param magnitude płaszczyzna, do której zapisywane jest natężenie gradientu
+     * @param direction tablica, do której zapisywane są kody kierunków gradientu
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     * @param fromX pierwsza przetwarzana kolumna
+     * @param toX kolumna za ostatnią przetwarzaną
+     */
+    void computeGradient(PixelPlane denoisedArray, PixelPlane magnitude, byte[] direction, int fromRow, int toRow,
+                         int fromX, int toX) {
+        int width = denoisedArray.getWidth();
+        int height = denoisedArray.getHeight();
+        float[] d = denoisedArray.getData();
+        float[] m = magnitude.getData();
+        Workspace workspace = Workspace.current();
+        float[] gx = workspace.floats(Workspace.Slot.GRADIENT_X, width);
+        float[] gy = workspace.floats(Workspace.Slot.GRADIENT_Y, width);
+        ConvolutionBackend backend = ConvolutionBackends.current();
+        for (int j = fromRow; j < toRow; ++j) {
+            int up = denoisedArray.index(0, Convolution.reflect(j - 1, height));
+            int middle = denoisedArray.index(0, j);
+            int down = denoisedArray.index(0, Convolution.reflect(j + 1, height));
+            int p = magnitude.index(0, j);
+            if (width > 2) {
+                int innerFrom = Math.max(fromX, 1);
+                int innerTo = Math.min(toX, width - 1);
+                if (innerFrom < innerTo) {
+                    backend.sobelRow(d, up, middle, down, gx, gy, m, p, innerFrom, innerTo);
                 }
-                else if (suppressedMagnitude[i][j] >= lowerThreshold){
-                    thresholdFlags[i][j] = 0.5;
+                if (fromX == 0) {
+                    borderGradient(d, up, middle, down, width, 0, gx, gy, m, p);
                 }
-                else if (suppressedMagnitude[i][j] < lowerThreshold){
-                    thresholdFlags[i][j] = 0;
+                if (toX == width) {
+                    borderGradient(d, up, middle, down, width, width - 1, gx, gy, m, p);
                 }
-            }
-        }
-        return thresholdFlags;
-    }
-
-    /**
-     * Metoda ustawiająca maksymalną jasność dla:
-     * - pikseli oznaczonych 1,
-     * - pikseli oznaczonych 0.5, które mają w najbliższym sąsiedztwie siłę 1.
-     * @param thresholdFlags macierz flag dla pikseli obrazów
-     * @param suppressedMagnitude macierz wartości pikseli po pocienieniu krawędzi
-     * @return wartości jasności pikseli po sprawdzeniu ich połączeń
-     */
-    private double[][] checkWeakPixelConnection(double[][] thresholdFlags, double[][] suppressedMagnitude) {
-        int width = suppressedMagnitude.length;
-        int height = suppressedMagnitude[0].length;
-        double[][] connected = createZerosArray(width, height);
-        for (int i = 1; i < width - 1; ++i) {
-            for (int j = 1; j < height - 1; ++j) {
-                if (thresholdFlags[i][j] == 0) {
-                    connected[i][j] = 0;
-                } else if (thresholdFlags[i][j] == 1) {
-                    connected[i][j] = 255;
-                } else if (thresholdFlags[i][j] == 0.5) {
-                    if ((thresholdFlags[i - 1][j] == 1) || (thresholdFlags[i + 1][j] == 1)) {
-                        connected[i][j] = 255;
-                    } else if ((thresholdFlags[i][j - 1] == 1) || (thresholdFlags[i][j + 1] == 1)) {
-                        connected[i][j] = 255;
-                    } else if ((thresholdFlags[i - 1][j - 1] == 1) || (thresholdFlags[i + 1][j + 1] == 1)) {
-                        connected[i][j] = 255;
-                    } else if ((thresholdFlags[i - 1][j + 1] == 1) || (thresholdFlags[i + 1][j - 1] == 1)) {
-                        connected[i][j] = 255;
-                    }
+            } else {
+                for (int i = fromX; i < toX; ++i) {
+                    borderGradient(d, up, middle, down, width, i, gx, gy, m, p);
                 }
             }
+            for (int i = fromX; i < toX; ++i) {
+                direction[j * width + i] = quantizeDirection(gx[i], gy[i]);
+            }
         }
+    }
 
-        for (int i = 1; i < width - 1; ++i) {
-            for (int j = 1; j < height - 1; ++j) {
-                if (connected[i][j] == 0.5) {
-                    connected[i][j] = 0;
-                }
-            }
+    /**
+     * Metoda oblicza gradient Sobela dla piksela z kolumny brzegowej, odbijając lustrzanie kolumny spoza obrazu
+     */
+    private void borderGradient(float[] d, int up, int middle, int down, int width, int i,
+                                float[] gx, float[] gy, float[] m, int p) {
+        int left = (i == 0) ? Convolution.reflect(-1, width) : i - 1;
+        int right = (i == width - 1) ? Convolution.reflect(width, width) : i + 1;
+        float topLeft = d[up + left], top = d[up + i], topRight = d[up + right];
+        float midLeft = d[middle + left], midRight = d[middle + right];
+        float bottomLeft = d[down + left], bottom = d[down + i], bottomRight = d[down + right];
+        gx[i] = (topRight + 2*midRight + bottomRight) - (topLeft + 2*midLeft + bottomLeft);
+        gy[i] = (bottomLeft + 2*bottom + bottomRight) - (topLeft + 2*top + topRight);
+        m[p + i] = (float) Math.sqrt(gx[i] * gx[i] + gy[i] * gy[i]);
+    }
+
+    /**
+     * Metoda pozwalająca na zaokrąglanie kierunków gradientu bez obliczania kąta.
+     * Kierunki przeciwne są utożsamiane, a sektor jest wybierany przez porównanie |gy| z tg(22,5°)|gx| i tg(67,5°)|gx|
+     * oraz zgodność znaków gx i gy (oś y skierowana w dół).
+     * @param gx gradient w osi x
+     * @param gy gradient w osi y
+     * @return kod kierunku: {@link #DIRECTION_0} - gradient poziomy, {@link #DIRECTION_45} - wzdłuż przekątnej w prawo w dół,
+     * {@link #DIRECTION_90} - gradient pionowy, {@link #DIRECTION_135} - wzdłuż przekątnej w lewo w dół
+     */
+    static byte quantizeDirection(float gx, float gy){
+        float absX = Math.abs(gx);
+        float absY = Math.abs(gy);
+        if (absY <= TAN_22_5 * absX) {
+            return DIRECTION_0;
+        }
+        if (absY >= TAN_67_5 * absX) {
+            return DIRECTION_90;
         }
-        double[][] connectedPixels = new double[width][height];
-        for (int i = 1; i < width - 1; ++i) {
-            for (int j = 1; j < height - 1; ++j) {
-                connectedPixels[i - 1][j - 1] = connected[i][j];
+        return (gx > 0) == (gy > 0) ? DIRECTION_45 : DIRECTION_135;
+    }
+
+    /**
+     * Metoda pozwalająca na pocienianie wykrytych krawędzi, poprzez zerowanie pikseli niemaksymalnych.
+     * Piksel jest porównywany z dwoma sąsiadami leżącymi wzdłuż kierunku gradientu, odległymi w tablicy
+     * o przesunięcie odczytane dla kodu kierunku z tablicy neighbourOffsets.
+     * @param direction tablica kodów kierunków gradientu
+     * @param magnitude płaszczyzna natężeń gradietu obrazu
+     * @param suppressedMagnitude płaszczyzna pocienionych krawędzi
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    void nonMaximumSuppression(byte[] direction, PixelPlane magnitude, PixelPlane suppressedMagnitude, int fromRow, int toRow) {
+        nonMaximumSuppression(direction, magnitude, suppressedMagnitude, fromRow, toRow, 0, magnitude.getWidth());
+    }
+
+    /**
+     * Metoda wykonuje pocienianie krawędzi tak jak
+     * {@link #nonMaximumSuppression(byte[], PixelPlane, PixelPlane, int, int)}, tylko dla kolumn [fromX, toX)
+     * @param direction tablica kodów kierunków gradientu
+     * @param magnitude płaszczyzna natężeń gradietu obrazu
+     * @param suppressedMagnitude płaszczyzna pocienionych krawędzi
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     * @param fromX pierwsza przetwarzana kolumna
+     * @param toX kolumna za ostatnią przetwarzaną
+     */
+    void nonMaximumSuppression(byte[] direction, PixelPlane magnitude, PixelPlane suppressedMagnitude, int fromRow, int toRow,
+                               int fromX, int toX) {
+        int width = magnitude.getWidth();
+        int height = magnitude.getHeight();
+        float[] m = magnitude.getData();
+        float[] suppressed = suppressedMagnitude.getData();
+        int[] neighbourOffsets = {1, width + 1, width, width - 1};
+
+        for (int j = fromRow; j < toRow; ++j) {
+            int row = j * width;
+            if (j == 0 || j == height - 1) {
+                Arrays.fill(suppressed, row + fromX, row + toX, 0);
+                continue;
+            }
+            if (fromX == 0) {
+                suppressed[row] = 0;
+            }
+            if (toX == width) {
+                suppressed[row + width - 1] = 0;
+            }
+            for (int p = row + Math.max(fromX, 1); p < row + Math.min(toX, width - 1); ++p) {
+                int offset = neighbourOffsets[direction[p]];
+                float value = m[p];
+                suppressed[p] = (value > m[p - offset] && value > m[p + offset]) ? value : 0;
             }
         }
-        return connectedPixels;
     }
 
     /**
-     * Metoda pozwalająca na stworzenie pliku obrazu z macierzy wartości pikseli
-     * @param array macierz wartości pikseli
-     * @return plik stworzonego obrazu
-     * @throws IOException błąd na etapie zapisu pliku
+     * Metoda pozwalająca na ustawienie jednej z trzech wartości "siły" piksela
+     * @param suppressedMagnitude płaszczyzna pocienionych krawędzi
+     * @param thresholdFlags tablica flag siły dla każdego piksela:
+     * Hysteresis.STRONG dla piksela powyżej wyższego progu,
+     * Hysteresis.WEAK dla piksela powyżej niższego progu, a poniżej wyższego,
+     * Hysteresis.NONE dla piksela poniżej niższego progu
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    void setStrengthFlag(PixelPlane suppressedMagnitude, byte[] thresholdFlags, int fromRow, int toRow){
+        int width = suppressedMagnitude.getWidth();
+        setStrengthFlagRange(suppressedMagnitude, thresholdFlags, fromRow * width, toRow * width);
+    }
+
+    /**
+     * Metoda ustawia flagi siły tak jak {@link #setStrengthFlag(PixelPlane, byte[], int, int)}, tylko dla kolumn
+     * [fromX, toX) wierszy [fromRow, toRow)
+     * @param suppressedMagnitude płaszczyzna pocienionych krawędzi
+     * @param thresholdFlags tablica flag siły dla każdego piksela
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     * @param fromX pierwsza przetwarzana kolumna
+     * @param toX kolumna za ostatnią przetwarzaną
+     */
+    void setStrengthFlag(PixelPlane suppressedMagnitude, byte[] thresholdFlags, int fromRow, int toRow, int fromX, int toX) {
+        int width = suppressedMagnitude.getWidth();
+        for (int j = fromRow; j < toRow; ++j) {
+            setStrengthFlagRange(suppressedMagnitude, thresholdFlags, j * width + fromX, j * width + toX);
+        }
+    }
+
+    /**
+     * Metoda ustawia flagi siły pikseli o indeksach [from, to)
      */
-    private File createImageFromMatrix(double[][] array) throws IOException {
-        int width = array.length;
-        int height = array[0].length;
-        BufferedImage edgeImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                int pixel = (int) array[i][j];
-                Color color = new Color(pixel, pixel, pixel);
-                edgeImage.setRGB(i, j, color.getRGB());
+    private void setStrengthFlagRange(PixelPlane suppressedMagnitude, byte[] thresholdFlags, int from, int to) {
+        float[] suppressed = suppressedMagnitude.getData();
+        for (int i = from; i < to; ++i) {
+            if (suppressed[i] >= higherThreshold){
+                thresholdFlags[i] = Hysteresis.STRONG;
+            }
+            else if (suppressed[i] >= lowerThreshold){
+                thresholdFlags[i] = Hysteresis.WEAK;
+            }
+            else {
+                thresholdFlags[i] = Hysteresis.NONE;
             }
         }
-        String g = "outputimage" + LocalTime.now();
-        g = g.replace('.', '_').replace(':', '_');
-        g = ".\\" + g + ".jpg";
-        File outputFile = new File(g);
-        ImageIO.write(edgeImage, "jpg", outputFile);
-        return outputFile;
     }
 }
@@ -0,0 +1,372 @@
+package edgedetection;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Klasa wykrywająca krawędzie algorytmem Canny'ego w kolejnych klatkach sekwencji, np. z nieruchomej kamery,
+ * w której większość sceny nie zmienia się między klatkami. Między klatkami przechowywane są: obraz w skali szarości,
+ * obraz po rozmyciu, natężenie i kierunek gradientu, flagi siły pikseli i wynik histerezy.
+ * Obraz jest dzielony na kwadratowe kafelki. Najpierw bufor rastra klatki jest porównywany z kopią bufora poprzedniej
+ * klatki, a do skali szarości są konwertowane tylko pasy wierszy z kafelkami, w których zmieniły się surowe piksele,
+ * więc klatka bez zmian kosztuje jedno porównanie pamięci (dla typów obrazów czytanych bezpośrednio z bufora, patrz
+ * {@link ImageConverter}; pozostałe typy są zawsze konwertowane w całości). Kafelek, w którym jasność żadnego piksela nie zmieniła się o więcej niż
+ * próg zmiany, jest pomijany, a w zmienionych kafelkach rozmycie, gradient, pocienianie krawędzi i progowanie są
+ * powtarzane tylko w obszarze kafelka powiększonym o halo kolejnych kroków ({@value Canny#TOTAL_HALO} wiersze
+ * i kolumny łącznie). Histereza jest powtarzana tylko dla składowych krawędzi przechodzących przez ten obszar
+ * (patrz {@link Hysteresis#retrack}).
+ * Przy progu zmiany 0 wynik każdej klatki jest identyczny z {@link Canny#computeEdges(BufferedImage)}. Przy progu
+ * dodatnim kafelek uznany za niezmieniony zachowuje jasności z klatki, w której ostatnio go przeliczono, więc powolne
+ * zmiany sumują się aż do przekroczenia progu, a wynik jest wynikiem algorytmu dla obrazu złożonego z takich kafelków.
+ * Pierwsza klatka, klatka o innym rozmiarze i klatka ze zmianami w ponad połowie kafelków są przeliczane w całości.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class CannySequence {
+    /** Domyślna długość boku kafelka w pikselach */
+    public static final int DEFAULT_TILE_SIZE = 64;
+    /** Liczba etapów zgłaszanych dla każdej klatki */
+    private static final int STAGE_COUNT = 7;
+    private final Canny canny;
+    private final int tileSize;
+    private final float changeThreshold;
+    private final int parallelism;
+    private final Hysteresis.IntStack component = new Hysteresis.IntStack();
+    private int width;
+    private int height;
+    /** Jasności, dla których przeliczono zapamiętane wyniki */
+    private PixelPlane reference;
+    private PixelPlane denoised;
+    private PixelPlane magnitude;
+    private byte[] direction;
+    /** Flagi siły pikseli przed histerezą */
+    private byte[] strength;
+    /** Wynik histerezy dla flag strength */
+    private byte[] edges;
+    /** Znaczniki pikseli odwiedzonych przez histerezę przyrostową, wyzerowane między klatkami */
+    private byte[] marks;
+    /** Kopia bufora rastra ostatniej klatki (byte[] albo int[]) zapisana wierszami bez przerw lub null */
+    private Object previousPixels;
+    private int previousPixelStride;
+    private int changedTiles;
+
+    /**
+     * Konstruktor ustawiający progi algorytmu, z domyślnym rozmiarem kafelka i progiem zmiany 0
+     * @param lowerThreshold dolny próg algorytmu Canny'ego
+     * @param higherThreshold górny próg algorytmu Canny'ego
+     */
+    public CannySequence(double lowerThreshold, double higherThreshold) {
+        this(lowerThreshold, higherThreshold, DEFAULT_TILE_SIZE, 0, 1);
+    }
+
+    /**
+     * Konstruktor ustawiający wszystkie parametry przetwarzania
+     * @param lowerThreshold dolny próg algorytmu Canny'ego
+     * @param higherThreshold górny próg algorytmu Canny'ego
+     * @param tileSize długość boku kafelka w pikselach
+     * @param changeThreshold największa zmiana jasności piksela w skali 0-255, przy której kafelek jest uznawany
+     *                        za niezmieniony; 0 oznacza wynik identyczny z przeliczeniem całej klatki
+     * @param parallelism liczba kafelków wierszy przetwarzanych równolegle przy konwersji i przeliczaniu całej klatki
+     */
+    public CannySequence(double lowerThreshold, double higherThreshold, int tileSize, float changeThreshold,
+                         int parallelism) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Rozmiar kafelka musi być dodatni");
+        }
+        if (!(changeThreshold >= 0)) {
+            throw new IllegalArgumentException("Próg zmiany nie może być ujemny");
+        }
+        this.canny = new Canny(lowerThreshold, higherThreshold);
+        this.tileSize = tileSize;
+        this.changeThreshold = changeThreshold;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Metoda wykrywa krawędzie w kolejnej klatce sekwencji
+     * @param frame klatka
+     * @return nowa mapa krawędzi z wartościami 0 lub 255
+     */
+    public EdgeMap next(BufferedImage frame) {
+        return next(frame, null);
+    }
+
+    /**
+     * Metoda wykrywa krawędzie w kolejnej klatce sekwencji, zapisując wynik do podanej mapy. Czas, liczba pikseli
+     * i pamięć etapów są zapisywane jak w {@link Canny#computeEdges(BufferedImage, int, EdgeMap, ProgressListener)}.
+     * @param frame klatka
+     * @param reuse mapa poprzedniego wyniku, nadpisywana, jeśli ma rozmiary klatki; null lub inne rozmiary oznaczają nową mapę
+     * @return mapa krawędzi z wartościami 0 lub 255
+     */
+    public synchronized EdgeMap next(BufferedImage frame, EdgeMap reuse) {
+        Workspace workspace = Workspace.acquire();
+        try {
+            ProgressListener recorder = new StageRecorder(ProgressListener.NONE, (long) frame.getWidth() * frame.getHeight());
+            if (reference == null || frame.getWidth() != width || frame.getHeight() != height) {
+                allocate(frame.getWidth(), frame.getHeight());
+                findRawChanges(frame);
+                recorder.stageFinished("Wykrywanie zmian", 1, STAGE_COUNT);
+                RowTiles.forEach(height, parallelism, (fromRow, toRow) -> ImageConverter.toGrayscale(frame, reference, fromRow, toRow));
+                recorder.stageFinished("Skala szarości", 2, STAGE_COUNT);
+                changedTiles = getTileCount();
+                computeFrame(workspace, recorder);
+            } else {
+                boolean[] candidates = findRawChanges(frame);
+                recorder.stageFinished("Wykrywanie zmian", 1, STAGE_COUNT);
+                PixelPlane current = workspace.plane(Workspace.Slot.GRAY, width, height);
+                if (candidates == null) {
+                    RowTiles.forEach(height, parallelism, (fromRow, toRow) -> ImageConverter.toGrayscale(frame, current, fromRow, toRow));
+                } else {
+                    convertChangedBands(frame, current, candidates);
+                }
+                List<Rectangle> tiles = updateChangedTiles(current, candidates);
+                recorder.stageFinished("Skala szarości", 2, STAGE_COUNT);
+                changedTiles = tiles.size();
+                if (2 * changedTiles > getTileCount()) {
+                    computeFrame(workspace, recorder);
+                } else {
+                    computeTiles(tiles, workspace, recorder);
+                }
+            }
+            EdgeMap output = EdgeMap.reuseOrCreate(reuse, width, height);
+            System.arraycopy(edges, 0, output.getPixels(), 0, width * height);
+            return output;
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Metoda zwraca liczbę kafelków przeliczonych dla ostatniej klatki
+     * @return liczba kafelków; równa {@link #getTileCount()}, jeśli klatkę przeliczono w całości
+     */
+    public synchronized int getChangedTiles() {
+        return changedTiles;
+    }
+
+    /**
+     * Metoda zwraca liczbę kafelków, na które dzielone są klatki
+     * @return liczba kafelków lub 0 przed pierwszą klatką
+     */
+    public synchronized int getTileCount() {
+        return ((width + tileSize - 1) / tileSize) * ((height + tileSize - 1) / tileSize);
+    }
+
+    /**
+     * Metoda usuwa zapamiętane wyniki, zwalniając ich pamięć; następna klatka jest przeliczana w całości
+     */
+    public synchronized void reset() {
+        width = 0;
+        height = 0;
+        reference = null;
+        denoised = null;
+        magnitude = null;
+        direction = null;
+        strength = null;
+        edges = null;
+        marks = null;
+        previousPixels = null;
+        changedTiles = 0;
+    }
+
+    private void allocate(int width, int height) {
+        int pixels = Math.multiplyExact(width, height);
+        this.width = width;
+        this.height = height;
+        reference = new PixelPlane(width, height);
+        denoised = new PixelPlane(width, height);
+        magnitude = new PixelPlane(width, height);
+        direction = new byte[pixels];
+        strength = new byte[pixels];
+        edges = new byte[pixels];
+        marks = new byte[pixels];
+        previousPixels = null;
+    }
+
+    /**
+     * Metoda porównuje bufor rastra klatki z kopią bufora poprzedniej klatki i uaktualnia kopię w zmienionych kafelkach.
+     * Jasności kafelka, którego surowe piksele się nie zmieniły, są równe jasnościom z poprzedniej klatki, które
+     * porównano już z zapamiętanymi, więc kafelek nie wymaga ani konwersji, ani porównania jasności.
+     * @param frame klatka
+     * @return znaczniki kafelków ze zmienionymi pikselami, numerowanych wierszami, lub null, jeśli wszystkie kafelki
+     *         trzeba sprawdzić (pierwsza klatka, inny układ bufora lub typ obrazu bez bezpośredniego dostępu)
+     */
+    private boolean[] findRawChanges(BufferedImage frame) {
+        ImageConverter.RasterLayout layout = ImageConverter.rasterLayout(frame);
+        if (layout == null) {
+            previousPixels = null;
+            return null;
+        }
+        int rowLength = width * layout.pixelStride;
+        boolean bytes = layout.data instanceof byte[];
+        if (previousPixels == null || previousPixelStride != layout.pixelStride
+                || (previousPixels instanceof byte[]) != bytes) {
+            int length = Math.multiplyExact(height, rowLength);
+            previousPixels = bytes ? new byte[length] : new int[length];
+            previousPixelStride = layout.pixelStride;
+            for (int row = 0; row < height; ++row) {
+                System.arraycopy(layout.data, layout.offset + row * layout.scanline, previousPixels, row * rowLength, rowLength);
+            }
+            return null;
+        }
+        int tilesAcross = (width + tileSize - 1) / tileSize;
+        boolean[] changed = new boolean[getTileCount()];
+        for (int y = 0; y < height; y += tileSize) {
+            int rows = Math.min(tileSize, height - y);
+            for (int x = 0; x < width; x += tileSize) {
+                int from = x * layout.pixelStride;
+                int length = Math.min(tileSize, width - x) * layout.pixelStride;
+                for (int row = y; row < y + rows; ++row) {
+                    if (segmentDiffers(layout.data, layout.offset + row * layout.scanline + from, row * rowLength + from, length)) {
+                        for (int copied = row; copied < y + rows; ++copied) {
+                            System.arraycopy(layout.data, layout.offset + copied * layout.scanline + from,
+                                    previousPixels, copied * rowLength + from, length);
+                        }
+                        changed[(y / tileSize) * tilesAcross + x / tileSize] = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean segmentDiffers(Object data, int from, int previousFrom, int length) {
+        if (data instanceof byte[]) {
+            return Arrays.mismatch((byte[]) data, from, from + length,
+                    (byte[]) previousPixels, previousFrom, previousFrom + length) >= 0;
+        }
+        return Arrays.mismatch((int[]) data, from, from + length,
+                (int[]) previousPixels, previousFrom, previousFrom + length) >= 0;
+    }
+
+    /**
+     * Metoda konwertuje do skali szarości pasy wierszy kafelków zawierające co najmniej jeden kafelek ze zmianami
+     */
+    private void convertChangedBands(BufferedImage frame, PixelPlane current, boolean[] candidates) {
+        int tilesAcross = (width + tileSize - 1) / tileSize;
+        for (int band = 0; band * tileSize < height; ++band) {
+            for (int column = 0; column < tilesAcross; ++column) {
+                if (candidates[band * tilesAcross + column]) {
+                    ImageConverter.toGrayscale(frame, current, band * tileSize, Math.min((band + 1) * tileSize, height));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Metoda porównuje jasności klatki z zapamiętanymi kafelkami i kopiuje kafelki zmienione do płaszczyzny reference
+     * @param current płaszczyzna klatki w skali szarości
+     * @param candidates znaczniki kafelków do sprawdzenia lub null dla wszystkich kafelków
+     * @return prostokąty zmienionych kafelków
+     */
+    private List<Rectangle> updateChangedTiles(PixelPlane current, boolean[] candidates) {
+        List<Rectangle> tiles = new ArrayList<>();
+        float[] now = current.getData();
+        float[] before = reference.getData();
+        int index = 0;
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize, ++index) {
+                if (candidates != null && !candidates[index]) {
+                    continue;
+                }
+                Rectangle tile = new Rectangle(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+                if (tileChanged(now, before, tile)) {
+                    for (int row = tile.y; row < tile.y + tile.height; ++row) {
+                        System.arraycopy(now, row * width + tile.x, before, row * width + tile.x, tile.width);
+                    }
+                    tiles.add(tile);
+                }
+            }
+        }
+        return tiles;
+    }
+
+    private boolean tileChanged(float[] now, float[] before, Rectangle tile) {
+        for (int row = tile.y; row < tile.y + tile.height; ++row) {
+            int from = row * width + tile.x;
+            int to = from + tile.width;
+            if (changeThreshold == 0) {
+                if (Arrays.mismatch(now, from, to, before, from, to) >= 0) {
+                    return true;
+                }
+                continue;
+            }
+            for (int p = from; p < to; ++p) {
+                if (Math.abs(now[p] - before[p]) > changeThreshold) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Metoda przelicza wszystkie kroki algorytmu dla całej płaszczyzny reference
+     */
+    private void computeFrame(Workspace workspace, ProgressListener recorder) {
+        Convolution.convolve(reference, Canny.gaussian, Convolution.Border.REFLECT, denoised, parallelism, workspace);
+        recorder.stageFinished("Rozmycie Gaussa", 3, STAGE_COUNT);
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> canny.computeGradient(denoised, magnitude, direction, fromRow, toRow));
+        recorder.stageFinished("Gradient", 4, STAGE_COUNT);
+        PixelPlane suppressed = workspace.plane(Workspace.Slot.SUPPRESSED, width, height);
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> canny.nonMaximumSuppression(direction, magnitude, suppressed, fromRow, toRow));
+        recorder.stageFinished("Pocienianie krawędzi", 5, STAGE_COUNT);
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> canny.setStrengthFlag(suppressed, strength, fromRow, toRow));
+        recorder.stageFinished("Progowanie", 6, STAGE_COUNT);
+        System.arraycopy(strength, 0, edges, 0, width * height);
+        Hysteresis.track(edges, width, height, parallelism);
+        recorder.stageFinished("Histereza", 7, STAGE_COUNT);
+    }
+
+    /**
+     * Metoda przelicza kroki algorytmu w otoczeniu zmienionych kafelków. Każdy krok jest wykonywany dla wszystkich
+     * kafelków, zanim rozpocznie się następny, bo czyta wyniki poprzedniego kroku z halo kafelków sąsiednich.
+     * Płaszczyzny pośrednie rozmycia i pocieniania krawędzi są brane z obszaru roboczego, bo każdy kafelek
+     * wylicza całe potrzebne mu otoczenie.
+     */
+    private void computeTiles(List<Rectangle> tiles, Workspace workspace, ProgressListener recorder) {
+        for (Rectangle tile : tiles) {
+            Rectangle blurred = grow(tile, Canny.GAUSSIAN_HALO, Canny.GAUSSIAN_HALO);
+            Convolution.convolve2D(reference, Canny.gaussian, Convolution.Border.REFLECT, denoised,
+                    blurred.y, blurred.y + blurred.height, blurred.x, blurred.x + blurred.width);
+        }
+        recorder.stageFinished("Rozmycie Gaussa", 3, STAGE_COUNT);
+        int gradientHalo = Canny.GAUSSIAN_HALO + Canny.GRADIENT_HALO;
+        for (Rectangle tile : tiles) {
+            Rectangle region = grow(tile, gradientHalo, gradientHalo);
+            canny.computeGradient(denoised, magnitude, direction, region.y, region.y + region.height,
+                    region.x, region.x + region.width);
+        }
+        recorder.stageFinished("Gradient", 4, STAGE_COUNT);
+        PixelPlane suppressed = workspace.plane(Workspace.Slot.SUPPRESSED, width, height);
+        List<Rectangle> regions = new ArrayList<>(tiles.size());
+        for (Rectangle tile : tiles) {
+            Rectangle region = grow(tile, Canny.TOTAL_HALO, Canny.TOTAL_HALO);
+            canny.nonMaximumSuppression(direction, magnitude, suppressed, region.y, region.y + region.height,
+                    region.x, region.x + region.width);
+            regions.add(region);
+        }
+        recorder.stageFinished("Pocienianie krawędzi", 5, STAGE_COUNT);
+        for (Rectangle region : regions) {
+            canny.setStrengthFlag(suppressed, strength, region.y, region.y + region.height,
+                    region.x, region.x + region.width);
+        }
+        recorder.stageFinished("Progowanie", 6, STAGE_COUNT);
+        regions.replaceAll(region -> grow(region, 1, 1));
+        Hysteresis.retrack(strength, edges, width, height, regions, marks, component);
+        recorder.stageFinished("Histereza", 7, STAGE_COUNT);
+    }
+
+    /**
+     * Metoda powiększa prostokąt o podaną liczbę kolumn i wierszy z każdej strony, przycinając go do obrazu
+     */
+    private Rectangle grow(Rectangle rectangle, int columns, int rows) {
+        Rectangle grown = new Rectangle(rectangle);
+        grown.grow(columns, rows);
+        return grown.intersection(new Rectangle(width, height));
+    }
+}
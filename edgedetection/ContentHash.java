@@ -0,0 +1,159 @@
+package edgedetection;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Klasa obliczająca 64-bitowy skrót zawartości obrazu lub tablicy bajtów, używany jako klucz {@link ResultCache}.
+ * Dane są czytane słowami 64-bitowymi przez cztery niezależne akumulatory z rundami i mieszaniem końcowym
+ * algorytmu XXH64, więc skrót jest liczony z szybkością zbliżoną do szybkości odczytu pamięci.
+ * Skrót nie jest zgodny z XXH64, bo wiersze obrazu są dołączane kolejno bez kopiowania do wspólnego bufora.
+ * @author Aneta Bień, Anna Plęs
+ */
+final class ContentHash {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private long v1 = PRIME_1 + PRIME_2;
+    private long v2 = PRIME_2;
+    private long v3 = 0;
+    private long v4 = -PRIME_1;
+    private long words;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Metoda oblicza skrót pikseli obrazu razem z jego wymiarami i typem. Dla typów czytanych bezpośrednio z bufora
+     * rastra (patrz {@link ImageConverter}) czytane są wiersze bufora, a dla pozostałych wiersze pikseli ARGB.
+     * @param image obraz
+     * @return skrót zawartości
+     */
+    static long of(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ContentHash hash = new ContentHash();
+        hash.update(((long) width << 32) | height);
+        hash.update(image.getType());
+        ImageConverter.RasterLayout layout = ImageConverter.rasterLayout(image);
+        if (layout != null && layout.data instanceof int[]) {
+            int[] data = (int[]) layout.data;
+            for (int y = 0; y < height; ++y) {
+                hash.update(data, layout.offset + y * layout.scanline, width);
+            }
+        } else if (layout != null) {
+            byte[] data = (byte[]) layout.data;
+            for (int y = 0; y < height; ++y) {
+                hash.update(data, layout.offset + y * layout.scanline, width * layout.pixelStride);
+            }
+        } else {
+            int[] row = new int[width];
+            for (int y = 0; y < height; ++y) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                hash.update(row, 0, width);
+            }
+        }
+        return hash.digest();
+    }
+
+    /**
+     * Metoda oblicza skrót tablicy bajtów, np. zawartości pliku
+     * @param data dane
+     * @return skrót zawartości
+     */
+    static long of(byte[] data) {
+        ContentHash hash = new ContentHash();
+        hash.update(data.length);
+        hash.update(data, 0, data.length);
+        return hash.digest();
+    }
+
+    /**
+     * Metoda dołącza length liczb całkowitych od indeksu offset, po dwie w słowie
+     */
+    private void update(int[] data, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        for (; i + 8 <= end; i += 8) {
+            v1 = round(v1, ((long) data[i] << 32) ^ (data[i + 1] & 0xFFFFFFFFL));
+            v2 = round(v2, ((long) data[i + 2] << 32) ^ (data[i + 3] & 0xFFFFFFFFL));
+            v3 = round(v3, ((long) data[i + 4] << 32) ^ (data[i + 5] & 0xFFFFFFFFL));
+            v4 = round(v4, ((long) data[i + 6] << 32) ^ (data[i + 7] & 0xFFFFFFFFL));
+        }
+        words += (i - offset) / 2;
+        for (; i < end; ++i) {
+            update(data[i]);
+        }
+    }
+
+    /**
+     * Metoda dołącza length bajtów od indeksu offset, po osiem w słowie
+     */
+    private void update(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        for (; i + 32 <= end; i += 32) {
+            v1 = round(v1, (long) LONGS.get(data, i));
+            v2 = round(v2, (long) LONGS.get(data, i + 8));
+            v3 = round(v3, (long) LONGS.get(data, i + 16));
+            v4 = round(v4, (long) LONGS.get(data, i + 24));
+        }
+        words += (i - offset) / 8;
+        for (; i + 8 <= end; i += 8) {
+            update((long) LONGS.get(data, i));
+        }
+        for (; i < end; ++i) {
+            update(data[i] & 0xFF);
+        }
+    }
+
+    /**
+     * Metoda dołącza jedno słowo do akumulatora wybranego według liczby dołączonych słów
+     */
+    private void update(long word) {
+        switch ((int) (words++ & 3)) {
+            case 0:
+                v1 = round(v1, word);
+                break;
+            case 1:
+                v2 = round(v2, word);
+                break;
+            case 2:
+                v3 = round(v3, word);
+                break;
+            default:
+                v4 = round(v4, word);
+        }
+    }
+
+    /**
+     * Metoda łączy akumulatory i miesza bity wyniku
+     */
+    private long digest() {
+        long hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+        hash = merge(hash, v1);
+        hash = merge(hash, v2);
+        hash = merge(hash, v3);
+        hash = merge(hash, v4);
+        hash += words * 8;
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long accumulator, long word) {
+        return Long.rotateLeft(accumulator + word * PRIME_2, 31) * PRIME_1;
+    }
+
+    private static long merge(long hash, long accumulator) {
+        return (hash ^ round(0, accumulator)) * PRIME_1 + PRIME_4;
+    }
+}
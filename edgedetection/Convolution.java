@@ -0,0 +1,343 @@
+package edgedetection;
+
+import java.util.Arrays;
+
+/**
+ * Klasa wykonująca splot płaszczyzny z jądrem dowolnego nieparzystego rozmiaru, wybierając sposób splotu na podstawie
+ * kształtu jądra przygotowanego w {@link Kernel}: jądra o jednym wierszu lub jednej kolumnie jednym przebiegiem
+ * jednowymiarowym, jądra rozłożone na czynniki separowalne przebiegiem poziomym, a następnie pionowym dla każdego
+ * czynnika, a pozostałe jądra splotem dwuwymiarowym pomijającym zerowe wagi.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class Convolution {
+
+    /**
+     * Sposób traktowania pikseli leżących poza obrazem
+     */
+    public enum Border {
+        /** Odbicie lustrzane pikseli granicznych, wynik ma pełny rozmiar obrazu */
+        REFLECT,
+        /** Splot liczony tylko tam, gdzie jądro mieści się w obrazie, ramka wyniku jest zerowana */
+        ZERO
+    }
+
+    private Convolution() {
+    }
+
+    /**
+     * Metoda wykonuje splot całej płaszczyzny z jądrem
+     * @param input płaszczyzna wejściowa
+     * @param kernel jądro splotu
+     * @param border sposób obsługi brzegów obrazu
+     * @return nowa płaszczyzna wyniku o rozmiarach wejścia
+     */
+    public static PixelPlane convolve(PixelPlane input, Kernel kernel, Border border) {
+        PixelPlane output = new PixelPlane(input.getWidth(), input.getHeight());
+        convolve(input, kernel, border, output);
+        return output;
+    }
+
+    /**
+     * Metoda wykonuje splot całej płaszczyzny z jądrem, zapisując wynik do podanej płaszczyzny
+     * @param input płaszczyzna wejściowa
+     * @param kernel jądro splotu
+     * @param border sposób obsługi brzegów obrazu
+     * @param output płaszczyzna wyniku o rozmiarach wejścia, różna od wejściowej
+     */
+    public static void convolve(PixelPlane input, Kernel kernel, Border border, PixelPlane output) {
+        convolve(input, kernel, border, output, 1);
+    }
+
+    /**
+     * Metoda wykonuje splot całej płaszczyzny z jądrem, dzieląc obraz na kafelki wierszy przetwarzane równolegle.
+     * Przebieg pionowy jądra separowalnego rozpoczyna się dopiero po zakończeniu przebiegu poziomego we wszystkich kafelkach,
+     * bo czyta wiersze halo z kafelków sąsiednich.
+     * @param input płaszczyzna wejściowa
+     * @param kernel jądro splotu
+     * @param border sposób obsługi brzegów obrazu
+     * @param output płaszczyzna wyniku o rozmiarach wejścia, różna od wejściowej
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     */
+    public static void convolve(PixelPlane input, Kernel kernel, Border border, PixelPlane output, int parallelism) {
+        Workspace workspace = Workspace.acquire();
+        try {
+            convolve(input, kernel, border, output, parallelism, workspace);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Metoda wykonuje splot całej płaszczyzny z jądrem, biorąc płaszczyznę pośrednią jądra separowalnego
+     * z obszaru roboczego (miejsce {@link Workspace.Slot#CONVOLUTION_TEMP})
+     * @param input płaszczyzna wejściowa
+     * @param kernel jądro splotu
+     * @param border sposób obsługi brzegów obrazu
+     * @param output płaszczyzna wyniku o rozmiarach wejścia, różna od wejściowej
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     * @param workspace obszar roboczy wywołującego
+     */
+    static void convolve(PixelPlane input, Kernel kernel, Border border, PixelPlane output, int parallelism,
+                         Workspace workspace) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int rank = kernel.getRank();
+        if (kernel.getHeight() == 1) {
+            RowTiles.forEach(height, parallelism,
+                    (fromRow, toRow) -> horizontalPass(input, kernel.getWeights(), border, output, fromRow, toRow));
+        } else if (kernel.getWidth() == 1) {
+            RowTiles.forEach(height, parallelism,
+                    (fromRow, toRow) -> verticalPass(input, kernel.getWeights(), border, output, fromRow, toRow));
+        } else if (rank > 0) {
+            PixelPlane temp = workspace.plane(Workspace.Slot.CONVOLUTION_TEMP, width, height);
+            for (int factor = 0; factor < rank; ++factor) {
+                float[] horizontal = kernel.getHorizontal(factor);
+                float[] vertical = kernel.getVertical(factor);
+                boolean accumulate = factor > 0;
+                RowTiles.forEach(height, parallelism,
+                        (fromRow, toRow) -> horizontalPass(input, horizontal, border, temp, fromRow, toRow));
+                RowTiles.forEach(height, parallelism,
+                        (fromRow, toRow) -> verticalPass(temp, vertical, border, output, fromRow, toRow, 0, width, accumulate));
+            }
+        } else {
+            RowTiles.forEach(height, parallelism,
+                    (fromRow, toRow) -> convolve2D(input, kernel, border, output, fromRow, toRow));
+        }
+    }
+
+    /**
+     * Metoda wyznacza indeks piksela odbitego lustrzanie względem krawędzi obrazu
+     * @param index indeks piksela, również spoza obrazu
+     * @param size rozmiar obrazu w danym wymiarze
+     * @return indeks piksela wewnątrz obrazu
+     */
+    static int reflect(int index, int size) {
+        if (index < 0) {
+            return Math.min(-index - 1, size - 1);
+        }
+        if (index >= size) {
+            return Math.max(2 * size - index - 1, 0);
+        }
+        return index;
+    }
+
+    /**
+     * Metoda wykonuje jednowymiarowy splot wierszy z zakresu [fromRow, toRow)
+     * @param input płaszczyzna wejściowa
+     * @param kernel wagi kolejnych kolumn
+     * @param border sposób obsługi brzegów obrazu
+     * @param output płaszczyzna wyniku
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    static void horizontalPass(PixelPlane input, float[] kernel, Border border, PixelPlane output, int fromRow, int toRow) {
+        horizontalPass(input, kernel, border, output, fromRow, toRow, 0, input.getWidth());
+    }
+
+    /**
+     * Metoda wykonuje jednowymiarowy splot wierszy z zakresu [fromRow, toRow), ograniczony do kolumn [fromX, toX).
+     * Każdy piksel jest liczony tak samo jak przy splocie całego wiersza, więc wynik jest identyczny co do bitu.
+     * @param input płaszczyzna wejściowa
+     * @param kernel wagi kolejnych kolumn
+     * @param border sposób obsługi brzegów obrazu
+     * @param output płaszczyzna wyniku
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     * @param fromX pierwsza przetwarzana kolumna
+     * @param toX kolumna za ostatnią przetwarzaną
+     */
+    static void horizontalPass(PixelPlane input, float[] kernel, Border border, PixelPlane output, int fromRow, int toRow,
+                               int fromX, int toX) {
+        int width = input.getWidth();
+        int radius = kernel.length / 2;
+        int innerStart = Math.min(Math.max(radius, fromX), toX);
+        int innerEnd = Math.max(Math.min(width - radius, toX), innerStart);
+        float[] source = input.getData();
+        float[] target = output.getData();
+        ConvolutionBackend backend = ConvolutionBackends.current();
+        for (int y = fromRow; y < toRow; ++y) {
+            int sourceRow = input.index(0, y);
+            int targetRow = output.index(0, y);
+            backend.convolveRow(source, sourceRow + innerStart - radius, kernel, target, targetRow + innerStart,
+                    innerEnd - innerStart);
+            for (int x = fromX; x < innerStart; ++x) {
+                target[targetRow + x] = borderSum(source, sourceRow, width, x, kernel, border);
+            }
+            for (int x = innerEnd; x < toX; ++x) {
+                target[targetRow + x] = borderSum(source, sourceRow, width, x, kernel, border);
+            }
+        }
+    }
+
+    /**
+     * Metoda oblicza splot jednowymiarowy dla piksela, którego sąsiedztwo wychodzi poza wiersz
+     */
+    private static float borderSum(float[] source, int sourceRow, int width, int x, float[] kernel, Border border) {
+        if (border == Border.ZERO) {
+            return 0;
+        }
+        int radius = kernel.length / 2;
+        float sum = 0;
+        for (int i = 0; i < kernel.length; ++i) {
+            sum += source[sourceRow + reflect(x - radius + i, width)] * kernel[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Metoda wykonuje jednowymiarowy splot kolumn dla wierszy wyniku z zakresu [fromRow, toRow)
+     * @param input płaszczyzna wejściowa
+     * @param kernel wagi kolejnych wierszy
+     * @param border sposób obsługi brzegów obrazu
+     * @param output płaszczyzna wyniku
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    static void verticalPass(PixelPlane input, float[] kernel, Border border, PixelPlane output, int fromRow, int toRow) {
+        verticalPass(input, kernel, border, output, fromRow, toRow, 0, input.getWidth());
+    }
+
+    /**
+     * Metoda wykonuje jednowymiarowy splot kolumn dla wierszy wyniku z zakresu [fromRow, toRow), ograniczony
+     * do kolumn [fromX, toX); wynik jest identyczny co do bitu z wynikiem dla całych wierszy
+     * @param input płaszczyzna wejściowa
+     * @param kernel wagi kolejnych wierszy
+     * @param border sposób obsługi brzegów obrazu
+     * @param output płaszczyzna wyniku
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     * @param fromX pierwsza przetwarzana kolumna
+     * @param toX kolumna za ostatnią przetwarzaną
+     */
+    static void verticalPass(PixelPlane input, float[] kernel, Border border, PixelPlane output, int fromRow, int toRow,
+                             int fromX, int toX) {
+        verticalPass(input, kernel, border, output, fromRow, toRow, fromX, toX, false);
+    }
+
+    /**
+     * Metoda wykonuje przebieg pionowy, zapisując wynik do płaszczyzny wyjściowej lub dodając go do niej,
+     * np. dla kolejnych czynników jądra
+     */
+    private static void verticalPass(PixelPlane input, float[] kernel, Border border, PixelPlane output, int fromRow,
+                                     int toRow, int fromX, int toX, boolean accumulate) {
+        int count = toX - fromX;
+        int height = input.getHeight();
+        int radius = kernel.length / 2;
+        float[] source = input.getData();
+        float[] target = output.getData();
+        ConvolutionBackend backend = ConvolutionBackends.current();
+        for (int y = fromRow; y < toRow; ++y) {
+            int targetRow = output.index(fromX, y);
+            if (border == Border.ZERO && (y < radius || y >= height - radius)) {
+                if (!accumulate) {
+                    Arrays.fill(target, targetRow, targetRow + count, 0);
+                }
+                continue;
+            }
+            int firstRow = input.index(fromX, reflect(y - radius, height));
+            if (accumulate) {
+                backend.accumulateRow(source, firstRow, kernel[0], target, targetRow, count);
+            } else {
+                backend.scaleRow(source, firstRow, kernel[0], target, targetRow, count);
+            }
+            for (int i = 1; i < kernel.length; ++i) {
+                int row = input.index(fromX, reflect(y - radius + i, height));
+                backend.accumulateRow(source, row, kernel[i], target, targetRow, count);
+            }
+        }
+    }
+
+    /**
+     * Metoda wykonuje pełny splot dwuwymiarowy dla wierszy wyniku z zakresu [fromRow, toRow).
+     * Wnętrze wiersza jest liczone jako suma przesuniętych wierszy wejścia przemnożonych przez kolejne niezerowe wagi,
+     * w tej samej kolejności co suma dla pojedynczego piksela.
+     * @param input płaszczyzna wejściowa
+     * @param kernel jądro splotu
+     * @param border sposób obsługi brzegów obrazu
+     * @param output płaszczyzna wyniku
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    static void convolve2D(PixelPlane input, Kernel kernel, Border border, PixelPlane output, int fromRow, int toRow) {
+        convolve2D(input, kernel, border, output, fromRow, toRow, 0, input.getWidth());
+    }
+
+    /**
+     * Metoda wykonuje pełny splot dwuwymiarowy dla wierszy wyniku z zakresu [fromRow, toRow), ograniczony
+     * do kolumn [fromX, toX); wynik jest identyczny co do bitu z wynikiem dla całych wierszy
+     * @param input płaszczyzna wejściowa
+     * @param kernel jądro splotu
+     * @param border sposób obsługi brzegów obrazu
+     * @param output płaszczyzna wyniku
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     * @param fromX pierwsza przetwarzana kolumna
+     * @param toX kolumna za ostatnią przetwarzaną
+     */
+    static void convolve2D(PixelPlane input, Kernel kernel, Border border, PixelPlane output, int fromRow, int toRow,
+                           int fromX, int toX) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int kernelWidth = kernel.getWidth();
+        int kernelHeight = kernel.getHeight();
+        int radiusX = kernelWidth / 2;
+        int radiusY = kernelHeight / 2;
+        float[] weights = kernel.getWeights();
+        float[] source = input.getData();
+        float[] target = output.getData();
+        ConvolutionBackend backend = ConvolutionBackends.current();
+        int innerStart = Math.max(Math.min(radiusX, width), fromX);
+        int innerEnd = Math.max(Math.min(width - radiusX, toX), innerStart);
+        for (int y = fromRow; y < toRow; ++y) {
+            int targetRow = output.index(0, y);
+            boolean innerRow = y >= radiusY && y < height - radiusY;
+            if (innerRow) {
+                Arrays.fill(target, targetRow + innerStart, targetRow + innerEnd, 0);
+                for (int i = 0; i < kernelHeight && innerEnd > innerStart; ++i) {
+                    int base = input.index(innerStart - radiusX, y - radiusY + i);
+                    for (int j = 0; j < kernelWidth; ++j) {
+                        float weight = weights[i * kernelWidth + j];
+                        if (weight != 0) {
+                            backend.accumulateRow(source, base + j, weight, target, targetRow + innerStart,
+                                    innerEnd - innerStart);
+                        }
+                    }
+                }
+                borderColumns(input, kernel, border, output, y, fromX, Math.min(innerStart, toX));
+                borderColumns(input, kernel, border, output, y, Math.max(innerEnd, fromX), toX);
+            } else {
+                borderColumns(input, kernel, border, output, y, fromX, toX);
+            }
+        }
+    }
+
+    /**
+     * Metoda oblicza splot dwuwymiarowy dla pikseli wiersza y z kolumn [fromX, toX),
+     * których sąsiedztwo wychodzi poza obraz
+     */
+    private static void borderColumns(PixelPlane input, Kernel kernel, Border border, PixelPlane output,
+                                      int y, int fromX, int toX) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int kernelWidth = kernel.getWidth();
+        int kernelHeight = kernel.getHeight();
+        int radiusX = kernelWidth / 2;
+        int radiusY = kernelHeight / 2;
+        float[] weights = kernel.getWeights();
+        float[] source = input.getData();
+        float[] target = output.getData();
+        int targetRow = output.index(0, y);
+        for (int x = fromX; x < toX; ++x) {
+            float sum = 0;
+            if (border == Border.REFLECT) {
+                for (int i = 0; i < kernelHeight; ++i) {
+                    int row = input.index(0, reflect(y - radiusY + i, height));
+                    for (int j = 0; j < kernelWidth; ++j) {
+                        sum += source[row + reflect(x - radiusX + j, width)] * weights[i * kernelWidth + j];
+                    }
+                }
+            }
+            target[targetRow + x] = sum;
+        }
+    }
+}
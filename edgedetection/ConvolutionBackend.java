@@ -0,0 +1,49 @@
+package edgedetection;
+
+/**
+ * Interfejs pętli wewnętrznych splotu i gradientu, wykonywanych na ciągłych odcinkach wierszy.
+ * Obsługa brzegów obrazu pozostaje w klasach Convolution i Canny, a implementacje liczą tylko piksele,
+ * których sąsiedztwo mieści się w wierszu. Wszystkie implementacje sumują iloczyny w tej samej kolejności
+ * co pętle skalarne i nie używają FMA, więc zwracają wyniki identyczne co do bitu.
+ * @author Aneta Bień, Anna Plęs
+ */
+interface ConvolutionBackend {
+
+    /**
+     * Metoda oblicza target[targetOffset + n] = suma po i z source[sourceOffset + n + i] * kernel[i] dla n z [0, count)
+     * @param source tablica wejściowa
+     * @param sourceOffset indeks pierwszego piksela sąsiedztwa pierwszego wyniku
+     * @param kernel wagi jądra jednowymiarowego
+     * @param target tablica wyniku
+     * @param targetOffset indeks pierwszego wyniku
+     * @param count liczba wyników
+     */
+    void convolveRow(float[] source, int sourceOffset, float[] kernel, float[] target, int targetOffset, int count);
+
+    /**
+     * Metoda oblicza target[targetOffset + n] = source[sourceOffset + n] * weight dla n z [0, count)
+     */
+    void scaleRow(float[] source, int sourceOffset, float weight, float[] target, int targetOffset, int count);
+
+    /**
+     * Metoda oblicza target[targetOffset + n] += source[sourceOffset + n] * weight dla n z [0, count)
+     */
+    void accumulateRow(float[] source, int sourceOffset, float weight, float[] target, int targetOffset, int count);
+
+    /**
+     * Metoda oblicza gradienty Sobela i ich natężenie dla kolumn [fromX, toX) wiersza,
+     * gdzie 0 &lt; fromX i toX &lt; szerokość wiersza, czyli bez kolumn brzegowych
+     * @param source płaszczyzna obrazu po odszumieniu
+     * @param up indeks początku wiersza powyżej
+     * @param middle indeks początku wiersza przetwarzanego
+     * @param down indeks początku wiersza poniżej
+     * @param gx tablica gradientów w osi x indeksowana numerem kolumny
+     * @param gy tablica gradientów w osi y (skierowanej w dół) indeksowana numerem kolumny
+     * @param magnitude tablica natężeń gradientu
+     * @param magnitudeOffset indeks początku wiersza w tablicy natężeń
+     * @param fromX pierwsza kolumna
+     * @param toX kolumna za ostatnią
+     */
+    void sobelRow(float[] source, int up, int middle, int down, float[] gx, float[] gy,
+                  float[] magnitude, int magnitudeOffset, int fromX, int toX);
+}
@@ -0,0 +1,36 @@
+package edgedetection;
+
+/**
+ * Klasa wybierająca przy starcie implementację pętli splotu.
+ * Implementacja wektorowa jest używana, gdy JVM uruchomiono z opcją --add-modules jdk.incubator.vector,
+ * w przeciwnym razie używana jest implementacja skalarna. Właściwość systemowa edgedetection.backend
+ * o wartości "scalar" wymusza implementację skalarną.
+ * @author Aneta Bień, Anna Plęs
+ */
+final class ConvolutionBackends {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final ConvolutionBackend CURRENT = select();
+
+    private ConvolutionBackends() {
+    }
+
+    /**
+     * Metoda zwraca implementację wybraną przy starcie
+     * @return implementacja pętli splotu
+     */
+    static ConvolutionBackend current() {
+        return CURRENT;
+    }
+
+    private static ConvolutionBackend select() {
+        if ("scalar".equals(System.getProperty("edgedetection.backend"))
+                || ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return new ScalarBackend();
+        }
+        try {
+            return (ConvolutionBackend) Class.forName("edgedetection.VectorBackend").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarBackend();
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package edgedetection;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.time.LocalTime;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Klasa przetwarzająca obrazy za pomocą algorytmu Scharra, Sobela i Prewitta
@@ -25,160 +32,471 @@ public class EdgeDetection {
     public static final String SOBEL_HORIZONTAL = "Sobel Horizontal Filter";
     public static final String SCHARR_VERTICAL = "Scharr Vertical Filter";
     public static final String SCHARR_HORIZONTAL = "Scharr Horizontal Filter";
+    public static final String SOBEL_5X5_VERTICAL = "Sobel 5x5 Vertical Filter";
+    public static final String SOBEL_5X5_HORIZONTAL = "Sobel 5x5 Horizontal Filter";
+    public static final String LAPLACIAN_OF_GAUSSIAN = "Laplacian of Gaussian 7x7 Filter";
     public static final String CANNY_EDGE_DETECTION = "Canny Algorithm";
     public static final double HIGHER_THRESHOLD = 0.15*294;
     public static final double LOWER_THRESHOLD = 0.03*294;
-    private static final double[][] VERTICAL_MASK = {{1, 0, -1}, {1, 0, -1}, {1, 0, -1}};
-    private static final double[][] HORIZONTAL_MASK = {{1, 1, 1}, {0, 0, 0}, {-1, -1, -1}};
-    private static final double[][] SOBEL_MASK_VERTICAL = {{1, 0, -1}, {2, 0, -2}, {1, 0, -1}};
-    private static final double[][] SOBEL_MASK_HORIZONTAL = {{1, 2, 1}, {0, 0, 0}, {-1, -2, -1}};
-    private static final double[][] SCHARR_MASK_VERTICAL = {{3, 0, -3}, {10, 0, -10}, {3, 0, -3}};
-    private static final double[][] SCHARR_MASK_HORIZONTAL = {{3, 10, 3}, {0, 0, 0}, {-3, -10, -3}};
+    /**
+     * Domyślne miejsce zapisu wyników metod detectEdges: pliki JPEG w katalogu roboczym
+     */
+    public static final EdgeSink DEFAULT_SINK = new ImageFileSink(new File("."), "jpg");
+    /**
+     * Liczba etapów filtrów masek zgłaszanych odbiorcy postępu
+     */
+    static final int MASK_STAGE_COUNT = 3;
+    /**
+     * Rejestr filtrów masek, których jądra są przygotowywane raz, przy rejestracji
+     */
+
+    private final FilterRegistry filters;
 
     /**
-     * Metoda typu final deklarująca HashMapę przyjmującą zmienne typu String i tablicę dwuwymiarową typu double
+     * Pamięć podręczna wyników lub null, gdy wyniki są zawsze obliczane
      */
 
-    private final HashMap<String, double[][]> maskMap;
+    private final ResultCache cache;
 
     /**
-     * Metoda buduje HashMapę za pomocą metody buildMaskMap()
+     * Konstruktor używający rejestru filtrów {@link FilterRegistry#standard()}
      */
 
     public EdgeDetection() {
-        maskMap = buildMaskMap();
+        this(FilterRegistry.standard());
     }
 
     /**
-     * Metoda wykrywa krawędzie
+     * Konstruktor używający podanego rejestru filtrów, np. uzupełnionego o własne maski
+     * @param filters Rejestr filtrów masek
+     */
+
+    public EdgeDetection(FilterRegistry filters) {
+        this(filters, null);
+    }
+
+    /**
+     * Konstruktor używający podanego rejestru filtrów i pamięci podręcznej wyników. Wyniki metod computeEdges
+     * dla całego obrazu są najpierw szukane w pamięci podręcznej pod kluczem ze skrótu pikseli, nazwy filtru i progów,
+     * a obliczone wyniki są do niej dodawane.
+     * @param filters Rejestr filtrów masek
+     * @param cache Pamięć podręczna wyników, może być współdzielona przez wiele obiektów; null wyłącza zapamiętywanie
+     */
+
+    public EdgeDetection(FilterRegistry filters, ResultCache cache) {
+        this.filters = filters;
+        this.cache = cache;
+    }
+
+    /**
+     * Metoda zwraca rejestr filtrów masek
+     * @return filters Rejestr filtrów
+     */
+
+    public FilterRegistry getFilterRegistry() {
+        return filters;
+    }
+
+    /**
+     * Metoda zwraca pamięć podręczną wyników
+     * @return cache Pamięć podręczna lub null, gdy wyniki nie są zapamiętywane
+     */
+
+    public ResultCache getResultCache() {
+        return cache;
+    }
+
+    /**
+     * Metoda wykrywa krawędzie i zapisuje wynik jako plik JPEG w katalogu roboczym
      * @param bufferedImage Modyfikowany obraz
      * @param selectedFilter Wybrany filtr
      * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
      * @param higherThresholdValue Górny próg algorytmu Canny'ego
-     * @return output Zmodyfikowany obraz
+     * @return output Plik ze zmodyfikowanym obrazem
      */
 
     public File detectEdges(BufferedImage bufferedImage, String selectedFilter, double lowerThresholdValue,
                             double higherThresholdValue) throws IOException {
-        double[][] mixedPixels = new double[bufferedImage.getWidth()][bufferedImage.getHeight()];
-        File output = null;
+        return DEFAULT_SINK.write(computeEdges(bufferedImage, selectedFilter, lowerThresholdValue, higherThresholdValue));
+    }
+
+    /**
+     * Metoda wykrywa krawędzie i zwraca wynik w pamięci, bez zapisu na dysk
+     * @param bufferedImage Modyfikowany obraz
+     * @param selectedFilter Wybrany filtr
+     * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
+     * @param higherThresholdValue Górny próg algorytmu Canny'ego
+     * @return output Mapa krawędzi
+     */
+
+    public EdgeMap computeEdges(BufferedImage bufferedImage, String selectedFilter, double lowerThresholdValue,
+                                double higherThresholdValue) {
+        return computeEdges(bufferedImage, selectedFilter, lowerThresholdValue, higherThresholdValue, 1);
+    }
+
+    /**
+     * Metoda wykrywa krawędzie i zwraca wynik w pamięci, dzieląc obraz na kafelki wierszy przetwarzane równolegle
+     * @param bufferedImage Modyfikowany obraz
+     * @param selectedFilter Wybrany filtr
+     * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
+     * @param higherThresholdValue Górny próg algorytmu Canny'ego
+     * @param parallelism Liczba kafelków wierszy przetwarzanych równolegle
+     * @return output Mapa krawędzi
+     */
+
+    public EdgeMap computeEdges(BufferedImage bufferedImage, String selectedFilter, double lowerThresholdValue,
+                                double higherThresholdValue, int parallelism) {
+        return computeEdges(bufferedImage, selectedFilter, lowerThresholdValue, higherThresholdValue, parallelism, null);
+    }
+
+    /**
+     * Metoda wykrywa krawędzie tak jak metoda bez parametru reuse, zapisując wynik do podanej mapy.
+     * Płaszczyzny pośrednie są brane z obszaru roboczego bieżącego wątku ({@link Workspace}), więc przy kolejnych
+     * obrazach tego samego rozmiaru i ponownym użyciu mapy wyniku nie są alokowane tablice pikseli.
+     * @param bufferedImage Modyfikowany obraz
+     * @param selectedFilter Wybrany filtr
+     * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
+     * @param higherThresholdValue Górny próg algorytmu Canny'ego
+     * @param parallelism Liczba kafelków wierszy przetwarzanych równolegle
+     * @param reuse Mapa poprzedniego wyniku, nadpisywana, jeśli ma rozmiary obrazu; null oznacza nową mapę
+     * @return output Mapa krawędzi
+     */
+
+    public EdgeMap computeEdges(BufferedImage bufferedImage, String selectedFilter, double lowerThresholdValue,
+                                double higherThresholdValue, int parallelism, EdgeMap reuse) {
+        return computeEdges(bufferedImage, selectedFilter, lowerThresholdValue, higherThresholdValue, parallelism, reuse,
+                ProgressListener.NONE);
+    }
+
+    /**
+     * Metoda wykrywa krawędzie tak jak metoda bez parametru listener, zgłaszając zakończenie kolejnych etapów.
+     * Pomiary etapów trafiają też do zdarzeń JFR i rejestru {@link MetricsRegistry#global()}.
+     * Wynik znaleziony w pamięci podręcznej jest zwracany bez obliczeń i bez zgłaszania etapów.
+     * @param bufferedImage Modyfikowany obraz
+     * @param selectedFilter Wybrany filtr
+     * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
+     * @param higherThresholdValue Górny próg algorytmu Canny'ego
+     * @param parallelism Liczba kafelków wierszy przetwarzanych równolegle
+     * @param reuse Mapa poprzedniego wyniku, nadpisywana, jeśli ma rozmiary obrazu; null oznacza nową mapę
+     * @param listener Odbiorca postępu, który może przerwać detekcję wyjątkiem CancellationException
+     * @return output Mapa krawędzi
+     */
+
+    public EdgeMap computeEdges(BufferedImage bufferedImage, String selectedFilter, double lowerThresholdValue,
+                                double higherThresholdValue, int parallelism, EdgeMap reuse, ProgressListener listener) {
+        if (cache == null) {
+            return computeEdgesUncached(bufferedImage, selectedFilter, lowerThresholdValue, higherThresholdValue,
+                    parallelism, reuse, listener);
+        }
+        ResultCache.Key key = ResultCache.key(bufferedImage, filterSignature(selectedFilter),
+                cacheThreshold(selectedFilter, lowerThresholdValue), cacheThreshold(selectedFilter, higherThresholdValue));
+        EdgeMap output = cache.get(key, reuse);
+        if (output == null) {
+            output = computeEdgesUncached(bufferedImage, selectedFilter, lowerThresholdValue, higherThresholdValue,
+                    parallelism, reuse, listener);
+            cache.put(key, output);
+        }
+        return output;
+    }
+
+    /**
+     * Metoda wykrywa krawędzie w pliku obrazu. Przy pamięci podręcznej klucz jest wyznaczany ze skrótu zakodowanej
+     * zawartości pliku, więc dla zapamiętanego wyniku plik jest tylko czytany, bez dekodowania obrazu i obliczeń.
+     * @param input Plik obrazu wejściowego
+     * @param selectedFilter Wybrany filtr
+     * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
+     * @param higherThresholdValue Górny próg algorytmu Canny'ego
+     * @param parallelism Liczba kafelków wierszy przetwarzanych równolegle
+     * @param reuse Mapa poprzedniego wyniku, nadpisywana, jeśli ma rozmiary obrazu; null oznacza nową mapę
+     * @return output Mapa krawędzi
+     * @throws IOException błąd odczytu pliku lub nieobsługiwany format obrazu
+     */
+
+    public EdgeMap computeEdges(File input, String selectedFilter, double lowerThresholdValue,
+                                double higherThresholdValue, int parallelism, EdgeMap reuse) throws IOException {
+        if (cache == null) {
+            return computeEdgesUncached(read(input, null), selectedFilter, lowerThresholdValue,
+                    higherThresholdValue, parallelism, reuse, ProgressListener.NONE);
+        }
+        byte[] encoded = Files.readAllBytes(input.toPath());
+        ResultCache.Key key = ResultCache.key(encoded, filterSignature(selectedFilter),
+                cacheThreshold(selectedFilter, lowerThresholdValue), cacheThreshold(selectedFilter, higherThresholdValue));
+        EdgeMap output = cache.get(key, reuse);
+        if (output == null) {
+            output = computeEdgesUncached(read(input, encoded), selectedFilter, lowerThresholdValue,
+                    higherThresholdValue, parallelism, reuse, ProgressListener.NONE);
+            cache.put(key, output);
+        }
+        return output;
+    }
+
+    /**
+     * Metoda wykrywa krawędzie bez użycia pamięci podręcznej
+     * (patrz {@link #computeEdges(BufferedImage, String, double, double, int, EdgeMap, ProgressListener)})
+     */
+
+    private EdgeMap computeEdgesUncached(BufferedImage bufferedImage, String selectedFilter, double lowerThresholdValue,
+                                         double higherThresholdValue, int parallelism, EdgeMap reuse,
+                                         ProgressListener listener) {
+        EdgeMap output = null;
         if(selectedFilter.equals(CANNY_EDGE_DETECTION)) {
             Canny cannyAlgorithm = new Canny(lowerThresholdValue, higherThresholdValue);
-            output = cannyAlgorithm.detectEdges(bufferedImage);
+            output = cannyAlgorithm.computeEdges(bufferedImage, parallelism, reuse, listener);
         }
         else{
-            double[][][] image = transformImageToArray(bufferedImage);
-            double[][] filter = maskMap.get(selectedFilter);
-            mixedPixels = applyMix(bufferedImage.getWidth(), bufferedImage.getHeight(), image, filter);
-            output = createImageFromMatrix(bufferedImage, mixedPixels);
+            Kernel filter = getKernel(selectedFilter);
+            ProgressListener recorder = new StageRecorder(listener, (long) bufferedImage.getWidth() * bufferedImage.getHeight());
+            Workspace workspace = Workspace.acquire();
+            try {
+                PixelPlane channelSum = transformImageToSum(bufferedImage, workspace);
+                recorder.stageFinished("Składowe RGB", 1, MASK_STAGE_COUNT);
+                PixelPlane mixedPixels = applyMix(channelSum, filter, parallelism, workspace);
+                recorder.stageFinished("Splot z maską", 2, MASK_STAGE_COUNT);
+                output = ImageConverter.toEdgeMap(mixedPixels, reuse);
+                recorder.stageFinished("Mapa krawędzi", 3, MASK_STAGE_COUNT);
+            } finally {
+                workspace.release();
+            }
         }
         return output;
     }
 
     /**
-     * Metoda zmienia obraz na wektor
-     * @param bufferedImage Modyfikowany obraz
-     * @return image Obraz w postaci wektora z uwględnionymi składowymi RGB
+     * Metoda wykrywa krawędzie w obszarach zainteresowania pliku i zapisuje wyniki jako pliki JPEG w katalogu roboczym.
+     * Dekodowane jest tylko otoczenie obszarów (patrz {@link ImageRegionReader}).
+     * @param input Plik obrazu wejściowego
+     * @param regions Obszary zainteresowania
+     * @param selectedFilter Wybrany filtr
+     * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
+     * @param higherThresholdValue Górny próg algorytmu Canny'ego
+     * @return output Pliki z mapami krawędzi w kolejności obszarów
+     * @throws IOException błąd odczytu lub zapisu
      */
 
-    private double[][][] transformImageToArray(BufferedImage bufferedImage) {
-        int width = bufferedImage.getWidth();
-        int height = bufferedImage.getHeight();
-
-        double[][][] image = new double[3][height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                Color color = new Color(bufferedImage.getRGB(j, i));
-                image[0][i][j] = color.getRed();
-                image[1][i][j] = color.getGreen();
-                image[2][i][j] = color.getBlue();
+    public List<File> detectEdges(File input, List<Rectangle> regions, String selectedFilter, double lowerThresholdValue,
+                                  double higherThresholdValue) throws IOException {
+        List<File> output = new ArrayList<>();
+        try (ImageRegionReader reader = new ImageRegionReader(input)) {
+            for (EdgeMap edges : computeEdges(reader, regions, selectedFilter, lowerThresholdValue, higherThresholdValue, 1)) {
+                output.add(DEFAULT_SINK.write(edges));
             }
         }
-        return image;
+        return output;
     }
 
     /**
-     * Metoda łączy jądra obrazu z filtrem
-     * @param width Szerokość obrazu
-     * @param height Wysokość obrazu
-     * @param image Obraz w postaci tablicy
-     * @param filter Filtr
-     * @return finalMix Połączone składowe z filtrem
-     */
-
-    private double[][] applyMix(int width, int height, double[][][] image, double[][] filter) {
-        edgedetection.Mix mix = new edgedetection.Mix();
-        double[][] redMix = mix.mixNext(image[0], height, width, filter, 3, 3);
-        double[][] greenMix = mix.mixNext(image[1], height, width, filter, 3, 3);
-        double[][] blueMix = mix.mixNext(image[2], height, width, filter, 3, 3);
-        double[][] finalMix = new double[redMix.length][redMix[0].length];
-        for (int i = 0; i < redMix.length; i++) {
-            for (int j = 0; j < redMix[i].length; j++) {
-                finalMix[i][j] = redMix[i][j] + greenMix[i][j] + blueMix[i][j];
-            }
+     * Metoda wykrywa krawędzie w obszarach zainteresowania obrazu w pamięci
+     * (patrz {@link #computeEdges(ImageRegionReader, List, String, double, double, int)})
+     * @param bufferedImage Modyfikowany obraz
+     * @param regions Obszary zainteresowania
+     * @param selectedFilter Wybrany filtr
+     * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
+     * @param higherThresholdValue Górny próg algorytmu Canny'ego
+     * @param parallelism Liczba kafelków wierszy przetwarzanych równolegle
+     * @return output Mapy krawędzi w kolejności obszarów
+     */
+
+    public List<EdgeMap> computeEdges(BufferedImage bufferedImage, List<Rectangle> regions, String selectedFilter,
+                                      double lowerThresholdValue, double higherThresholdValue, int parallelism) {
+        try {
+            return computeEdges(new ImageRegionReader(bufferedImage), regions, selectedFilter, lowerThresholdValue,
+                    higherThresholdValue, parallelism);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return finalMix;
     }
 
     /**
-     * Metoda tworzy obraz z macierzy
-     * @param originalImage Obraz wejściowy
-     * @param imageRGB Macierz obrazu w skali RGB
-     * @return outputFile obraz wyjściowy
-     * @exception IOException W przypadku błędu użytkownika
-     *  @see IOException
+     * Metoda wykrywa krawędzie tylko w obszarach zainteresowania. Każdy obszar jest czytany ze źródła powiększony
+     * o halo filtru: dla filtru masek o połowę jej wymiarów, a dla algorytmu Canny'ego o halo wszystkich etapów
+     * i zapas histerezy (patrz {@link Canny#computeEdges(ImageRegionReader, Rectangle, int)}). Wynik jest identyczny
+     * z fragmentem wyniku dla całego obrazu, a koszt zależy od pola obszarów. Obszary są przetwarzane niezależnie,
+     * więc część wspólna nakładających się obszarów jest liczona dla każdego z nich.
+     * @param source Źródło fragmentów obrazu
+     * @param regions Obszary zainteresowania; części poza obrazem są pomijane
+     * @param selectedFilter Wybrany filtr
+     * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
+     * @param higherThresholdValue Górny próg algorytmu Canny'ego
+     * @param parallelism Liczba kafelków wierszy przetwarzanych równolegle
+     * @return output Mapy krawędzi o wymiarach części obszarów leżących w obrazie, w kolejności obszarów
+     * @throws IOException błąd odczytu fragmentu obrazu
+     * @throws IllegalArgumentException dla nieznanej nazwy filtru lub obszaru bez części wspólnej z obrazem
      */
 
-    private File createImageFromMatrix(BufferedImage originalImage, double[][] imageRGB) throws IOException {
-        BufferedImage createNewImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-        for (int i = 0; i < imageRGB.length; i++) {
-            for (int j = 0; j < imageRGB[i].length; j++) {
-                Color color = new Color(transformRGB(imageRGB[i][j]),
-                        transformRGB(imageRGB[i][j]),
-                        transformRGB(imageRGB[i][j]));
-                createNewImage.setRGB(j, i, color.getRGB());
+    public List<EdgeMap> computeEdges(ImageRegionReader source, List<Rectangle> regions, String selectedFilter,
+                                      double lowerThresholdValue, double higherThresholdValue, int parallelism)
+            throws IOException {
+        List<EdgeMap> output = new ArrayList<>();
+        if (selectedFilter.equals(CANNY_EDGE_DETECTION)) {
+            Canny cannyAlgorithm = new Canny(lowerThresholdValue, higherThresholdValue);
+            for (Rectangle region : regions) {
+                output.add(cannyAlgorithm.computeEdges(source, region, parallelism));
             }
+            return output;
         }
-        String g = "outputimage" + LocalTime.now() ;
-        g = g.replace('.','_').replace(':', '_');
-        g = ".\\" + g + ".jpg";
-        File outputFile = new File(g);
-        ImageIO.write(createNewImage, "jpg", outputFile);
-        return outputFile;
+        Kernel filter = getKernel(selectedFilter);
+        Rectangle bounds = new Rectangle(source.getWidth(), source.getHeight());
+        for (Rectangle region : regions) {
+            Rectangle target = region.intersection(bounds);
+            if (target.isEmpty()) {
+                throw new IllegalArgumentException("Obszar " + region + " nie ma części wspólnej z obrazem");
+            }
+            Rectangle crop = new Rectangle(target);
+            crop.grow(filter.getWidth() / 2, filter.getHeight() / 2);
+            crop = crop.intersection(bounds);
+            EdgeMap edges = computeEdgesUncached(source.read(crop), selectedFilter, lowerThresholdValue,
+                    higherThresholdValue, parallelism, null, ProgressListener.NONE);
+            byte[] pixels = new byte[target.width * target.height];
+            for (int y = 0; y < target.height; ++y) {
+                System.arraycopy(edges.getPixels(), (target.y - crop.y + y) * crop.width + target.x - crop.x, pixels,
+                        y * target.width, target.width);
+            }
+            output.add(new EdgeMap(target.width, target.height, pixels));
+        }
+        return output;
     }
 
     /**
-     * Metoda zmienia odczytane wartości na skalę RGB
-     * @param value Odczytana wartość
-     * @return Wartość w skali RGB
+     * Metoda wykrywa krawędzie kilkoma filtrami masek naraz. Obraz jest zamieniany na sumę składowych RGB jeden raz,
+     * a wszystkie maski są stosowane w jednym przebiegu po wierszach ({@link MultiMaskFilter}), więc koszt kolejnego
+     * filtru to tylko jego mnożenia, bez ponownego dekodowania i czytania obrazu.
+     * Wyniki są równe wynikom metody dla pojedynczego filtru; dla filtrów o wagach niecałkowitych, np. Laplasjanu
+     * funkcji Gaussa, mogą się różnić o jeden poziom jasności, bo sumy zależą od kolejności dodawania.
+     * @param bufferedImage Modyfikowany obraz
+     * @param selectedFilters Wybrane filtry, bez algorytmu Canny'ego; powtórzenia są pomijane
+     * @param parallelism Liczba kafelków wierszy przetwarzanych równolegle
+     * @return output Mapy krawędzi w kolejności filtrów
+     * @throws IllegalArgumentException dla nieznanej nazwy filtru lub algorytmu Canny'ego
      */
 
-    private int transformRGB(double value) {
-        if (value < 0.0) {
-            value = -value;
+    public Map<String, EdgeMap> computeEdges(BufferedImage bufferedImage, List<String> selectedFilters, int parallelism) {
+        List<String> filters = List.copyOf(new LinkedHashSet<>(selectedFilters));
+        Kernel[] kernels = new Kernel[filters.size()];
+        EdgeMap[] outputs = new EdgeMap[filters.size()];
+        for (int i = 0; i < kernels.length; i++) {
+            kernels[i] = getKernel(filters.get(i));
+            outputs[i] = EdgeMap.reuseOrCreate(null, bufferedImage.getWidth(), bufferedImage.getHeight());
         }
-        if (value > 255) {
-            return 255;
-        } else {
-            return (int) value;
+        ProgressListener recorder = new StageRecorder(ProgressListener.NONE,
+                (long) bufferedImage.getWidth() * bufferedImage.getHeight());
+        Workspace workspace = Workspace.acquire();
+        try {
+            PixelPlane channelSum = transformImageToSum(bufferedImage, workspace);
+            recorder.stageFinished("Składowe RGB", 1, 2);
+            new MultiMaskFilter(kernels).apply(channelSum, outputs, parallelism);
+            recorder.stageFinished("Splot z maskami", 2, 2);
+        } finally {
+            workspace.release();
         }
+        Map<String, EdgeMap> output = new LinkedHashMap<>();
+        for (int i = 0; i < outputs.length; i++) {
+            output.put(filters.get(i), outputs[i]);
+        }
+        return output;
     }
 
     /**
-     * Metoda implementuje HashMapę przyjmującą obiekty typu String związane z nazwą maski i tablicę dwywymiarową typu double zawierającą parametry maski
-     * @return HashMap
+     * Metoda zwraca przygotowane jądro filtru o podanej nazwie
+     * @param selectedFilter Wybrany filtr, różny od algorytmu Canny'ego
+     * @return filter Jądro filtru z rejestru
+     * @throws IllegalArgumentException dla nieznanej nazwy filtru
      */
 
-    private HashMap<String, double[][]> buildMaskMap() {
-        HashMap<String, double[][]> maskMap;
-        maskMap = new HashMap<>();
+    Kernel getKernel(String selectedFilter) {
+        return filters.get(selectedFilter);
+    }
 
-        maskMap.put(VERTICAL, VERTICAL_MASK);
-        maskMap.put(HORIZONTAL, HORIZONTAL_MASK);
-        maskMap.put(SOBEL_VERTICAL, SOBEL_MASK_VERTICAL);
-        maskMap.put(SOBEL_HORIZONTAL, SOBEL_MASK_HORIZONTAL);
-        maskMap.put(SCHARR_VERTICAL, SCHARR_MASK_VERTICAL);
-        maskMap.put(SCHARR_HORIZONTAL, SCHARR_MASK_HORIZONTAL);
-        return maskMap;
+    /**
+     * Metoda zwraca nazwę filtru dla klucza pamięci podręcznej. Nazwa filtru masek jest uzupełniana o wszystkie wagi
+     * i współczynnik normalizacji, bo rejestr może zastąpić jądro o tej samej nazwie innym, a wynik zapamiętany
+     * dla poprzedniego jądra nie może być zwrócony dla nowego.
+     * @param selectedFilter Wybrany filtr
+     * @return signature Nazwa filtru w kluczu
+     * @throws IllegalArgumentException dla nieznanej nazwy filtru
+     */
+
+    private String filterSignature(String selectedFilter) {
+        if (selectedFilter.equals(CANNY_EDGE_DETECTION)) {
+            return selectedFilter;
+        }
+        Kernel kernel = getKernel(selectedFilter);
+        return selectedFilter + "#" + Arrays.deepToString(kernel.toArray()) + "*" + kernel.getNormalization();
+    }
+
+    /**
+     * Metoda zwraca próg dla klucza pamięci podręcznej; filtry masek nie używają progów, więc ich próg to 0
+     */
+
+    private static double cacheThreshold(String selectedFilter, double threshold) {
+        return selectedFilter.equals(CANNY_EDGE_DETECTION) ? threshold : 0;
+    }
+
+    /**
+     * Metoda dekoduje obraz z pliku lub z przeczytanej już zawartości pliku
+     * @param input Plik obrazu
+     * @param encoded Zawartość pliku lub null, jeśli obraz ma być dekodowany bezpośrednio z pliku
+     * @return image Zdekodowany obraz
+     * @throws IOException błąd odczytu pliku lub nieobsługiwany format obrazu
+     */
+
+    private static BufferedImage read(File input, byte[] encoded) throws IOException {
+        BufferedImage image = encoded == null ? ImageIO.read(input) : ImageIO.read(new ByteArrayInputStream(encoded));
+        if (image == null) {
+            throw new IOException(input + ": nieobsługiwany format obrazu");
+        }
+        return image;
+    }
+
+    /**
+     * Metoda zmienia obraz na płaszczyznę sumy składowych R + G + B z obszaru roboczego
+     * @param bufferedImage Modyfikowany obraz
+     * @param workspace Obszar roboczy wywołującego
+     * @return channelSum Płaszczyzna z miejsca {@link Workspace.Slot#CHANNEL_SUM}
+     */
+
+    PixelPlane transformImageToSum(BufferedImage bufferedImage, Workspace workspace) {
+        PixelPlane channelSum = workspace.plane(Workspace.Slot.CHANNEL_SUM, bufferedImage.getWidth(),
+                bufferedImage.getHeight());
+        ImageConverter.toChannelSum(bufferedImage, channelSum);
+        return channelSum;
+    }
+
+    /**
+     * Metoda splata sumę składowych obrazu z filtrem; wynik jest równy sumie splotów poszczególnych składowych.
+     * Filtry o wagach całkowitych są splatane z wagami przed normalizacją, a współczynnik normalizacji mnoży gotowe
+     * sumy, więc wynik jest dokładny i równy wynikowi {@link MultiMaskFilter} niezależnie od rozkładu jądra.
+     * @param channelSum Płaszczyzna sumy składowych R + G + B
+     * @param filter Filtr
+     * @param parallelism Liczba kafelków wierszy przetwarzanych równolegle
+     * @param workspace Obszar roboczy wywołującego
+     * @return finalMix Splot sumy z filtrem, płaszczyzna z miejsca {@link Workspace.Slot#MASK_MIX}
+     */
+
+    PixelPlane applyMix(PixelPlane channelSum, Kernel filter, int parallelism, Workspace workspace) {
+        PixelPlane mix = workspace.plane(Workspace.Slot.MASK_MIX, channelSum.getWidth(), channelSum.getHeight());
+        Kernel integerKernel = filter.getIntegerKernel();
+        Convolution.convolve(channelSum, integerKernel != null ? integerKernel : filter, Convolution.Border.ZERO, mix,
+                parallelism, workspace);
+        if (integerKernel != null) {
+            normalize(mix, filter);
+        }
+        return mix;
+    }
+
+    /**
+     * Metoda mnoży sumy splotu z wagami całkowitymi przez współczynnik normalizacji filtru
+     * @param mix Płaszczyzna sum splotu
+     * @param filter Filtr o wagach całkowitych
+     */
+
+    private static void normalize(PixelPlane mix, Kernel filter) {
+        if (filter.getNormalization() == 1) {
+            return;
+        }
+        float scale = (float) filter.getNormalization();
+        float[] data = mix.getData();
+        for (int i = 0; i < mix.getWidth() * mix.getHeight(); i++) {
+            data[i] *= scale;
+        }
     }
 }
@@ -2,11 +2,17 @@ package edgedetection;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import static edgedetection.EdgeDetection.*;
 
 /**
@@ -23,10 +29,25 @@ public class EdgeDetectionUI {
     private static final int FRAME_WIDTH = 1400;
     private static final int FRAME_HEIGHT = 600;
     private static final Font sansSerifBold = new Font("SansSerif", Font.BOLD, 22);
+    private static final int MAX_SLIDER_THRESHOLD = 300;
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    /** Poziom piramidy obrazu (1/16 pikseli), dla którego wyświetlany jest podgląd przed pełnym wynikiem Canny'ego */
+    private static final int PREVIEW_LEVEL = 2;
     private  ImagePanel sourceImage = new ImagePanel(".\\Obraz1.jpg");
     private  ImagePanel destImage = new ImagePanel(".\\Obraz1.jpg");
     private JPanel mainPanel;
     private final EdgeDetection edgeDetection;
+    /** Algorytm Canny'ego pamiętający pocienione krawędzie bieżącego obrazu, dzięki czemu zmiana progów jest natychmiastowa */
+    private final Canny canny = new Canny(LOWER_THRESHOLD, HIGHER_THRESHOLD);
+    /** Czy prawy panel pokazuje wynik algorytmu Canny'ego dla bieżącego obrazu */
+    private boolean cannyResultShown;
+    /** Obraz, dla którego wyświetlono już podgląd algorytmu Canny'ego; dostęp pod blokadą obiektu canny */
+    private BufferedImage previewedImage;
+    /** Detekcja wykonywana w tle lub null, jeśli żadna nie trwa */
+    private DetectionWorker detection;
+    /** Czy suwak progu jest przesuwany po wpisaniu wartości w pole progu; wtedy detekcja nie jest uruchamiana */
+    private boolean thresholdTyped;
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
 
     /**
      * Metoda implementuje GUI
@@ -61,13 +82,16 @@ public class EdgeDetectionUI {
 
         JPanel northPanel = new JPanel();
 
-        JComboBox filterChoice = new JComboBox();
+        JComboBox<String> filterChoice = new JComboBox<>();
         filterChoice.addItem(HORIZONTAL);
         filterChoice.addItem(VERTICAL);
         filterChoice.addItem(SOBEL_VERTICAL);
         filterChoice.addItem(SOBEL_HORIZONTAL);
         filterChoice.addItem(SCHARR_VERTICAL);
         filterChoice.addItem(SCHARR_HORIZONTAL);
+        filterChoice.addItem(SOBEL_5X5_VERTICAL);
+        filterChoice.addItem(SOBEL_5X5_HORIZONTAL);
+        filterChoice.addItem(LAPLACIAN_OF_GAUSSIAN);
         filterChoice.addItem(CANNY_EDGE_DETECTION);
         filterChoice.setFont(sansSerifBold);
 
@@ -100,30 +124,71 @@ public class EdgeDetectionUI {
         });
 
 
+        JSlider lowerSlider = createThresholdSlider(LOWER_THRESHOLD);
+        JSlider higherSlider = createThresholdSlider(HIGHER_THRESHOLD);
+
+        JButton detect = new JButton("Wykryj krawedzie");
+        detect.setFont(sansSerifBold);
+
+        JButton cancel = new JButton("Anuluj");
+        cancel.setFont(sansSerifBold);
+
+        progressBar.setFont(sansSerifBold);
+        progressBar.setStringPainted(true);
+        progressBar.setString("");
+
         filterChoice.addActionListener (new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                if(((String) filterChoice.getSelectedItem()).equals(CANNY_EDGE_DETECTION)){
+                if(CANNY_EDGE_DETECTION.equals(filterChoice.getSelectedItem())){
                     lowerThreshold.setEditable(true);
                     higherThreshold.setEditable(true);
+                    lowerSlider.setEnabled(true);
+                    higherSlider.setEnabled(true);
 
                 }
                 else{
                     lowerThreshold.setEditable(false);
                     higherThreshold.setEditable(false);
+                    lowerSlider.setEnabled(false);
+                    higherSlider.setEnabled(false);
                     lowerThreshold.setText("Dolny próg (Canny)");
                     higherThreshold.setText("Górny próg (Canny)");
                 }
+                if (detection != null) {
+                    detect.doClick();
+                }
             }
         });
 
-        JButton detect = new JButton("Wykryj krawedzie");
-        detect.setFont(sansSerifBold);
+        ChangeListener sliderListener = event -> {
+            if (lowerSlider.getValue() > higherSlider.getValue()) {
+                if (event.getSource() == lowerSlider) {
+                    higherSlider.setValue(lowerSlider.getValue());
+                } else {
+                    lowerSlider.setValue(higherSlider.getValue());
+                }
+            }
+            showThreshold(lowerThreshold, lowerSlider);
+            showThreshold(higherThreshold, higherSlider);
+            if (cannyResultShown && !thresholdTyped && !lowerSlider.getValueIsAdjusting()
+                    && !higherSlider.getValueIsAdjusting()) {
+                startDetection(sourceImage.getImage(), CANNY_EDGE_DETECTION, lowerSlider.getValue(), higherSlider.getValue());
+            }
+        };
+        lowerSlider.addChangeListener(sliderListener);
+        higherSlider.addChangeListener(sliderListener);
+        linkThresholdField(lowerThreshold, lowerSlider);
+        linkThresholdField(higherThreshold, higherSlider);
 
         northPanel.add(filterChoice);
         northPanel.add(chooseButton);
         northPanel.add(lowerThreshold);
+        northPanel.add(lowerSlider);
         northPanel.add(higherThreshold);
+        northPanel.add(higherSlider);
         northPanel.add(detect);
+        northPanel.add(cancel);
+        northPanel.add(progressBar);
 
 
         chooseButton.addActionListener(event -> {
@@ -132,7 +197,9 @@ public class EdgeDetectionUI {
             int action = chooser.showOpenDialog(null);
             if (action == JFileChooser.APPROVE_OPTION) {
                 try {
+                    cancelDetection();
                     sourceImage = new ImagePanel(chooser.getSelectedFile().getAbsolutePath());
+                    cannyResultShown = false;
                     mainPanel.removeAll();
                     mainPanel.add(sourceImage);
                     mainPanel.add(destImage);
@@ -146,7 +213,10 @@ public class EdgeDetectionUI {
 
         detect.addActionListener(event -> {
             try {
-                BufferedImage bufferedImage = ImageIO.read(new File(sourceImage.getcurrentpath()));
+                BufferedImage bufferedImage = sourceImage.getImage();
+                if (bufferedImage == null) {
+                    throw new IOException("Nie wczytano obrazu " + sourceImage.getcurrentpath());
+                }
                 double lowerThresholdValue = readThreshold(lowerThreshold.getText());
                 double higherThresholdValue = readThreshold(higherThreshold.getText());
                 if ((lowerThresholdValue < 0 ) && (filterChoice.getSelectedItem().equals(CANNY_EDGE_DETECTION))) {
@@ -163,22 +233,111 @@ public class EdgeDetectionUI {
                     higherThresholdValue = HIGHER_THRESHOLD;
                     higherThreshold.setText(String.valueOf(higherThresholdValue));
                 }
-                File mixedFile = edgeDetection.detectEdges(bufferedImage, (String) filterChoice.getSelectedItem(),
-                        lowerThresholdValue, higherThresholdValue);
-                destImage = new ImagePanel(mixedFile.getAbsolutePath());
-                mainPanel.removeAll();
-                mainPanel.add(sourceImage);
-                mainPanel.add(destImage);
-                mainPanel.updateUI();
+                startDetection(bufferedImage, filterChoice.getItemAt(filterChoice.getSelectedIndex()), lowerThresholdValue,
+                        higherThresholdValue);
             } catch (IOException e) {
                 System.out.println("Bląd detekcji krawędzi.");
                 throw new RuntimeException(e);
             }
         });
 
+        cancel.addActionListener(event -> cancelDetection());
+
         return northPanel;
     }
 
+    /**
+     * Metoda uruchamia detekcję krawędzi w tle, anulując detekcję, która jeszcze trwa
+     * @param image Obraz wejściowy
+     * @param filter Wybrany filtr
+     * @param lowerThresholdValue Dolny próg algorytmu Canny'ego
+     * @param higherThresholdValue Górny próg algorytmu Canny'ego
+     */
+
+    private void startDetection(BufferedImage image, String filter, double lowerThresholdValue, double higherThresholdValue) {
+        cancelDetection();
+        detection = new DetectionWorker(image, filter, lowerThresholdValue, higherThresholdValue);
+        detection.execute();
+    }
+
+    /**
+     * Metoda anuluje trwającą detekcję; algorytm zatrzymuje się po zakończeniu bieżącego etapu
+     */
+
+    private void cancelDetection() {
+        if (detection != null) {
+            detection.cancel(false);
+        }
+    }
+
+    /**
+     * Metoda wyświetla mapę krawędzi w prawym panelu
+     * @param edges Mapa krawędzi
+     */
+
+    private void showResult(EdgeMap edges) {
+        destImage = new ImagePanel(edges.toImage());
+        mainPanel.removeAll();
+        mainPanel.add(sourceImage);
+        mainPanel.add(destImage);
+        mainPanel.updateUI();
+    }
+
+    /**
+     * Metoda tworzy suwak progu algorytmu Canny'ego, nieaktywny do czasu wybrania tego algorytmu.
+     * Puszczenie suwaka po wykryciu krawędzi powtarza tylko progowanie i histerezę. Dolny próg nie przekracza górnego:
+     * suwak przesunięty poza wartość drugiego suwaka przesuwa go razem ze sobą.
+     * @param initialValue Początkowa wartość progu
+     * @return slider Suwak progu
+     */
+
+    private JSlider createThresholdSlider(double initialValue) {
+        JSlider slider = new JSlider(0, MAX_SLIDER_THRESHOLD, (int) Math.round(initialValue));
+        slider.setPreferredSize(new Dimension(150, 40));
+        slider.setEnabled(false);
+        return slider;
+    }
+
+    /**
+     * Metoda wpisuje wartość suwaka w pole progu, chyba że użytkownik właśnie wpisuje w nim wartość
+     * @param field Pole progu
+     * @param slider Suwak progu
+     */
+
+    private void showThreshold(JTextField field, JSlider slider) {
+        if (!field.isFocusOwner()) {
+            field.setText(String.valueOf(slider.getValue()));
+        }
+    }
+
+    /**
+     * Metoda przesuwa suwak progu po wpisaniu poprawnej wartości w pole progu; wartość poza zakresem suwaka
+     * jest do niego przycinana, a detekcja jest uruchamiana dopiero przyciskiem
+     * @param field Pole progu
+     * @param slider Suwak progu
+     */
+
+    private void linkThresholdField(JTextField field, JSlider slider) {
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) {
+                moveSlider();
+            }
+            @Override public void removeUpdate(DocumentEvent e) {
+                moveSlider();
+            }
+            @Override public void changedUpdate(DocumentEvent e) {}
+
+            private void moveSlider() {
+                double value = readThreshold(field.getText());
+                if (value >= 0 && field.isFocusOwner()) {
+                    thresholdTyped = true;
+                    slider.setValue((int) Math.min(Math.round(value), MAX_SLIDER_THRESHOLD));
+                    thresholdTyped = false;
+                }
+            }
+        });
+    }
+
     /**
      * Metoda pobiera wartości progów dla algorytmu Canny'ego
      * @return Zwraca wartość -1 w przypadku wystapienia wyjątku
@@ -215,6 +374,102 @@ public class EdgeDetectionUI {
         return mainFrame;
     }
 
+    /**
+     * Klasa wykonująca detekcję krawędzi w wątku tła, dzięki czemu okno nie zamarza na czas obliczeń.
+     * Po każdym etapie algorytmu aktualizuje pasek postępu, a po anulowaniu przerywa algorytm na granicy etapów.
+     */
+
+    private class DetectionWorker extends SwingWorker<EdgeMap, String> {
+
+        private final BufferedImage image;
+        private final String filter;
+        private final double lowerThresholdValue;
+        private final double higherThresholdValue;
+
+        DetectionWorker(BufferedImage image, String filter, double lowerThresholdValue, double higherThresholdValue) {
+            this.image = image;
+            this.filter = filter;
+            this.lowerThresholdValue = lowerThresholdValue;
+            this.higherThresholdValue = higherThresholdValue;
+        }
+
+        /**
+         * Metoda wykonuje detekcję w wątku tła. Bufory robocze wątku są na koniec zwalniane, bo wątki
+         * SwingWorker pozostają w puli, a kolejne zmiany progów i tak korzystają z wyników zapamiętanych w klasie Canny.
+         */
+
+        @Override
+        protected EdgeMap doInBackground() {
+            ProgressListener listener = (stage, finishedStages, totalStages) -> {
+                if (isCancelled()) {
+                    throw new CancellationException();
+                }
+                setProgress(100 * finishedStages / totalStages);
+                publish(stage);
+            };
+            try {
+                if (filter.equals(CANNY_EDGE_DETECTION)) {
+                    synchronized (canny) {
+                        canny.setThresholds(lowerThresholdValue, higherThresholdValue);
+                        if (image != previewedImage) {
+                            showPreview();
+                        }
+                        return canny.computeEdgesCached(image, PARALLELISM, null, listener);
+                    }
+                }
+                return edgeDetection.computeEdges(image, filter, lowerThresholdValue, higherThresholdValue, PARALLELISM,
+                        null, listener);
+            } finally {
+                Workspace.clear();
+            }
+        }
+
+        /**
+         * Metoda wyznacza krawędzie dla pomniejszonego poziomu piramidy obrazu i wyświetla je powiększone,
+         * zanim pełny wynik będzie gotowy; kolejne zmiany progów tego obrazu korzystają z zapamiętanych wyników
+         * i nie potrzebują podglądu
+         */
+
+        private void showPreview() {
+            ImagePyramid pyramid = new ImagePyramid(image, PREVIEW_LEVEL + 1, PARALLELISM);
+            EdgeMap preview = pyramid.expand(canny.computeEdges(pyramid, PREVIEW_LEVEL, PARALLELISM), PREVIEW_LEVEL);
+            previewedImage = image;
+            SwingUtilities.invokeLater(() -> {
+                if (detection == this) {
+                    showResult(preview);
+                }
+            });
+        }
+
+        @Override
+        protected void process(List<String> stages) {
+            if (detection == this) {
+                progressBar.setValue(getProgress());
+                progressBar.setString(stages.get(stages.size() - 1));
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (detection != this) {
+                return;
+            }
+            detection = null;
+            progressBar.setValue(0);
+            progressBar.setString("");
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                showResult(get());
+                cannyResultShown = filter.equals(CANNY_EDGE_DETECTION);
+            } catch (InterruptedException | ExecutionException e) {
+                System.out.println("Bląd detekcji krawędzi.");
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * Klasa implementuje panel wyswietlania obrazu i sposób wczytywania obrazu
      */
@@ -247,6 +502,26 @@ public class EdgeDetectionUI {
 
         }
 
+        /**
+         * Metoda wyświetla obraz przechowywany w pamięci, bez odczytu z dysku
+         * @param sourceImage obraz do wyświetlenia
+         */
+
+        public ImagePanel(BufferedImage sourceImage) {
+            super();
+            image = sourceImage;
+            setPreferredSize(new Dimension(500,510));
+        }
+
+        /**
+         * Metoda zwraca obraz wczytany przy tworzeniu panelu
+         * @return image obraz lub null, jeśli odczyt się nie powiódł
+         */
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
         /**
          * Metoda pobiera ścieżkę do pliku
          * @return currentpath ścieżka do pliku
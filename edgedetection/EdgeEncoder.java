@@ -0,0 +1,28 @@
+package edgedetection;
+
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interfejs kodera zapisującego mapę krawędzi w jednym z formatów plików.
+ * Gotowe kodery tworzą metody klasy {@link EdgeEncoders}.
+ * @author Aneta Bień, Anna Plęs
+ */
+public interface EdgeEncoder {
+
+    /**
+     * Metoda zwraca rozszerzenie plików zapisywanych przez koder
+     * @return rozszerzenie bez kropki, np. "png"
+     */
+    String getExtension();
+
+    /**
+     * Metoda koduje obraz w skali szarości, czytając go od góry do dołu, więc może kodować także obrazy
+     * wyliczane pasami przez {@link StreamingEdgeDetection}
+     * @param image 8-bitowy obraz w skali szarości, np. wynik {@link EdgeMap#toImage()}
+     * @param out strumień docelowy; nie jest zamykany
+     * @throws IOException błąd zapisu lub brak kodera dla formatu
+     */
+    void encode(RenderedImage image, OutputStream out) throws IOException;
+}
@@ -0,0 +1,241 @@
+package edgedetection;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Klasa tworząca kodery map krawędzi. Dostępne są formaty:
+ * <ul>
+ * <li>PGM (P5) - nagłówek tekstowy i surowe 8-bitowe jasności pikseli, bez kompresji i bez strat; najszybszy zapis,</li>
+ * <li>PBM (P4) - jeden bit na piksel, osiem pikseli w bajcie; bezstratny dla map binarnych algorytmu Canny'ego,</li>
+ * <li>PNG z ustawianym poziomem kompresji Deflate - bezstratny i mały, ale wolniejszy od PGM,</li>
+ * <li>dowolny inny format ImageIO, w tym JPEG, zapisywany z domyślnymi ustawieniami kodera.</li>
+ * </ul>
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class EdgeEncoders {
+    /**
+     * Domyślny poziom kompresji PNG. Mapy krawędzi składają się głównie z długich odcinków zer, które Deflate
+     * kompresuje dobrze już na najniższym poziomie: kodowanie trwa o 30-40% krócej niż na poziomie 4 domyślnym
+     * dla kodera z JDK, a plik mapy algorytmu Canny'ego, i tak kilkadziesiąt razy mniejszy od PGM, jest większy
+     * o ok. 60%; pliki map filtrów masek różnią się o kilka procent.
+     */
+    public static final int DEFAULT_PNG_COMPRESSION = 1;
+    /** Minimalna jasność piksela zapisywanego w formacie PBM jako krawędź */
+    public static final int PACKED_BITS_THRESHOLD = 128;
+
+    private EdgeEncoders() {
+    }
+
+    /**
+     * Metoda zwraca koder formatu o podanej nazwie: "pgm", "pbm", "png" (z domyślnym poziomem kompresji)
+     * lub nazwy dowolnego innego formatu ImageIO, np. "jpg"
+     * @param formatName nazwa formatu, bez względu na wielkość liter; jest też rozszerzeniem pliku
+     * @return koder formatu
+     */
+    public static EdgeEncoder forName(String formatName) {
+        switch (formatName.toLowerCase(Locale.ROOT)) {
+            case "pgm":
+                return pgm();
+            case "pbm":
+                return packedBits();
+            case "png":
+                return png(DEFAULT_PNG_COMPRESSION);
+            default:
+                return imageIO(formatName);
+        }
+    }
+
+    /**
+     * Metoda zwraca koder formatu PGM (P5) zapisujący 8-bitowe jasności pikseli bez kompresji
+     * @return koder PGM
+     */
+    public static EdgeEncoder pgm() {
+        return new NetpbmEncoder(false);
+    }
+
+    /**
+     * Metoda zwraca koder formatu PBM (P4) zapisujący jeden bit na piksel. Piksele o jasności co najmniej
+     * {@link #PACKED_BITS_THRESHOLD} są zapisywane jako białe, a pozostałe jako czarne, więc obraz wygląda tak samo
+     * jak w pozostałych formatach. Dla map algorytmu Canny'ego (jasności 0 i 255) zapis jest bezstratny,
+     * a plik jest ośmiokrotnie mniejszy od PGM.
+     * @return koder PBM
+     */
+    public static EdgeEncoder packedBits() {
+        return new NetpbmEncoder(true);
+    }
+
+    /**
+     * Metoda zwraca koder formatu PNG z podanym poziomem kompresji Deflate
+     * @param compressionLevel poziom kompresji 0-9: 0 bez kompresji, 1 najszybsza, 9 najmniejszy plik
+     * @return koder PNG
+     * @throws IllegalArgumentException dla poziomu spoza zakresu
+     */
+    public static EdgeEncoder png(int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Poziom kompresji PNG musi należeć do zakresu 0-9: " + compressionLevel);
+        }
+        // koder PNG z JDK zamienia jakość q na poziom 9 - round(9q)
+        return new ImageIOEncoder("png", (9 - compressionLevel) / 9f);
+    }
+
+    /**
+     * Metoda zwraca koder ImageIO o podanej nazwie formatu, używający domyślnych ustawień kodera
+     * @param formatName nazwa formatu ImageIO, np. "jpg"; jest też rozszerzeniem pliku
+     * @return koder formatu
+     */
+    public static EdgeEncoder imageIO(String formatName) {
+        return new ImageIOEncoder(formatName, Float.NaN);
+    }
+
+    /**
+     * Interfejs odbiorcy kolejnych pasów wierszy obrazu
+     */
+    private interface StripConsumer {
+        /**
+         * @param pixels jasności pikseli pasa zapisane wierszami bez przerw
+         * @param offset indeks pierwszego piksela pasa w tablicy
+         * @param rows liczba wierszy pasa
+         */
+        void accept(byte[] pixels, int offset, int rows) throws IOException;
+    }
+
+    /**
+     * Metoda oddaje wiersze obrazu pasami od góry do dołu. Tablica pikseli obrazu z {@link EdgeMap#toImage()}
+     * jest oddawana w całości bez kopiowania, pozostałe obrazy są czytane pasami o wysokości kafelka.
+     */
+    private static void forEachStrip(RenderedImage image, StripConsumer consumer) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (image instanceof BufferedImage) {
+            Raster raster = ((BufferedImage) image).getRaster();
+            if (raster.getDataBuffer() instanceof DataBufferByte && raster.getNumBands() == 1
+                    && raster.getSampleModel() instanceof PixelInterleavedSampleModel
+                    && ((PixelInterleavedSampleModel) raster.getSampleModel()).getScanlineStride() == width
+                    && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+                DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+                consumer.accept(buffer.getData(), buffer.getOffset(), height);
+                return;
+            }
+        }
+        int stripRows = Math.max(1, Math.min(image.getTileHeight(), height));
+        byte[] pixels = new byte[width * stripRows];
+        for (int y = 0; y < height; y += stripRows) {
+            int rows = Math.min(stripRows, height - y);
+            Raster strip = image.getData(new Rectangle(image.getMinX(), image.getMinY() + y, width, rows));
+            strip.getDataElements(strip.getMinX(), strip.getMinY(), width, rows, pixels);
+            consumer.accept(pixels, 0, rows);
+        }
+    }
+
+    /**
+     * Koder formatów PGM (P5) i PBM (P4) z rodziny Netpbm
+     */
+    private static final class NetpbmEncoder implements EdgeEncoder {
+        private final boolean packed;
+
+        NetpbmEncoder(boolean packed) {
+            this.packed = packed;
+        }
+
+        @Override
+        public String getExtension() {
+            return packed ? "pbm" : "pgm";
+        }
+
+        @Override
+        public void encode(RenderedImage image, OutputStream out) throws IOException {
+            int width = image.getWidth();
+            String header = packed ? "P4\n" + width + " " + image.getHeight() + "\n"
+                    : "P5\n" + width + " " + image.getHeight() + "\n255\n";
+            out.write(header.getBytes(StandardCharsets.US_ASCII));
+            if (!packed) {
+                forEachStrip(image, (pixels, offset, rows) -> out.write(pixels, offset, rows * width));
+                return;
+            }
+            byte[] packedRow = new byte[(width + 7) / 8];
+            forEachStrip(image, (pixels, offset, rows) -> {
+                for (int y = 0; y < rows; ++y) {
+                    packRow(pixels, offset + y * width, width, packedRow);
+                    out.write(packedRow);
+                }
+            });
+        }
+
+        /**
+         * Metoda pakuje wiersz po osiem pikseli w bajcie, od najstarszego bitu; bit 1 oznacza w PBM piksel czarny
+         */
+        private static void packRow(byte[] pixels, int offset, int width, byte[] packedRow) {
+            for (int x = 0; x < width; x += 8) {
+                int count = Math.min(8, width - x);
+                int bits = 0;
+                for (int i = 0; i < count; ++i) {
+                    // najstarszy bit bajtu jest ustawiony dla jasności co najmniej PACKED_BITS_THRESHOLD
+                    bits = (bits << 1) | ((~pixels[offset + x + i] >> 7) & 1);
+                }
+                packedRow[x >> 3] = (byte) (bits << (8 - count));
+            }
+        }
+    }
+
+    /**
+     * Koder używający kodera ImageIO, z opcjonalnie ustawioną jakością kompresji
+     */
+    private static final class ImageIOEncoder implements EdgeEncoder {
+        private final String formatName;
+        private final float compressionQuality;
+
+        /**
+         * @param formatName nazwa formatu ImageIO
+         * @param compressionQuality jakość kompresji 0-1 lub NaN dla ustawień domyślnych kodera
+         */
+        ImageIOEncoder(String formatName, float compressionQuality) {
+            this.formatName = formatName;
+            this.compressionQuality = compressionQuality;
+        }
+
+        @Override
+        public String getExtension() {
+            return formatName;
+        }
+
+        @Override
+        public void encode(RenderedImage image, OutputStream out) throws IOException {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+            if (!writers.hasNext()) {
+                throw new IOException("Brak kodera ImageIO dla formatu " + formatName);
+            }
+            ImageWriter writer = writers.next();
+            try (ImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (param.canWriteProgressive()) {
+                    // koder strumieniowy czyta obraz od góry, czego przeplot nie zapewnia
+                    param.setProgressiveMode(ImageWriteParam.MODE_DISABLED);
+                }
+                if (!Float.isNaN(compressionQuality) && param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(compressionQuality);
+                }
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package edgedetection;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Klasa przechowująca wynik detekcji krawędzi w pamięci jako 8-bitową mapę jasności pikseli
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class EdgeMap {
+    static final ColorModel GRAY_MODEL = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+            new int[]{8}, false, false, ColorModel.OPAQUE, DataBuffer.TYPE_BYTE);
+
+    private final int width;
+    private final int height;
+    private final byte[] pixels;
+
+    /**
+     * Konstruktor opakowujący tablicę jasności pikseli
+     * @param width szerokość mapy
+     * @param height wysokość mapy
+     * @param pixels jasności pikseli 0-255 zapisane wierszami jako bajty bez znaku
+     */
+    public EdgeMap(int width, int height, byte[] pixels) {
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Niepoprawne wymiary mapy krawędzi: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Metoda zwraca szerokość mapy
+     * @return szerokość w pikselach
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Metoda zwraca wysokość mapy
+     * @return wysokość w pikselach
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Metoda zwraca tablicę jasności pikseli
+     * @return jasności pikseli zapisane wierszami jako bajty bez znaku
+     */
+    public byte[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Metoda zwraca jasność piksela
+     * @param x współrzędna x (kolumna)
+     * @param y współrzędna y (wiersz)
+     * @return jasność z zakresu 0-255
+     */
+    public int get(int x, int y) {
+        return pixels[y * width + x] & 0xFF;
+    }
+
+    /**
+     * Metoda tworzy obraz TYPE_BYTE_GRAY współdzielący tablicę pikseli z mapą, bez kopiowania danych
+     * @return obraz w skali szarości
+     */
+    public BufferedImage toImage() {
+        DataBufferByte buffer = new DataBufferByte(pixels, width * height);
+        WritableRaster raster = Raster.createInterleavedRaster(buffer, width, height, width, 1, new int[]{0}, null);
+        return new BufferedImage(GRAY_MODEL, raster, false, null);
+    }
+
+    /**
+     * Metoda zwraca podaną mapę, jeśli ma wymagane rozmiary, a w przeciwnym razie nową mapę wypełnioną zerami
+     * @param reuse mapa do ponownego użycia lub null
+     * @param width szerokość mapy
+     * @param height wysokość mapy
+     * @return mapa o podanych rozmiarach
+     */
+    static EdgeMap reuseOrCreate(EdgeMap reuse, int width, int height) {
+        if (reuse != null && reuse.width == width && reuse.height == height) {
+            return reuse;
+        }
+        return new EdgeMap(width, height, new byte[Math.multiplyExact(width, height)]);
+    }
+}
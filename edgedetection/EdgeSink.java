@@ -0,0 +1,19 @@
+package edgedetection;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Interfejs miejsca docelowego, do którego zapisywane są wyniki detekcji krawędzi
+ * @author Aneta Bień, Anna Plęs
+ */
+public interface EdgeSink {
+
+    /**
+     * Metoda zapisuje mapę krawędzi
+     * @param edges mapa krawędzi
+     * @return plik, do którego zapisano wynik
+     * @throws IOException błąd zapisu
+     */
+    File write(EdgeMap edges) throws IOException;
+}
@@ -0,0 +1,155 @@
+package edgedetection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Klasa przechowująca filtry masek pod nazwami, jako jądra przygotowane raz przy rejestracji ({@link Kernel}):
+ * z rozmiarem, czynnikami separowalnymi, współczynnikiem normalizacji oraz wagami w postaci float i całkowitej.
+ * Splot z jądrem wybiera sposób obliczeń na podstawie jego kształtu, więc filtry mogą mieć dowolny nieparzysty rozmiar.
+ * Rejestr {@link #standard()} zawiera filtry wyświetlane w GUI; do własnego rejestru można dodawać kolejne filtry
+ * i przekazać go do {@link EdgeDetection#EdgeDetection(FilterRegistry)}.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class FilterRegistry {
+    /** Suma dodatnich wag maski Sobela 3x3, do której normalizowane są większe maski o podobnym działaniu */
+    private static final double SOBEL_GAIN = 4;
+    /** Odchylenie standardowe funkcji Gaussa maski LoG 7x7; promień maski to trzy odchylenia */
+    private static final double LOG_SIGMA = 1.0;
+
+    private static final double[][] VERTICAL_MASK = {{1, 0, -1}, {1, 0, -1}, {1, 0, -1}};
+    private static final double[][] HORIZONTAL_MASK = {{1, 1, 1}, {0, 0, 0}, {-1, -1, -1}};
+    private static final double[][] SOBEL_MASK_VERTICAL = {{1, 0, -1}, {2, 0, -2}, {1, 0, -1}};
+    private static final double[][] SOBEL_MASK_HORIZONTAL = {{1, 2, 1}, {0, 0, 0}, {-1, -2, -1}};
+    private static final double[][] SCHARR_MASK_VERTICAL = {{3, 0, -3}, {10, 0, -10}, {3, 0, -3}};
+    private static final double[][] SCHARR_MASK_HORIZONTAL = {{3, 10, 3}, {0, 0, 0}, {-3, -10, -3}};
+    private static final double[][] SOBEL_5X5_MASK_VERTICAL = {
+            {1, 2, 0, -2, -1},
+            {4, 8, 0, -8, -4},
+            {6, 12, 0, -12, -6},
+            {4, 8, 0, -8, -4},
+            {1, 2, 0, -2, -1}};
+    private static final double[][] SOBEL_5X5_MASK_HORIZONTAL = {
+            {1, 4, 6, 4, 1},
+            {2, 8, 12, 8, 2},
+            {0, 0, 0, 0, 0},
+            {-2, -8, -12, -8, -2},
+            {-1, -4, -6, -4, -1}};
+
+    private final Map<String, Kernel> kernels = new LinkedHashMap<>();
+
+    /**
+     * Metoda tworzy rejestr z filtrami wyświetlanymi w GUI: maskami 3x3 Prewitta, Sobela i Scharra, maskami
+     * Sobela 5x5 i odwróconym Laplasjanem funkcji Gaussa 7x7. Maski większe od 3x3 są normalizowane tak, aby suma
+     * ich dodatnich wag była równa sumie dla maski Sobela 3x3, więc mapy krawędzi mają podobną jasność.
+     * @return nowy rejestr, który można uzupełniać bez wpływu na inne rejestry
+     */
+    public static FilterRegistry standard() {
+        FilterRegistry registry = new FilterRegistry();
+        registry.register(EdgeDetection.HORIZONTAL, HORIZONTAL_MASK, 1);
+        registry.register(EdgeDetection.VERTICAL, VERTICAL_MASK, 1);
+        registry.register(EdgeDetection.SOBEL_VERTICAL, SOBEL_MASK_VERTICAL, 1);
+        registry.register(EdgeDetection.SOBEL_HORIZONTAL, SOBEL_MASK_HORIZONTAL, 1);
+        registry.register(EdgeDetection.SCHARR_VERTICAL, SCHARR_MASK_VERTICAL, 1);
+        registry.register(EdgeDetection.SCHARR_HORIZONTAL, SCHARR_MASK_HORIZONTAL, 1);
+        registry.register(EdgeDetection.SOBEL_5X5_VERTICAL, SOBEL_5X5_MASK_VERTICAL, sobelGain(SOBEL_5X5_MASK_VERTICAL));
+        registry.register(EdgeDetection.SOBEL_5X5_HORIZONTAL, SOBEL_5X5_MASK_HORIZONTAL,
+                sobelGain(SOBEL_5X5_MASK_HORIZONTAL));
+        double[][] laplacian = laplacianOfGaussian(3, LOG_SIGMA);
+        registry.register(EdgeDetection.LAPLACIAN_OF_GAUSSIAN, laplacian, sobelGain(laplacian));
+        return registry;
+    }
+
+    /**
+     * Metoda dodaje filtr do rejestru, zastępując filtr o tej samej nazwie
+     * @param name nazwa filtru, różna od {@link EdgeDetection#CANNY_EDGE_DETECTION}
+     * @param kernel jądro filtru
+     * @return ten rejestr
+     */
+    public synchronized FilterRegistry register(String name, Kernel kernel) {
+        if (name.equals(EdgeDetection.CANNY_EDGE_DETECTION)) {
+            throw new IllegalArgumentException("Nazwa filtru jest zarezerwowana dla algorytmu Canny'ego");
+        }
+        kernels.put(name, kernel);
+        return this;
+    }
+
+    /**
+     * Metoda przygotowuje jądro z podanych wag i dodaje je do rejestru
+     * @param name nazwa filtru, różna od {@link EdgeDetection#CANNY_EDGE_DETECTION}
+     * @param weights wagi maski o nieparzystych wymiarach, indeksowane [wiersz][kolumna]
+     * @param normalization współczynnik, przez który mnożone są wagi
+     * @return ten rejestr
+     */
+    public FilterRegistry register(String name, double[][] weights, double normalization) {
+        return register(name, Kernel.of(weights, normalization));
+    }
+
+    /**
+     * Metoda zwraca jądro filtru o podanej nazwie
+     * @param name nazwa filtru
+     * @return jądro filtru
+     * @throws IllegalArgumentException dla nieznanej nazwy filtru
+     */
+    public synchronized Kernel get(String name) {
+        Kernel kernel = kernels.get(name);
+        if (kernel == null) {
+            throw new IllegalArgumentException("Nieznany filtr: " + name);
+        }
+        return kernel;
+    }
+
+    /**
+     * Metoda informuje, czy rejestr zawiera filtr o podanej nazwie
+     * @param name nazwa filtru
+     * @return true, jeśli filtr jest zarejestrowany
+     */
+    public synchronized boolean contains(String name) {
+        return kernels.containsKey(name);
+    }
+
+    /**
+     * Metoda zwraca nazwy filtrów w kolejności rejestracji
+     * @return kopia listy nazw
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(kernels.keySet());
+    }
+
+    /**
+     * Metoda wyznacza współczynnik normalizacji, dla którego suma dodatnich wag maski jest równa
+     * sumie dla maski Sobela 3x3
+     */
+    private static double sobelGain(double[][] weights) {
+        double positive = 0;
+        for (double[] row : weights) {
+            for (double weight : row) {
+                positive += Math.max(weight, 0);
+            }
+        }
+        return SOBEL_GAIN / positive;
+    }
+
+    /**
+     * Metoda wyznacza wagi odwróconego Laplasjanu funkcji Gaussa (dodatni środek), wzmacniającego jasne linie
+     * i jasną stronę krawędzi. Wagi są sumą dwóch iloczynów wektorów, więc jądro ma dwa czynniki separowalne.
+     * @param radius promień maski
+     * @param sigma odchylenie standardowe funkcji Gaussa
+     * @return wagi maski o boku 2 * radius + 1, bez normalizacji
+     */
+    private static double[][] laplacianOfGaussian(int radius, double sigma) {
+        int size = 2 * radius + 1;
+        double variance = sigma * sigma;
+        double[][] weights = new double[size][size];
+        for (int i = 0; i < size; ++i) {
+            for (int j = 0; j < size; ++j) {
+                double distance = (i - radius) * (i - radius) + (j - radius) * (j - radius);
+                weights[i][j] = (2 * variance - distance) / (variance * variance)
+                        * Math.exp(-distance / (2 * variance));
+            }
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,239 @@
+package edgedetection;
+
+/**
+ * Klasa zawierająca kroki algorytmu Canny'ego w arytmetyce stałoprzecinkowej (patrz {@link Canny.Arithmetic}).
+ * Obraz 8-bitowy jest zamieniany na sumę składowych R + G + B (trzykrotność jasności) i rozmywany jądrem Gaussa
+ * {@link Canny#gaussianKernel} o wagach całkowitych (suma 159), bez zaokrągleń - jeden poziom jasności odpowiada
+ * {@value #SCALE} jednostkom. Natężenie gradientu jest liczone jako kwadrat w typie long i porównywane z kwadratami
+ * progów, bez pierwiastkowania; kolejność natężeń, a więc pocienianie krawędzi, jest taka sama jak dla pierwiastków.
+ * Gradient, pocienianie krawędzi i progowanie są wykonywane jednym przebiegiem po wierszach, z kwadratami natężenia
+ * przechowywanymi tylko dla trzech kolejnych wierszy, więc poza flagami siły pikseli zapisywane są jedynie
+ * płaszczyzny sumy składowych (short) oraz rozmycia (int).
+ * Obliczenia są dokładne, dlatego wynik różni się od arytmetyki float tylko dla pikseli, których natężenie jest równe
+ * progowi lub natężeniu sąsiada albo różni się od nich mniej niż o błąd zaokrąglenia float (względnie ok. 1e-6),
+ * a arytmetyka float rozstrzyga to porównanie inaczej; dla obrazu 12 Mpx to kilka pikseli.
+ * @author Aneta Bień, Anna Plęs
+ */
+final class FixedPointCanny {
+    /** Liczba jednostek stałoprzecinkowych na jeden poziom jasności: 3 * 159 */
+    static final int SCALE = 3 * 159;
+    /**
+     * Wagi całkowite jądra Gaussa indeksowane [odległość wiersza][odległość kolumny] od środka;
+     * po podzieleniu przez 159 są równe wagom {@link Canny#gaussianKernel}
+     */
+    private static final int[][] GAUSSIAN = {{15, 12, 5}, {12, 9, 4}, {5, 4, 2}};
+    /** Liczba bitów części ułamkowej stałej TAN_22_5 */
+    private static final int TAN_SHIFT = 30;
+    private static final long TAN_22_5 = Math.round(Math.tan(Math.toRadians(22.5)) * (1L << TAN_SHIFT));
+    /** Przesunięcie wiersza i kolumny sąsiada wzdłuż gradientu dla kolejnych kodów kierunku */
+    private static final int[] ROW_STEP = {0, 1, 1, 1};
+    private static final int[] COLUMN_STEP = {1, 1, 0, -1};
+
+    private FixedPointCanny() {
+    }
+
+    /**
+     * Metoda zamienia próg natężenia gradientu na próg dla kwadratów natężenia w jednostkach stałoprzecinkowych
+     * @param threshold próg natężenia w poziomach jasności
+     * @return najmniejszy kwadrat natężenia, którego pierwiastek osiąga próg
+     */
+    static long squaredThreshold(double threshold) {
+        if (threshold <= 0) {
+            return 0;
+        }
+        double scaled = threshold * SCALE;
+        return (long) Math.ceil(scaled * scaled);
+    }
+
+    /**
+     * Metoda wykonuje rozmycie Gaussa dla wierszy wyniku z zakresu [fromRow, toRow), z odbiciem lustrzanym
+     * na brzegach. Jądro jest symetryczne względem obu osi, więc dla każdego wiersza wyniku najpierw sumowane są
+     * pary wierszy sąsiedztwa w tej samej odległości od środka (w buforze obszaru roboczego wątku, miejsce
+     * {@link Workspace.Slot#BLUR_ROWS}), a potem pary kolumn - 9 mnożeń na piksel zamiast 25.
+     * @param graySum sumy składowych obrazu
+     * @param denoised tablica obrazu po rozmyciu, w jednostkach {@value #SCALE} na poziom jasności
+     * @param width szerokość obrazu
+     * @param height wysokość obrazu
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    static void blur(short[] graySum, int[] denoised, int width, int height, int fromRow, int toRow) {
+        int[] pairs = Workspace.current().ints(Workspace.Slot.BLUR_ROWS, 3 * width);
+        int innerStart = Math.min(2, width);
+        int innerEnd = Math.max(width - 2, innerStart);
+        for (int y = fromRow; y < toRow; ++y) {
+            int up2 = Convolution.reflect(y - 2, height) * width;
+            int up1 = Convolution.reflect(y - 1, height) * width;
+            int middle = y * width;
+            int down1 = Convolution.reflect(y + 1, height) * width;
+            int down2 = Convolution.reflect(y + 2, height) * width;
+            for (int x = 0; x < width; ++x) {
+                pairs[x] = graySum[middle + x];
+                pairs[width + x] = graySum[up1 + x] + graySum[down1 + x];
+                pairs[2 * width + x] = graySum[up2 + x] + graySum[down2 + x];
+            }
+            for (int x = innerStart; x < innerEnd; ++x) {
+                denoised[middle + x] = blurredPixel(pairs, width, x - 2, x - 1, x, x + 1, x + 2);
+            }
+            for (int x = 0; x < innerStart; ++x) {
+                denoised[middle + x] = borderBlur(pairs, width, x);
+            }
+            for (int x = innerEnd; x < width; ++x) {
+                denoised[middle + x] = borderBlur(pairs, width, x);
+            }
+        }
+    }
+
+    /**
+     * Metoda oblicza rozmycie piksela, którego sąsiedztwo wychodzi poza wiersz
+     */
+    private static int borderBlur(int[] pairs, int width, int x) {
+        return blurredPixel(pairs, width, Convolution.reflect(x - 2, width), Convolution.reflect(x - 1, width), x,
+                Convolution.reflect(x + 1, width), Convolution.reflect(x + 2, width));
+    }
+
+    /**
+     * Metoda oblicza rozmycie piksela z sum par wierszy, dla kolumn sąsiedztwa od left2 do right2
+     */
+    private static int blurredPixel(int[] pairs, int width, int left2, int left1, int x, int right1, int right2) {
+        int sum = 0;
+        for (int distance = 0; distance < GAUSSIAN.length; ++distance) {
+            int row = distance * width;
+            int[] weights = GAUSSIAN[distance];
+            sum += weights[0] * pairs[row + x] + weights[1] * (pairs[row + left1] + pairs[row + right1])
+                    + weights[2] * (pairs[row + left2] + pairs[row + right2]);
+        }
+        return sum;
+    }
+
+    /**
+     * Metoda wykonuje gradient Sobela, pocienianie krawędzi i progowanie dla wierszy z zakresu [fromRow, toRow).
+     * Kwadraty natężenia i kierunki są liczone dla bieżącego wiersza i jego sąsiadów w buforach obszaru roboczego
+     * wątku (miejsce {@link Workspace.Slot#GRADIENT_ROWS}); wiersze sąsiednich kafelków są liczone ponownie.
+     * @param denoised obraz po rozmyciu
+     * @param width szerokość obrazu
+     * @param height wysokość obrazu
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     * @param suppressed tablica, do której zapisywane są kwadraty natężenia po pocienianiu krawędzi,
+     * lub null, jeśli zapisywane są od razu flagi siły pikseli
+     * @param lowerThreshold kwadrat niższego progu (patrz {@link #squaredThreshold}), pomijany, gdy suppressed nie jest null
+     * @param higherThreshold kwadrat wyższego progu, pomijany, gdy suppressed nie jest null
+     * @param thresholdFlags tablica flag siły pikseli, pomijana, gdy suppressed nie jest null
+     */
+    static void suppressAndThreshold(int[] denoised, int width, int height, int fromRow, int toRow, long[] suppressed,
+                                     long lowerThreshold, long higherThreshold, byte[] thresholdFlags) {
+        Workspace workspace = Workspace.current();
+        long[] squares = workspace.longs(Workspace.Slot.GRADIENT_ROWS, 3 * width);
+        byte[] directions = workspace.bytes(Workspace.Slot.GRADIENT_ROWS, 3 * width);
+        int[] previousNeighbour = new int[ROW_STEP.length];
+        int[] nextNeighbour = new int[ROW_STEP.length];
+        for (int y = Math.max(fromRow - 1, 0); y < Math.min(fromRow + 1, height); ++y) {
+            gradientRow(denoised, width, height, y, squares, directions, (y % 3) * width);
+        }
+        for (int y = fromRow; y < toRow; ++y) {
+            if (y + 1 < height) {
+                gradientRow(denoised, width, height, y + 1, squares, directions, ((y + 1) % 3) * width);
+            }
+            int row = y * width;
+            boolean borderRow = y == 0 || y == height - 1;
+            int current = (y % 3) * width;
+            if (!borderRow) {
+                int previous = ((y - 1) % 3) * width;
+                int next = ((y + 1) % 3) * width;
+                for (int d = 0; d < ROW_STEP.length; ++d) {
+                    previousNeighbour[d] = (ROW_STEP[d] == 0 ? current : previous) - COLUMN_STEP[d];
+                    nextNeighbour[d] = (ROW_STEP[d] == 0 ? current : next) + COLUMN_STEP[d];
+                }
+            }
+            int innerStart = borderRow ? width : 1;
+            int innerEnd = Math.max(width - 1, innerStart);
+            for (int x = 0; x < width; ++x) {
+                long value = 0;
+                if (x >= innerStart && x < innerEnd) {
+                    int d = directions[current + x];
+                    long square = squares[current + x];
+                    value = square > squares[previousNeighbour[d] + x] & square > squares[nextNeighbour[d] + x] ? square : 0;
+                }
+                if (suppressed != null) {
+                    suppressed[row + x] = value;
+                } else {
+                    thresholdFlags[row + x] = strengthFlag(value, lowerThreshold, higherThreshold);
+                }
+            }
+        }
+    }
+
+    /**
+     * Metoda oblicza kwadraty natężenia i kody kierunków gradientu Sobela dla wiersza y, z odbiciem lustrzanym
+     * na brzegach. Wartości gradientu nie przekraczają 4 * 255 * {@value #SCALE}.
+     */
+    private static void gradientRow(int[] denoised, int width, int height, int y, long[] squares, byte[] directions,
+                                    int target) {
+        int up = Convolution.reflect(y - 1, height) * width;
+        int middle = y * width;
+        int down = Convolution.reflect(y + 1, height) * width;
+        for (int x = 1; x < width - 1; ++x) {
+            gradient(denoised, up, middle, down, x - 1, x, x + 1, squares, directions, target);
+        }
+        gradient(denoised, up, middle, down, Convolution.reflect(-1, width), 0, Math.min(1, width - 1),
+                squares, directions, target);
+        if (width > 1) {
+            gradient(denoised, up, middle, down, width - 2, width - 1, Convolution.reflect(width, width),
+                    squares, directions, target);
+        }
+    }
+
+    /**
+     * Metoda oblicza kwadrat natężenia i kod kierunku gradientu dla kolumny x, z kolumnami sąsiednimi left i right
+     */
+    private static void gradient(int[] denoised, int up, int middle, int down, int left, int x, int right,
+                                 long[] squares, byte[] directions, int target) {
+        int gx = (denoised[up + right] + 2 * denoised[middle + right] + denoised[down + right])
+                - (denoised[up + left] + 2 * denoised[middle + left] + denoised[down + left]);
+        int gy = (denoised[down + left] + 2 * denoised[down + x] + denoised[down + right])
+                - (denoised[up + left] + 2 * denoised[up + x] + denoised[up + right]);
+        squares[target + x] = (long) gx * gx + (long) gy * gy;
+        directions[target + x] = quantizeDirection(gx, gy);
+    }
+
+    /**
+     * Metoda zaokrągla kierunek gradientu tak jak {@link Canny#quantizeDirection}, porównując iloczyny całkowite
+     * ze stałą tg(22,5°) zapisaną z {@value #TAN_SHIFT} bitami części ułamkowej; tg(67,5°) jest jej odwrotnością
+     * @param gx gradient w osi x
+     * @param gy gradient w osi y
+     * @return kod kierunku gradientu
+     */
+    static byte quantizeDirection(int gx, int gy) {
+        long absX = Math.abs(gx);
+        long absY = Math.abs(gy);
+        byte code = (gx ^ gy) < 0 ? Canny.DIRECTION_135 : Canny.DIRECTION_45;
+        code = absY * TAN_22_5 >= absX << TAN_SHIFT ? Canny.DIRECTION_90 : code;
+        return absY << TAN_SHIFT <= absX * TAN_22_5 ? Canny.DIRECTION_0 : code;
+    }
+
+    /**
+     * Metoda ustawia flagi siły pikseli, porównując zapamiętane kwadraty natężenia z kwadratami progów
+     * @param suppressed kwadraty natężenia po pocienianiu krawędzi
+     * @param lowerThreshold kwadrat niższego progu (patrz {@link #squaredThreshold})
+     * @param higherThreshold kwadrat wyższego progu
+     * @param thresholdFlags tablica flag siły pikseli
+     * @param width szerokość obrazu
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    static void setStrengthFlags(long[] suppressed, long lowerThreshold, long higherThreshold, byte[] thresholdFlags,
+                                 int width, int fromRow, int toRow) {
+        for (int i = fromRow * width; i < toRow * width; ++i) {
+            thresholdFlags[i] = strengthFlag(suppressed[i], lowerThreshold, higherThreshold);
+        }
+    }
+
+    /**
+     * Metoda zwraca flagę siły piksela o danym kwadracie natężenia
+     */
+    private static byte strengthFlag(long square, long lowerThreshold, long higherThreshold) {
+        byte flag = square >= lowerThreshold ? Hysteresis.WEAK : Hysteresis.NONE;
+        return square >= higherThreshold ? Hysteresis.STRONG : flag;
+    }
+}
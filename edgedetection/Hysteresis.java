@@ -0,0 +1,371 @@
+package edgedetection;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Klasa realizująca śledzenie krawędzi z histerezą na bajtowej mapie flag.
+ * Piksele słabe są dołączane do krawędzi, jeśli łączy je z pikselem silnym dowolnie długi
+ * łańcuch 8-sąsiadów; każdy piksel jest odwiedzany co najwyżej raz, więc czas działania jest liniowy.
+ * @author Anna Plęs
+ */
+final class Hysteresis {
+    /** Piksel poniżej niższego progu */
+    static final byte NONE = 0;
+    /** Piksel pomiędzy progami, jeszcze niepołączony z krawędzią */
+    static final byte WEAK = 1;
+    /** Piksel krawędzi: powyżej wyższego progu lub połączony z takim pikselem; jasność 255 */
+    static final byte STRONG = (byte) 0xFF;
+
+    private Hysteresis() {
+    }
+
+    /**
+     * Metoda wykonuje histerezę dla całego obrazu, a na koniec zeruje piksele słabe, które nie zostały połączone.
+     * Przy podziale na kafelki każdy kafelek jest najpierw zalewany niezależnie, a następnie zalewanie jest
+     * kontynuowane od silnych pikseli leżących na granicach kafelków, co łączy krawędzie przechodzące przez granice.
+     * Wynik nie zależy od liczby kafelków.
+     * @param flags flagi pikseli zapisane wierszami, po wykonaniu zawierają 0 lub 255
+     * @param width szerokość obrazu
+     * @param height wysokość obrazu
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     */
+    static void track(byte[] flags, int width, int height, int parallelism) {
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> trackRows(flags, width, fromRow, toRow));
+        int tiles = RowTiles.tileCount(height, parallelism);
+        if (tiles > 1) {
+            mergeTileBorders(flags, width, height, tiles);
+        }
+        RowTiles.forEach(height, parallelism, (fromRow, toRow) -> clearWeak(flags, width, fromRow, toRow));
+    }
+
+    /**
+     * Metoda zalewa piksele słabe od silnych pikseli z wierszy [fromRow, toRow), nie wychodząc poza ten zakres
+     * @param flags flagi pikseli zapisane wierszami
+     * @param width szerokość obrazu
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    static void trackRows(byte[] flags, int width, int fromRow, int toRow) {
+        IntStack stack = Workspace.current().stack();
+        for (int p = fromRow * width; p < toRow * width; ++p) {
+            if (flags[p] == STRONG) {
+                fill(flags, width, fromRow, toRow, p, stack);
+            }
+        }
+        stack.trim();
+    }
+
+    /**
+     * Metoda kontynuuje zalewanie w całym obrazie od silnych pikseli leżących po obu stronach granic kafelków
+     */
+    private static void mergeTileBorders(byte[] flags, int width, int height, int tiles) {
+        IntStack stack = Workspace.current().stack();
+        for (int tile = 1; tile < tiles; ++tile) {
+            int border = RowTiles.tileStart(height, tiles, tile);
+            for (int p = (border - 1) * width; p < (border + 1) * width; ++p) {
+                if (flags[p] == STRONG) {
+                    fill(flags, width, 0, height, p, stack);
+                }
+            }
+        }
+        stack.trim();
+    }
+
+    /**
+     * Metoda zalewa piksele słabe połączone z pikselem seed, ograniczając się do wierszy [fromRow, toRow)
+     */
+    static void fill(byte[] flags, int width, int fromRow, int toRow, int seed, IntStack stack) {
+        int first = fromRow * width;
+        int end = toRow * width;
+        stack.push(seed);
+        while (!stack.isEmpty()) {
+            int p = stack.pop();
+            int x = p % width;
+            boolean left = x > 0;
+            boolean right = x < width - 1;
+            for (int row = p - width; row <= p + width; row += width) {
+                if (row < first || row >= end) {
+                    continue;
+                }
+                if (left && flags[row - 1] == WEAK) {
+                    flags[row - 1] = STRONG;
+                    stack.push(row - 1);
+                }
+                if (flags[row] == WEAK) {
+                    flags[row] = STRONG;
+                    stack.push(row);
+                }
+                if (right && flags[row + 1] == WEAK) {
+                    flags[row + 1] = STRONG;
+                    stack.push(row + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Metoda aktualizuje wynik histerezy po zmianie flag siły pikseli w części obrazu. Wynik może się zmienić tylko
+     * w spójnych składowych pikseli słabych i silnych mających piksel w jednym z prostokątów, dlatego tylko te składowe
+     * są przywracane do flag sprzed histerezy i zalewane ponownie, a pozostałe piksele zachowują poprzedni wynik.
+     * Czas działania zależy od pola prostokątów i rozmiaru tych składowych, a wynik jest identyczny z {@link #track}
+     * wykonanym dla nowych flag całego obrazu.
+     * @param strength flagi siły pikseli całego obrazu przed histerezą
+     * @param edges wynik histerezy dla poprzednich flag (0 lub 255), aktualizowany w miejscu
+     * @param width szerokość obrazu
+     * @param height wysokość obrazu
+     * @param regions prostokąty obejmujące wszystkie piksele o zmienionych flagach, powiększone o jeden piksel
+     *                z każdej strony i przycięte do obrazu
+     * @param marks tablica o rozmiarze obrazu wypełniona zerami, oznaczająca piksele przywróconych składowych;
+     *              po zakończeniu ponownie wyzerowana
+     * @param component stos na piksele przywróconych składowych; po zakończeniu pusty
+     */
+    static void retrack(byte[] strength, byte[] edges, int width, int height, List<Rectangle> regions, byte[] marks,
+                        IntStack component) {
+        IntStack stack = Workspace.current().stack();
+        for (Rectangle region : regions) {
+            for (int y = region.y; y < region.y + region.height; ++y) {
+                for (int p = y * width + region.x; p < y * width + region.x + region.width; ++p) {
+                    if (strength[p] == NONE) {
+                        edges[p] = NONE;
+                    } else if (marks[p] == 0) {
+                        restoreComponent(strength, edges, width, height, p, marks, component, stack);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < component.size(); ++i) {
+            int p = component.get(i);
+            if (strength[p] == STRONG) {
+                fill(edges, width, 0, height, p, stack);
+            }
+        }
+        for (int i = 0; i < component.size(); ++i) {
+            int p = component.get(i);
+            if (edges[p] == WEAK) {
+                edges[p] = NONE;
+            }
+            marks[p] = 0;
+        }
+        component.clear();
+        stack.trim();
+    }
+
+    /**
+     * Metoda przywraca flagi sprzed histerezy w spójnej składowej pikseli słabych i silnych zawierającej piksel seed
+     */
+    private static void restoreComponent(byte[] strength, byte[] edges, int width, int height, int seed, byte[] marks,
+                                         IntStack component, IntStack stack) {
+        marks[seed] = 1;
+        edges[seed] = strength[seed];
+        component.push(seed);
+        stack.push(seed);
+        while (!stack.isEmpty()) {
+            int p = stack.pop();
+            int x = p % width;
+            int y = p / width;
+            for (int row = Math.max(y - 1, 0); row <= Math.min(y + 1, height - 1); ++row) {
+                for (int q = row * width + Math.max(x - 1, 0); q <= row * width + Math.min(x + 1, width - 1); ++q) {
+                    if (strength[q] != NONE && marks[q] == 0) {
+                        marks[q] = 1;
+                        edges[q] = strength[q];
+                        component.push(q);
+                        stack.push(q);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Metoda sprawdza wynik histerezy wykonanej tylko dla części obrazu, w której flagi siły są znane. Piksel słaby
+     * niepołączony z krawędzią może zostać połączony w całym obrazie tylko wtedy, gdy jego składowa sięga brzegu
+     * części znanej, za którym leży dalsza część obrazu. Metoda zalewa takie składowe od tych brzegów i sprawdza,
+     * czy któraś z nich ma piksel w prostokącie target; jeśli nie, wynik w target jest identyczny z wynikiem
+     * {@link #track} dla całego obrazu.
+     * @param strength flagi siły pikseli przed histerezą
+     * @param edges wynik histerezy (0 lub 255); zalane piksele są oznaczane wartością {@link #WEAK}, więc jeśli metoda
+     *              zwraca false, wynik zmienia się tylko poza target
+     * @param width szerokość tablic
+     * @param known prostokąt, w którym flagi siły są znane
+     * @param bounds prostokąt całego obrazu we współrzędnych tablic; brzegi known leżące na jego brzegach są zamknięte
+     * @param target prostokąt zawarty w known, dla którego sprawdzany jest wynik
+     * @return true, jeśli wynik w target może zależeć od flag spoza known
+     */
+    static boolean reachesUnknown(byte[] strength, byte[] edges, int width, Rectangle known, Rectangle bounds,
+                                  Rectangle target) {
+        IntStack stack = Workspace.current().stack();
+        int right = known.x + known.width - 1;
+        int bottom = known.y + known.height - 1;
+        boolean openLeft = known.x > bounds.x;
+        boolean openRight = known.x + known.width < bounds.x + bounds.width;
+        boolean openTop = known.y > bounds.y;
+        boolean openBottom = known.y + known.height < bounds.y + bounds.height;
+        for (int y = known.y; y <= bottom; ++y) {
+            boolean openRow = (openTop && y == known.y) || (openBottom && y == bottom);
+            int step = openRow ? 1 : Math.max(right - known.x, 1);
+            for (int x = known.x; x <= right; x += step) {
+                boolean open = openRow || (openLeft && x == known.x) || (openRight && x == right);
+                if (open && fillReaches(strength, edges, width, y * width + x, known, target, stack)) {
+                    stack.trim();
+                    return true;
+                }
+            }
+        }
+        stack.trim();
+        return false;
+    }
+
+    /**
+     * Metoda zalewa w prostokącie known niepołączone piksele słabe od piksela seed i sprawdza,
+     * czy zalewanie dotarło do prostokąta target
+     */
+    private static boolean fillReaches(byte[] strength, byte[] edges, int width, int seed, Rectangle known,
+                                       Rectangle target, IntStack stack) {
+        if (strength[seed] != WEAK || edges[seed] != NONE) {
+            return false;
+        }
+        int right = known.x + known.width - 1;
+        int bottom = known.y + known.height - 1;
+        edges[seed] = WEAK;
+        stack.push(seed);
+        while (!stack.isEmpty()) {
+            int p = stack.pop();
+            int x = p % width;
+            int y = p / width;
+            if (target.contains(x, y)) {
+                stack.clear();
+                return true;
+            }
+            for (int row = Math.max(y - 1, known.y); row <= Math.min(y + 1, bottom); ++row) {
+                for (int q = row * width + Math.max(x - 1, known.x); q <= row * width + Math.min(x + 1, right); ++q) {
+                    if (strength[q] == WEAK && edges[q] == NONE) {
+                        edges[q] = WEAK;
+                        stack.push(q);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Metoda zeruje piksele słabe, które nie zostały połączone z żadną krawędzią
+     */
+    static void clearWeak(byte[] flags, int width, int fromRow, int toRow) {
+        for (int p = fromRow * width; p < toRow * width; ++p) {
+            if (flags[p] == WEAK) {
+                flags[p] = NONE;
+            }
+        }
+    }
+
+    /**
+     * Histereza na przesuwającym się oknie wierszy, używana przy przetwarzaniu obrazu pasami.
+     * Wiersz jest oddawany dopiero wtedy, gdy poniżej niego dołączono co najmniej lookahead kolejnych wierszy,
+     * więc pomijane są tylko te połączenia słabych pikseli, których łańcuch wychodzi poza okno,
+     * czyli sięga dalej niż lookahead wierszy w dół albo wraca do wierszy już oddanych.
+     * Dla obrazu nie wyższego niż okno wynik jest identyczny z {@link #track}.
+     */
+    static final class Window {
+        private final int width;
+        private final int lookahead;
+        private final IntStack stack = new IntStack();
+        private byte[] flags;
+        private int rows;
+
+        /**
+         * @param width szerokość obrazu
+         * @param lookahead minimalna liczba wierszy dołączonych poniżej wiersza, zanim zostanie on oddany
+         */
+        Window(int width, int lookahead) {
+            this.width = width;
+            this.lookahead = lookahead;
+            this.flags = new byte[2 * lookahead * width];
+        }
+
+        /**
+         * Metoda dołącza wiersze flag na dole okna i kontynuuje zalewanie od silnych pikseli nowych wierszy
+         * oraz ostatniego wiersza sprzed dołączenia, które jako jedyne mogą sąsiadować z nowymi pikselami słabymi
+         * @param source flagi pikseli zapisane wierszami
+         * @param sourceRow pierwszy dołączany wiersz tablicy source
+         * @param count liczba dołączanych wierszy
+         */
+        void append(byte[] source, int sourceRow, int count) {
+            if ((rows + count) * width > flags.length) {
+                flags = Arrays.copyOf(flags, (rows + count) * width);
+            }
+            System.arraycopy(source, sourceRow * width, flags, rows * width, count * width);
+            int first = Math.max(rows - 1, 0);
+            rows += count;
+            for (int p = first * width; p < rows * width; ++p) {
+                if (flags[p] == STRONG) {
+                    fill(flags, width, 0, rows, p, stack);
+                }
+            }
+        }
+
+        /**
+         * Metoda oddaje z góry okna wiersze, które mają już wystarczająco wierszy poniżej, zerując w nich słabe piksele
+         * @param finished czy dołączono już ostatni wiersz obrazu; wtedy oddawane są wszystkie wiersze
+         * @return flagi oddanych wierszy z wartościami 0 lub 255, być może tablica pusta
+         */
+        byte[] release(boolean finished) {
+            int count = finished ? rows : Math.max(rows - lookahead, 0);
+            clearWeak(flags, width, 0, count);
+            byte[] released = Arrays.copyOf(flags, count * width);
+            System.arraycopy(flags, count * width, flags, 0, (rows - count) * width);
+            rows -= count;
+            return released;
+        }
+    }
+
+    /**
+     * Prosty stos liczb całkowitych rosnący dwukrotnie po zapełnieniu
+     */
+    static final class IntStack {
+        /** Pojemność, powyżej której pusty stos jest zmniejszany metodą {@link #trim()} */
+        static final int RETAINED_CAPACITY = 1 << 16;
+        private static final int INITIAL_CAPACITY = 256;
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int size;
+
+        void push(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * Metoda zwalnia pamięć pustego stosu, który urósł powyżej {@link #RETAINED_CAPACITY} elementów,
+         * aby stos przechowywany w obszarze roboczym wątku nie zajmował pamięci rzędu rozmiaru obrazu
+         */
+        void trim() {
+            if (size == 0 && values.length > RETAINED_CAPACITY) {
+                values = new int[INITIAL_CAPACITY];
+            }
+        }
+    }
+}
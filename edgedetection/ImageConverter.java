@@ -0,0 +1,339 @@
+package edgedetection;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Klasa odpowiadająca za hurtową konwersję obrazów na płaszczyzny pikseli oraz płaszczyzn na mapy krawędzi.
+ * Dla typów TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR i TYPE_BYTE_GRAY
+ * dane są czytane bezpośrednio z bufora rastra, pozostałe typy są czytane wierszami przez getRGB.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class ImageConverter {
+
+    private ImageConverter() {
+    }
+
+    /**
+     * Metoda rozkłada obraz na trzy płaszczyzny składowych RGB
+     * @param image obraz wejściowy
+     * @return płaszczyzny kolejno składowych R, G i B
+     */
+    public static PixelPlane[] toChannels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        PixelPlane[] channels = {new PixelPlane(width, height), new PixelPlane(width, height), new PixelPlane(width, height)};
+        toChannels(image, channels[0], channels[1], channels[2]);
+        return channels;
+    }
+
+    /**
+     * Metoda rozkłada obraz na składowe RGB zapisywane do podanych płaszczyzn
+     * @param image obraz wejściowy
+     * @param red płaszczyzna składowej R o rozmiarach obrazu
+     * @param green płaszczyzna składowej G o rozmiarach obrazu
+     * @param blue płaszczyzna składowej B o rozmiarach obrazu
+     */
+    static void toChannels(BufferedImage image, PixelPlane red, PixelPlane green, PixelPlane blue) {
+        decode(image, red.getData(), green.getData(), blue.getData(), null, 1, 0, image.getHeight());
+    }
+
+    /**
+     * Metoda zamienia obraz na płaszczyznę sum składowych R + G + B, bez płaszczyzn pośrednich dla składowych
+     * @param image obraz wejściowy
+     * @param sum płaszczyzna wyniku o rozmiarach obrazu
+     */
+    static void toChannelSum(BufferedImage image, PixelPlane sum) {
+        decode(image, null, null, null, sum.getData(), 1, 0, image.getHeight());
+    }
+
+    /**
+     * Metoda zamienia wiersze obrazu z zakresu [fromRow, toRow) na sumy składowych R + G + B zapisane jako liczby
+     * całkowite (0-765), używane przez arytmetykę stałoprzecinkową algorytmu Canny'ego
+     * @param image obraz wejściowy
+     * @param sum tablica wyniku o rozmiarze obrazu, zapisana wierszami
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    static void toChannelSum(BufferedImage image, short[] sum, int fromRow, int toRow) {
+        int width = image.getWidth();
+        RasterLayout layout = rasterLayout(image);
+        if (layout == null) {
+            int[] row = new int[width];
+            for (int y = fromRow; y < toRow; ++y) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                sumPackedRow(row, 0, sum, y * width, width);
+            }
+        } else if (layout.data instanceof int[]) {
+            int[] pixels = (int[]) layout.data;
+            for (int y = fromRow; y < toRow; ++y) {
+                sumPackedRow(pixels, layout.offset + y * layout.scanline, sum, y * width, width);
+            }
+        } else {
+            byte[] bytes = (byte[]) layout.data;
+            int r = layout.offset + layout.red;
+            int g = layout.offset + layout.green;
+            int b = layout.offset + layout.blue;
+            for (int y = fromRow; y < toRow; ++y) {
+                for (int x = 0, s = y * layout.scanline, t = y * width; x < width; ++x, s += layout.pixelStride) {
+                    sum[t + x] = (short) ((bytes[s + r] & 0xFF) + (bytes[s + g] & 0xFF) + (bytes[s + b] & 0xFF));
+                }
+            }
+        }
+    }
+
+    /**
+     * Metoda sumuje składowe jednego wiersza pikseli w formacie ARGB
+     */
+    private static void sumPackedRow(int[] pixels, int source, short[] sum, int target, int width) {
+        for (int x = 0; x < width; ++x) {
+            int pixel = pixels[source + x];
+            sum[target + x] = (short) (((pixel >> 16) & 0xFF) + ((pixel >> 8) & 0xFF) + (pixel & 0xFF));
+        }
+    }
+
+    /**
+     * Metoda zamienia obraz na płaszczyznę w skali szarości jako średnią składowych RGB,
+     * bez tworzenia płaszczyzn pośrednich dla poszczególnych składowych
+     * @param image obraz wejściowy
+     * @return płaszczyzna wartości pikseli w skali szarości
+     */
+    public static PixelPlane toGrayscale(BufferedImage image) {
+        PixelPlane gray = new PixelPlane(image.getWidth(), image.getHeight());
+        toGrayscale(image, gray, 0, image.getHeight());
+        return gray;
+    }
+
+    /**
+     * Metoda zamienia wiersze obrazu z zakresu [fromRow, toRow) na skalę szarości
+     * @param image obraz wejściowy
+     * @param gray płaszczyzna wyniku o rozmiarach obrazu
+     * @param fromRow pierwszy przetwarzany wiersz
+     * @param toRow wiersz za ostatnim przetwarzanym
+     */
+    static void toGrayscale(BufferedImage image, PixelPlane gray, int fromRow, int toRow) {
+        decode(image, null, null, null, gray.getData(), 3, fromRow, toRow);
+    }
+
+    /**
+     * Ułożenie pikseli w buforze rastra obrazu: piksel (x, y) zajmuje elementy tablicy data o indeksach od
+     * offset + y * scanline + x * pixelStride do offset + y * scanline + (x + 1) * pixelStride (wyłącznie)
+     */
+    static final class RasterLayout {
+        /** Tablica bufora rastra: byte[] albo int[] */
+        final Object data;
+        final int offset;
+        final int scanline;
+        final int pixelStride;
+        /** Położenie składowych R, G i B w pikselu bufora byte[]; w skali szarości wszystkie wskazują jeden kanał */
+        final int red;
+        final int green;
+        final int blue;
+
+        RasterLayout(Object data, int offset, int scanline, int pixelStride, int red, int green, int blue) {
+            this.data = data;
+            this.offset = offset;
+            this.scanline = scanline;
+            this.pixelStride = pixelStride;
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+        }
+    }
+
+    /**
+     * Metoda zwraca ułożenie pikseli obrazu w buforze rastra dla typów czytanych bezpośrednio z bufora
+     * @param image obraz
+     * @return ułożenie pikseli lub null dla typów czytanych przez getRGB
+     */
+    static RasterLayout rasterLayout(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                int scanline = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                return new RasterLayout(((DataBufferInt) buffer).getData(),
+                        buffer.getOffset() - translateY * scanline - translateX, scanline, 1, 0, 0, 0);
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                int scanline = model.getScanlineStride();
+                int pixelStride = model.getPixelStride();
+                int[] bands = model.getBandOffsets();
+                boolean singleBand = bands.length == 1;
+                return new RasterLayout(((DataBufferByte) buffer).getData(),
+                        buffer.getOffset() - translateY * scanline - translateX * pixelStride, scanline, pixelStride,
+                        bands[0], singleBand ? bands[0] : bands[1], singleBand ? bands[0] : bands[2]);
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Metoda tworzy mapę krawędzi z płaszczyzny wartości pikseli.
+     * Wartości ujemne są brane z wartością bezwzględną, a wartości powyżej 255 są obcinane.
+     * @param plane płaszczyzna wartości pikseli
+     * @return mapa krawędzi o rozmiarach płaszczyzny
+     */
+    public static EdgeMap toEdgeMap(PixelPlane plane) {
+        return toEdgeMap(plane, null);
+    }
+
+    /**
+     * Metoda tworzy mapę krawędzi z płaszczyzny wartości pikseli, zapisując wynik do podanej mapy
+     * @param plane płaszczyzna wartości pikseli
+     * @param reuse mapa nadpisywana, jeśli ma rozmiary płaszczyzny; null lub inne rozmiary oznaczają nową mapę
+     * @return mapa krawędzi o rozmiarach płaszczyzny
+     */
+    static EdgeMap toEdgeMap(PixelPlane plane, EdgeMap reuse) {
+        int width = plane.getWidth();
+        int height = plane.getHeight();
+        EdgeMap output = EdgeMap.reuseOrCreate(reuse, width, height);
+        byte[] pixels = output.getPixels();
+        float[] data = plane.getData();
+        for (int y = 0; y < height; ++y) {
+            int source = plane.index(0, y);
+            int target = y * width;
+            for (int x = 0; x < width; ++x) {
+                pixels[target + x] = (byte) toByte(data[source + x]);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Metoda zamienia wartość piksela na jasność z zakresu 0-255
+     * @param value wartość piksela
+     * @return wartość bezwzględna obcięta do 255
+     */
+    static int toByte(float value) {
+        if (value < 0) {
+            value = -value;
+        }
+        return value > 255 ? 255 : (int) value;
+    }
+
+    /**
+     * Metoda wybiera sposób odczytu zależnie od typu obrazu i wypełnia podane tablice.
+     * Jeśli tablica gray jest podana, tablice składowych są pomijane, a do gray trafia suma składowych
+     * podzielona przez divisor (3 dla skali szarości, 1 dla sumy składowych).
+     * Tablice mają rozmiar obrazu, a przetwarzane są tylko wiersze z zakresu [fromRow, toRow).
+     */
+    private static void decode(BufferedImage image, float[] red, float[] green, float[] blue, float[] gray,
+                               float divisor, int fromRow, int toRow) {
+        RasterLayout layout = rasterLayout(image);
+        if (layout == null) {
+            decodeGeneric(image, red, green, blue, gray, divisor, fromRow, toRow);
+        } else if (layout.data instanceof int[]) {
+            decodePacked(image, layout, red, green, blue, gray, divisor, fromRow, toRow);
+        } else {
+            decodeInterleaved(image, layout, red, green, blue, gray, divisor, fromRow, toRow);
+        }
+    }
+
+    /**
+     * Metoda odczytuje piksele zapisane jako upakowane liczby ARGB
+     */
+    private static void decodePacked(BufferedImage image, RasterLayout layout,
+                                     float[] red, float[] green, float[] blue, float[] gray, float divisor,
+                                     int fromRow, int toRow) {
+        int width = image.getWidth();
+        int[] pixels = (int[]) layout.data;
+        for (int y = fromRow; y < toRow; ++y) {
+            unpackRow(pixels, layout.offset + y * layout.scanline, y * width, width, red, green, blue, gray, divisor);
+        }
+    }
+
+    /**
+     * Metoda odczytuje piksele zapisane jako kolejne bajty składowych, np. BGR lub pojedynczy kanał szarości
+     */
+    private static void decodeInterleaved(BufferedImage image, RasterLayout layout,
+                                          float[] red, float[] green, float[] blue, float[] gray, float divisor,
+                                          int fromRow, int toRow) {
+        int width = image.getWidth();
+        byte[] bytes = (byte[]) layout.data;
+        int scanline = layout.scanline;
+        int pixelStride = layout.pixelStride;
+        boolean singleBand = layout.red == layout.green && layout.green == layout.blue;
+        int r = layout.offset + layout.red;
+        int g = layout.offset + layout.green;
+        int b = layout.offset + layout.blue;
+        for (int y = fromRow; y < toRow; ++y) {
+            int row = y * scanline;
+            int target = y * width;
+            if (singleBand) {
+                for (int x = 0, s = row + r; x < width; ++x, s += pixelStride) {
+                    float value = bytes[s] & 0xFF;
+                    if (gray != null) {
+                        gray[target + x] = average(3 * (bytes[s] & 0xFF), divisor);
+                    } else {
+                        red[target + x] = value;
+                        green[target + x] = value;
+                        blue[target + x] = value;
+                    }
+                }
+            } else if (gray != null) {
+                for (int x = 0, s = row; x < width; ++x, s += pixelStride) {
+                    gray[target + x] = average((bytes[s + r] & 0xFF) + (bytes[s + g] & 0xFF) + (bytes[s + b] & 0xFF), divisor);
+                }
+            } else {
+                for (int x = 0, s = row; x < width; ++x, s += pixelStride) {
+                    red[target + x] = bytes[s + r] & 0xFF;
+                    green[target + x] = bytes[s + g] & 0xFF;
+                    blue[target + x] = bytes[s + b] & 0xFF;
+                }
+            }
+        }
+    }
+
+    /**
+     * Metoda odczytuje obrazy pozostałych typów wierszami przy pomocy getRGB
+     */
+    private static void decodeGeneric(BufferedImage image, float[] red, float[] green, float[] blue, float[] gray,
+                                      float divisor, int fromRow, int toRow) {
+        int width = image.getWidth();
+        int[] row = new int[width];
+        for (int y = fromRow; y < toRow; ++y) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            unpackRow(row, 0, y * width, width, red, green, blue, gray, divisor);
+        }
+    }
+
+    /**
+     * Metoda dzieli sumę składowych przez divisor; dla sumy składowych (divisor 1) dzielenie jest pomijane
+     */
+    private static float average(int sum, float divisor) {
+        return divisor == 1 ? sum : sum / divisor;
+    }
+
+    /**
+     * Metoda rozpakowuje jeden wiersz pikseli w formacie ARGB do płaszczyzn
+     */
+    private static void unpackRow(int[] pixels, int source, int target, int width,
+                                  float[] red, float[] green, float[] blue, float[] gray, float divisor) {
+        if (gray != null) {
+            for (int x = 0; x < width; ++x) {
+                int pixel = pixels[source + x];
+                gray[target + x] = average(((pixel >> 16) & 0xFF) + ((pixel >> 8) & 0xFF) + (pixel & 0xFF), divisor);
+            }
+        } else {
+            for (int x = 0; x < width; ++x) {
+                int pixel = pixels[source + x];
+                red[target + x] = (pixel >> 16) & 0xFF;
+                green[target + x] = (pixel >> 8) & 0xFF;
+                blue[target + x] = pixel & 0xFF;
+            }
+        }
+    }
+}
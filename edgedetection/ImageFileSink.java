@@ -0,0 +1,136 @@
+package edgedetection;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.time.LocalTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Klasa zapisująca mapy krawędzi do plików graficznych przy pomocy wybranego kodera (patrz {@link EdgeEncoders}).
+ * Nazwa pliku zawiera czas zapisu i numer kolejny, a plik jest tworzony atomowo,
+ * więc równoległe zapisy w tej samej milisekundzie nie nadpisują się nawzajem.
+ * @author Aneta Bień, Anna Plęs
+ */
+public class ImageFileSink implements EdgeSink {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final File directory;
+    private final EdgeEncoder encoder;
+
+    /**
+     * Konstruktor ustawiający katalog i format zapisu
+     * @param directory katalog, w którym tworzone są pliki
+     * @param formatName nazwa formatu, np. "pgm", "pbm", "png" lub "jpg" (patrz {@link EdgeEncoders#forName});
+     *                   jest też rozszerzeniem pliku
+     */
+    public ImageFileSink(File directory, String formatName) {
+        this(directory, EdgeEncoders.forName(formatName));
+    }
+
+    /**
+     * Konstruktor ustawiający katalog i koder
+     * @param directory katalog, w którym tworzone są pliki
+     * @param encoder koder; jego rozszerzenie jest rozszerzeniem plików
+     */
+    public ImageFileSink(File directory, EdgeEncoder encoder) {
+        this.directory = directory;
+        this.encoder = encoder;
+    }
+
+    /**
+     * Metoda zapisuje mapę krawędzi do nowego pliku w katalogu docelowym
+     * @param edges mapa krawędzi
+     * @return utworzony plik
+     * @throws IOException błąd zapisu lub brak kodera dla formatu
+     */
+    @Override
+    public File write(EdgeMap edges) throws IOException {
+        File outputFile = createOutputFile();
+        encodeMeasured(edges, outputFile);
+        return outputFile;
+    }
+
+    /**
+     * Metoda zapisuje mapę krawędzi do pliku o podanej nazwie w katalogu docelowym, nadpisując istniejący plik
+     * @param edges mapa krawędzi
+     * @param baseName nazwa pliku bez rozszerzenia
+     * @return zapisany plik
+     * @throws IOException błąd zapisu lub brak kodera dla formatu
+     */
+    public File write(EdgeMap edges, String baseName) throws IOException {
+        File outputFile = getOutputFile(baseName);
+        encodeMeasured(edges, outputFile);
+        return outputFile;
+    }
+
+    /**
+     * Metoda koduje mapę krawędzi, zapisując pomiar etapu kodowania jak pozostałe etapy (patrz {@link MetricsRegistry})
+     */
+    private void encodeMeasured(EdgeMap edges, File outputFile) throws IOException {
+        ProgressListener recorder = new StageRecorder(ProgressListener.NONE, (long) edges.getWidth() * edges.getHeight());
+        encode(edges, outputFile);
+        recorder.stageFinished("Kodowanie " + encoder.getExtension(), 1, 1);
+    }
+
+    /**
+     * Metoda zwraca plik o podanej nazwie w katalogu docelowym, z rozszerzeniem formatu zapisu
+     * @param baseName nazwa pliku bez rozszerzenia
+     * @return plik docelowy
+     */
+    public File getOutputFile(String baseName) {
+        return new File(directory, baseName + "." + encoder.getExtension());
+    }
+
+    /**
+     * Metoda zwraca nazwę formatu zapisu
+     * @return rozszerzenie plików kodera
+     */
+    public String getFormatName() {
+        return encoder.getExtension();
+    }
+
+    /**
+     * Metoda zwraca koder zapisu
+     * @return koder
+     */
+    public EdgeEncoder getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Metoda koduje mapę krawędzi do wskazanego pliku
+     * @param edges mapa krawędzi
+     * @param outputFile plik docelowy
+     * @throws IOException błąd zapisu lub brak kodera dla formatu
+     */
+    protected void encode(EdgeMap edges, File outputFile) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile.toPath()), BUFFER_SIZE)) {
+            encoder.encode(edges.toImage(), out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(outputFile.toPath());
+            throw e;
+        }
+    }
+
+    /**
+     * Metoda tworzy nowy, pusty plik o nazwie niewykorzystanej jeszcze w katalogu docelowym
+     * @return utworzony plik
+     * @throws IOException błąd tworzenia pliku
+     */
+    protected File createOutputFile() throws IOException {
+        String prefix = "outputimage" + LocalTime.now().toString().replace('.', '_').replace(':', '_') + "_";
+        while (true) {
+            File outputFile = new File(directory, prefix + SEQUENCE.incrementAndGet() + "." + encoder.getExtension());
+            try {
+                Files.createFile(outputFile.toPath());
+                return outputFile;
+            } catch (FileAlreadyExistsException e) {
+                // nazwa zajęta przez inny proces, próbujemy kolejnego numeru
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package edgedetection;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Klasa przechowująca piramidę obrazu w skali szarości: poziom 0 ma pełną rozdzielczość, a każdy kolejny powstaje
+ * z poprzedniego przez rozmycie jądrem dwumianowym 5x5 (1 4 6 4 1)/16 z odbiciem lustrzanym na brzegach i wybranie
+ * co drugiego wiersza i co drugiej kolumny, więc ma cztery razy mniej pikseli. Piramida jest budowana raz dla obrazu,
+ * a jej poziomy są używane przez {@link Canny#computeEdges(ImagePyramid, int, int)} do szybkiego podglądu
+ * i przez {@link Canny#computeEdgesRefined(ImagePyramid, int, int)} do wyznaczenia obszarów przeliczanych
+ * w pełnej rozdzielczości.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class ImagePyramid {
+    /** Domyślna liczba poziomów: pełna rozdzielczość, 1/4 i 1/16 pikseli */
+    public static final int DEFAULT_LEVELS = 3;
+    private static final float[] BINOMIAL = {1 / 16f, 4 / 16f, 6 / 16f, 4 / 16f, 1 / 16f};
+    private static final int RADIUS = BINOMIAL.length / 2;
+    private final PixelPlane[] levels;
+
+    /**
+     * Konstruktor budujący {@value #DEFAULT_LEVELS} poziomy piramidy w bieżącym wątku
+     * @param image obraz wejściowy
+     */
+    public ImagePyramid(BufferedImage image) {
+        this(image, DEFAULT_LEVELS, 1);
+    }
+
+    /**
+     * Konstruktor budujący piramidę o podanej liczbie poziomów. Poziomy mają co najmniej jeden piksel szerokości
+     * i wysokości; wymiary nieparzyste są zaokrąglane w górę.
+     * @param image obraz wejściowy
+     * @param levels liczba poziomów, co najmniej 1
+     * @param parallelism liczba kafelków wierszy przetwarzanych równolegle
+     */
+    public ImagePyramid(BufferedImage image, int levels, int parallelism) {
+        if (levels <= 0) {
+            throw new IllegalArgumentException("Piramida musi mieć co najmniej jeden poziom");
+        }
+        this.levels = new PixelPlane[levels];
+        PixelPlane gray = new PixelPlane(image.getWidth(), image.getHeight());
+        RowTiles.forEach(gray.getHeight(), parallelism, (fromRow, toRow) -> ImageConverter.toGrayscale(image, gray, fromRow, toRow));
+        this.levels[0] = gray;
+        Workspace workspace = Workspace.acquire();
+        try {
+            for (int level = 1; level < levels; ++level) {
+                this.levels[level] = downsample(this.levels[level - 1], parallelism, workspace);
+            }
+        } finally {
+            workspace.release();
+        }
+    }
+
+    /**
+     * Metoda zwraca liczbę poziomów piramidy
+     * @return liczba poziomów
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Metoda zwraca poziom piramidy
+     * @param level numer poziomu; 0 oznacza pełną rozdzielczość
+     * @return płaszczyzna jasności poziomu w skali 0-255, której nie należy modyfikować
+     */
+    public PixelPlane getLevel(int level) {
+        return levels[level];
+    }
+
+    /**
+     * Metoda powiększa mapę krawędzi wyznaczoną dla poziomu piramidy do pełnej rozdzielczości, powielając każdy
+     * piksel w kwadracie 2^level x 2^level, np. do wyświetlenia podglądu w miejscu pełnego wyniku
+     * @param edges mapa krawędzi o wymiarach poziomu
+     * @param level numer poziomu, dla którego wyznaczono mapę
+     * @return nowa mapa o wymiarach poziomu 0
+     */
+    public EdgeMap expand(EdgeMap edges, int level) {
+        int width = levels[0].getWidth();
+        int height = levels[0].getHeight();
+        EdgeMap output = EdgeMap.reuseOrCreate(null, width, height);
+        byte[] source = edges.getPixels();
+        byte[] target = output.getPixels();
+        for (int y = 0; y < height; ++y) {
+            int sourceRow = (y >> level) * edges.getWidth();
+            for (int x = 0; x < width; ++x) {
+                target[y * width + x] = source[sourceRow + (x >> level)];
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Metoda tworzy kolejny poziom piramidy. Przebieg pionowy jest liczony tylko dla parzystych wierszy, a poziomy
+     * tylko dla parzystych kolumn, więc koszt jest proporcjonalny do liczby pikseli nowego poziomu.
+     */
+    private static PixelPlane downsample(PixelPlane input, int parallelism, Workspace workspace) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int smallWidth = (width + 1) / 2;
+        int smallHeight = (height + 1) / 2;
+        PixelPlane rows = workspace.plane(Workspace.Slot.CONVOLUTION_TEMP, width, smallHeight);
+        PixelPlane output = new PixelPlane(smallWidth, smallHeight);
+        RowTiles.forEach(smallHeight, parallelism, (fromRow, toRow) -> {
+            ConvolutionBackend backend = ConvolutionBackends.current();
+            float[] source = input.getData();
+            float[] target = rows.getData();
+            for (int y = fromRow; y < toRow; ++y) {
+                int targetRow = rows.index(0, y);
+                backend.scaleRow(source, input.index(0, Convolution.reflect(2 * y - RADIUS, height)), BINOMIAL[0],
+                        target, targetRow, width);
+                for (int i = 1; i < BINOMIAL.length; ++i) {
+                    backend.accumulateRow(source, input.index(0, Convolution.reflect(2 * y - RADIUS + i, height)),
+                            BINOMIAL[i], target, targetRow, width);
+                }
+            }
+        });
+        RowTiles.forEach(smallHeight, parallelism, (fromRow, toRow) -> {
+            float[] source = rows.getData();
+            float[] target = output.getData();
+            for (int y = fromRow; y < toRow; ++y) {
+                int sourceRow = rows.index(0, y);
+                int targetRow = output.index(0, y);
+                for (int x = 0; x < smallWidth; ++x) {
+                    int center = 2 * x;
+                    float sum = 0;
+                    if (center >= RADIUS && center + RADIUS < width) {
+                        for (int i = 0; i < BINOMIAL.length; ++i) {
+                            sum += source[sourceRow + center - RADIUS + i] * BINOMIAL[i];
+                        }
+                    } else {
+                        for (int i = 0; i < BINOMIAL.length; ++i) {
+                            sum += source[sourceRow + Convolution.reflect(center - RADIUS + i, width)] * BINOMIAL[i];
+                        }
+                    }
+                    target[targetRow + x] = sum;
+                }
+            }
+        });
+        return output;
+    }
+}
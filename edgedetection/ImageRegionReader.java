@@ -0,0 +1,112 @@
+package edgedetection;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Klasa czytająca prostokątne fragmenty obrazu. Fragmenty pliku są dekodowane przez ImageReader
+ * z ImageReadParam.setSourceRegion, więc w pamięci jest tylko fragment, a nie cały obraz; dla formatów
+ * zapisywanych wierszami (PNG, JPEG) dekoder nadal czyta plik do ostatniego wiersza fragmentu, a dla formatów
+ * z kafelkami (TIFF) tylko kafelki fragmentu. Fragmenty obrazu w pamięci są jego podobrazami bez kopiowania pikseli.
+ * Ten sam plik może być czytany wiele razy, np. dla kilku obszarów zainteresowania.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class ImageRegionReader implements Closeable {
+    private final BufferedImage image;
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+    private final int width;
+    private final int height;
+
+    /**
+     * Konstruktor otwierający plik obrazu; wymiary są czytane z nagłówka bez dekodowania pikseli
+     * @param file plik obrazu
+     * @throws IOException błąd odczytu lub brak czytnika dla formatu
+     */
+    public ImageRegionReader(File file) throws IOException {
+        this.image = null;
+        this.stream = ImageIO.createImageInputStream(file);
+        if (stream == null) {
+            throw new IOException("Nie można otworzyć pliku " + file);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            stream.close();
+            throw new IOException("nieobsługiwany format obrazu");
+        }
+        this.reader = readers.next();
+        try {
+            reader.setInput(stream, false, true);
+            this.width = reader.getWidth(0);
+            this.height = reader.getHeight(0);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Konstruktor dla obrazu wczytanego już do pamięci
+     * @param image obraz
+     */
+    public ImageRegionReader(BufferedImage image) {
+        this.image = image;
+        this.stream = null;
+        this.reader = null;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+    }
+
+    /**
+     * Metoda zwraca szerokość obrazu
+     * @return szerokość w pikselach
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Metoda zwraca wysokość obrazu
+     * @return wysokość w pikselach
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Metoda czyta fragment obrazu
+     * @param region prostokąt fragmentu, zawarty w obrazie
+     * @return obraz o wymiarach prostokąta; dla obrazu w pamięci współdzieli z nim piksele
+     * @throws IOException błąd odczytu pliku
+     */
+    public BufferedImage read(Rectangle region) throws IOException {
+        if (image != null) {
+            return image.getSubimage(region.x, region.y, region.width, region.height);
+        }
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(region);
+        return reader.read(0, param);
+    }
+
+    /**
+     * Metoda zwalnia czytnik i zamyka plik
+     * @throws IOException błąd zamykania pliku
+     */
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.dispose();
+        }
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package edgedetection;
+
+import java.util.Arrays;
+
+/**
+ * Klasa reprezentująca jądro splotu o nieparzystych wymiarach, zakotwiczone w swoim środku.
+ * Jądro jest przygotowywane raz, przy tworzeniu: wagi są mnożone przez współczynnik normalizacji i zamieniane na float,
+ * wagi całkowite są zapamiętywane także w postaci całkowitej, a jądro jest rozkładane na sumę iloczynów wektora
+ * poziomego i pionowego (czynników), jeśli dwa przebiegi jednowymiarowe dla każdego czynnika wymagają mniej
+ * przebiegów po wierszach niż splot dwuwymiarowy z niezerowymi wagami. Jądra rzędu 1 mają jeden czynnik,
+ * np. jądra Sobela dowolnego rozmiaru, a Laplasjan funkcji Gaussa - dwa.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class Kernel {
+    private static final double SEPARABILITY_TOLERANCE = 1e-9;
+    /** Największa wartość bezwzględna wagi zapamiętywanej w postaci całkowitej */
+    private static final int MAX_INTEGER_WEIGHT = 1 << 20;
+
+    private final int width;
+    private final int height;
+    private final float[] weights;
+    private final float[][] horizontals;
+    private final float[][] verticals;
+    private final int[] integerWeights;
+    private final double normalization;
+    /** Jądro o wagach całkowitych przed normalizacją lub null, gdy jest nim to jądro albo wagi nie są całkowite */
+    private final Kernel unnormalized;
+
+    private Kernel(int width, int height, float[] weights, float[][] horizontals, float[][] verticals,
+                   int[] integerWeights, double normalization, Kernel unnormalized) {
+        if (width % 2 == 0 || height % 2 == 0) {
+            throw new IllegalArgumentException("Wymiary jądra muszą być nieparzyste: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.weights = weights;
+        this.horizontals = horizontals;
+        this.verticals = verticals;
+        this.integerWeights = integerWeights;
+        this.normalization = normalization;
+        this.unnormalized = unnormalized;
+    }
+
+    /**
+     * Metoda tworzy jądro z tablicy dwuwymiarowej i sprawdza, czy jest ono separowalne
+     * @param rows wagi jądra indeksowane [wiersz][kolumna]
+     * @return jądro, rozłożone na wektory jeśli jest rzędu 1
+     */
+    public static Kernel of(double[][] rows) {
+        return of(rows, 1);
+    }
+
+    /**
+     * Metoda tworzy jądro z tablicy dwuwymiarowej, mnożąc wagi przez współczynnik normalizacji, i rozkłada je na
+     * czynniki separowalne, jeśli splot czynnikami jest tańszy od splotu dwuwymiarowego
+     * @param rows wagi jądra przed normalizacją, indeksowane [wiersz][kolumna]
+     * @param normalization współczynnik, przez który mnożone są wagi, np. 1/16 dla jądra o sumie wag 16
+     * @return jądro
+     * @throws IllegalArgumentException dla wymiarów parzystych, wierszy różnej długości lub współczynnika
+     *                                  niedodatniego
+     */
+    public static Kernel of(double[][] rows, double normalization) {
+        if (!(normalization > 0) || Double.isInfinite(normalization)) {
+            throw new IllegalArgumentException("Współczynnik normalizacji musi być dodatni: " + normalization);
+        }
+        int height = rows.length;
+        int width = rows[0].length;
+        double[][] scaled = new double[height][width];
+        float[] weights = new float[width * height];
+        int[] integerWeights = new int[width * height];
+        boolean integer = true;
+        int nonZero = 0;
+        for (int i = 0; i < height; ++i) {
+            if (rows[i].length != width) {
+                throw new IllegalArgumentException("Wiersze jądra muszą mieć równą długość");
+            }
+            for (int j = 0; j < width; ++j) {
+                double weight = rows[i][j];
+                scaled[i][j] = weight * normalization;
+                weights[i * width + j] = (float) scaled[i][j];
+                integer &= weight == Math.rint(weight) && Math.abs(weight) <= MAX_INTEGER_WEIGHT;
+                integerWeights[i * width + j] = (int) weight;
+                if (weight != 0) {
+                    ++nonZero;
+                }
+            }
+        }
+        // każdy czynnik to dwa przebiegi o łącznej długości width + height wag na piksel
+        int maxRank = nonZero / (width + height);
+        // jądra całkowite są rozkładane przed normalizacją, aby czynniki mogły być całkowite
+        float[][][] factors = integer ? decompose(rows, normalization, maxRank) : decompose(scaled, 1, maxRank);
+        Kernel unnormalized = integer && normalization != 1 ? of(rows, 1) : null;
+        return new Kernel(width, height, weights, factors[0], factors[1], integer ? integerWeights : null,
+                normalization, unnormalized);
+    }
+
+    /**
+     * Metoda rozkłada macierz na sumę iloczynów zewnętrznych wektorów metodą kolejnych elementów głównych:
+     * czynnikiem jest wiersz i kolumna największego co do modułu elementu reszty, a reszta jest pomniejszana
+     * o ich iloczyn. Dla jąder rzędu 1 pierwszy czynnik to wiersz największej wagi i kolumna tej wagi podzielona
+     * przez nią. Gdy kolumna i wiersz są całkowite, kolumna jest dzielona tylko przez największy wspólny dzielnik
+     * swoich elementów, a wiersz przez resztę elementu głównego, jeśli daje to wektory całkowite, np. jądro Scharra
+     * pionowe to (3, 10, 3) x (1, 0, -1) zamiast (0.3, 1, 0.3) x (10, 0, -10). Wagi czynników całkowitych
+     * są dokładne w typie float, więc splot czynnikami daje ten sam wynik co splot dwuwymiarowy.
+     * Współczynnik normalizacji jest stosowany do wektorów poziomych.
+     * @param rows wagi jądra
+     * @param normalization współczynnik, przez który mnożone są wektory poziome
+     * @param maxRank największa liczba czynników
+     * @return wektory poziome i pionowe czynników; puste, jeśli rozkład wymaga więcej niż maxRank czynników
+     */
+    private static float[][][] decompose(double[][] rows, double normalization, int maxRank) {
+        int height = rows.length;
+        int width = rows[0].length;
+        double[][] residual = new double[height][];
+        double max = 0;
+        for (int i = 0; i < height; ++i) {
+            residual[i] = rows[i].clone();
+            for (double weight : rows[i]) {
+                max = Math.max(max, Math.abs(weight));
+            }
+        }
+        float[][] horizontals = new float[maxRank][];
+        float[][] verticals = new float[maxRank][];
+        float[][][] none = {new float[0][], new float[0][]};
+        for (int rank = 0; ; ++rank) {
+            int pivotRow = 0;
+            int pivotColumn = 0;
+            double pivot = 0;
+            for (int i = 0; i < height; ++i) {
+                for (int j = 0; j < width; ++j) {
+                    if (Math.abs(residual[i][j]) > Math.abs(pivot)) {
+                        pivot = residual[i][j];
+                        pivotRow = i;
+                        pivotColumn = j;
+                    }
+                }
+            }
+            if (max == 0) {
+                return none;
+            }
+            if (Math.abs(pivot) <= SEPARABILITY_TOLERANCE * max) {
+                return new float[][][] {Arrays.copyOf(horizontals, rank), Arrays.copyOf(verticals, rank)};
+            }
+            if (rank == maxRank) {
+                return none;
+            }
+            double[] horizontal = residual[pivotRow].clone();
+            double[] vertical = new double[height];
+            long divisor = columnDivisor(residual, pivotColumn);
+            boolean integer = divisor != 0;
+            for (int j = 0; j < width && integer; ++j) {
+                integer = isInteger(horizontal[j] * divisor / pivot);
+            }
+            for (int i = 0; i < height; ++i) {
+                vertical[i] = integer ? residual[i][pivotColumn] / divisor : residual[i][pivotColumn] / pivot;
+            }
+            if (integer) {
+                for (int j = 0; j < width; ++j) {
+                    horizontal[j] = horizontal[j] * divisor / pivot;
+                }
+            }
+            for (int i = 0; i < height; ++i) {
+                for (int j = 0; j < width; ++j) {
+                    residual[i][j] -= vertical[i] * horizontal[j];
+                }
+            }
+            for (int j = 0; j < width; ++j) {
+                horizontal[j] *= normalization;
+            }
+            horizontals[rank] = toFloat(horizontal);
+            verticals[rank] = toFloat(vertical);
+        }
+    }
+
+    /**
+     * Metoda tworzy jądro separowalne z podanych wektorów
+     * @param horizontal wagi przebiegu poziomego (kolejne kolumny)
+     * @param vertical wagi przebiegu pionowego (kolejne wiersze)
+     * @return jądro będące iloczynem zewnętrznym wektorów
+     */
+    public static Kernel separable(double[] horizontal, double[] vertical) {
+        int width = horizontal.length;
+        int height = vertical.length;
+        float[] weights = new float[width * height];
+        for (int i = 0; i < height; ++i) {
+            for (int j = 0; j < width; ++j) {
+                weights[i * width + j] = (float) (vertical[i] * horizontal[j]);
+            }
+        }
+        return new Kernel(width, height, weights, new float[][] {toFloat(horizontal)},
+                new float[][] {toFloat(vertical)}, null, 1, null);
+    }
+
+    /**
+     * Metoda wyznacza największy wspólny dzielnik elementów kolumny reszty
+     * @return dzielnik lub 0, jeśli kolumna ma elementy niecałkowite albo większe od {@link #MAX_INTEGER_WEIGHT}
+     */
+    private static long columnDivisor(double[][] residual, int column) {
+        long divisor = 0;
+        for (double[] row : residual) {
+            if (!isInteger(row[column])) {
+                return 0;
+            }
+            long a = Math.abs((long) row[column]);
+            long b = divisor;
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            divisor = a;
+        }
+        return divisor;
+    }
+
+    private static boolean isInteger(double value) {
+        return value == Math.rint(value) && Math.abs(value) <= MAX_INTEGER_WEIGHT;
+    }
+
+    private static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Metoda zwraca szerokość jądra
+     * @return liczba kolumn jądra
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Metoda zwraca wysokość jądra
+     * @return liczba wierszy jądra
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Metoda zwraca wagi jądra zapisane wierszami
+     * @return tablica wag o długości szerokość * wysokość
+     */
+    public float[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * Metoda informuje, czy jądro może być zastosowane jako dwa przebiegi jednowymiarowe
+     * @return true dla jąder rozłożonych na jeden czynnik
+     */
+    public boolean isSeparable() {
+        return horizontals.length == 1;
+    }
+
+    /**
+     * Metoda zwraca liczbę czynników separowalnych, których suma daje jądro
+     * @return liczba czynników; 0 oznacza splot dwuwymiarowy
+     */
+    public int getRank() {
+        return horizontals.length;
+    }
+
+    /**
+     * Metoda zwraca wagi przebiegu poziomego jądra separowalnego
+     * @return wektor wag o długości szerokości jądra lub null
+     */
+    public float[] getHorizontal() {
+        return isSeparable() ? horizontals[0] : null;
+    }
+
+    /**
+     * Metoda zwraca wagi przebiegu pionowego jądra separowalnego
+     * @return wektor wag o długości wysokości jądra lub null
+     */
+    public float[] getVertical() {
+        return isSeparable() ? verticals[0] : null;
+    }
+
+    /**
+     * Metoda zwraca wagi przebiegu poziomego czynnika, pomnożone przez współczynnik normalizacji
+     * @param factor numer czynnika z zakresu [0, {@link #getRank()})
+     * @return wektor wag o długości szerokości jądra
+     */
+    public float[] getHorizontal(int factor) {
+        return horizontals[factor];
+    }
+
+    /**
+     * Metoda zwraca wagi przebiegu pionowego czynnika
+     * @param factor numer czynnika z zakresu [0, {@link #getRank()})
+     * @return wektor wag o długości wysokości jądra
+     */
+    public float[] getVertical(int factor) {
+        return verticals[factor];
+    }
+
+    /**
+     * Metoda zwraca współczynnik normalizacji, przez który pomnożono wagi jądra
+     * @return współczynnik normalizacji; 1 dla jąder bez normalizacji
+     */
+    public double getNormalization() {
+        return normalization;
+    }
+
+    /**
+     * Metoda zwraca wagi jądra przed normalizacją, jeśli wszystkie są liczbami całkowitymi. Sumy iloczynów
+     * takich wag i jasności są liczbami całkowitymi, więc nie zależą od kolejności dodawania.
+     * @return wagi zapisane wierszami lub null dla jąder o wagach niecałkowitych i jąder z {@link #separable}
+     */
+    public int[] getIntegerWeights() {
+        return integerWeights;
+    }
+
+    /**
+     * Metoda zwraca jądro z wagami całkowitymi przed normalizacją. Splot z nim daje dla jasności całkowitych
+     * sumy całkowite, dokładne w typie float, które mnożone przez {@link #getNormalization()} dają wynik
+     * niezależny od sposobu splotu, tak jak w {@link MultiMaskFilter}.
+     * @return jądro bez normalizacji, to jądro, jeśli nie ma normalizacji, lub null dla jąder o wagach niecałkowitych
+     */
+    Kernel getIntegerKernel() {
+        if (integerWeights == null) {
+            return null;
+        }
+        return unnormalized == null ? this : unnormalized;
+    }
+
+    /**
+     * Metoda zwraca wagi jądra w postaci tablicy dwuwymiarowej
+     * @return wagi indeksowane [wiersz][kolumna]
+     */
+    public double[][] toArray() {
+        double[][] rows = new double[height][width];
+        for (int i = 0; i < height; ++i) {
+            for (int j = 0; j < width; ++j) {
+                rows[i][j] = weights[i * width + j];
+            }
+        }
+        return rows;
+    }
+}
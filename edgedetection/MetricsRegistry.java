@@ -0,0 +1,152 @@
+package edgedetection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rejestr statystyk etapów detekcji krawędzi zbieranych w trakcie działania programu: liczby wykonań, łącznego
+ * i maksymalnego czasu, liczby pikseli oraz zaalokowanej pamięci. Etapy są wypisywane w kolejności pierwszego
+ * wykonania, jako tabela tekstowa lub dokument JSON. Metody są bezpieczne dla wielu wątków.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class MetricsRegistry {
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+    private final Map<String, StageStatistics> stages = new LinkedHashMap<>();
+
+    /**
+     * Konstruktor pustego rejestru
+     */
+    public MetricsRegistry() {
+    }
+
+    /**
+     * Metoda zwraca rejestr, do którego trafiają pomiary wszystkich detekcji w programie
+     * @return rejestr globalny
+     */
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Metoda dodaje pomiar jednego wykonania etapu
+     * @param stage nazwa etapu
+     * @param nanos czas wykonania w nanosekundach
+     * @param pixels liczba przetworzonych pikseli
+     * @param allocatedBytes zaalokowana pamięć w bajtach lub -1, gdy nie była mierzona
+     */
+    public synchronized void record(String stage, long nanos, long pixels, long allocatedBytes) {
+        StageStatistics statistics = stages.computeIfAbsent(stage, StageStatistics::new);
+        statistics.count++;
+        statistics.totalNanos += nanos;
+        statistics.maxNanos = Math.max(statistics.maxNanos, nanos);
+        statistics.pixels += pixels;
+        if (allocatedBytes >= 0) {
+            statistics.allocatedBytes += allocatedBytes;
+        }
+    }
+
+    /**
+     * Metoda usuwa wszystkie pomiary
+     */
+    public synchronized void reset() {
+        stages.clear();
+    }
+
+    /**
+     * Metoda zwraca statystyki etapów jako tabelę tekstową
+     * @return tabela z wierszem dla każdego etapu
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "%-22s %8s %12s %12s %12s %10s %14s%n",
+                "Etap", "Liczba", "Czas [ms]", "Średnio [ms]", "Maks. [ms]", "MPx/s", "Alokacja [MB]"));
+        for (StageStatistics s : snapshot()) {
+            text.append(String.format(Locale.ROOT, "%-22s %8d %12.1f %12.3f %12.3f %10.1f %14.1f%n",
+                    s.stage, s.count, s.totalNanos / 1e6, s.totalNanos / 1e6 / s.count, s.maxNanos / 1e6,
+                    s.totalNanos == 0 ? 0 : s.pixels * 1e3 / s.totalNanos, s.allocatedBytes / 1e6));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Metoda zwraca statystyki etapów jako dokument JSON postaci
+     * {"stages":[{"stage":...,"count":...,"totalNanos":...,"maxNanos":...,"pixels":...,"allocatedBytes":...}]}
+     * @return dokument JSON
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"stages\":[");
+        List<StageStatistics> snapshot = snapshot();
+        for (int i = 0; i < snapshot.size(); ++i) {
+            StageStatistics s = snapshot.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"stage\":\"").append(escape(s.stage))
+                    .append("\",\"count\":").append(s.count)
+                    .append(",\"totalNanos\":").append(s.totalNanos)
+                    .append(",\"maxNanos\":").append(s.maxNanos)
+                    .append(",\"pixels\":").append(s.pixels)
+                    .append(",\"allocatedBytes\":").append(s.allocatedBytes)
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    /**
+     * Metoda kopiuje statystyki, aby formatowanie odbywało się poza blokadą
+     */
+    private synchronized List<StageStatistics> snapshot() {
+        List<StageStatistics> copy = new ArrayList<>(stages.size());
+        for (StageStatistics s : stages.values()) {
+            copy.add(s.copy());
+        }
+        return copy;
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Statystyki jednego etapu
+     */
+    private static final class StageStatistics {
+        private final String stage;
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private long pixels;
+        private long allocatedBytes;
+
+        StageStatistics(String stage) {
+            this.stage = stage;
+        }
+
+        StageStatistics copy() {
+            StageStatistics copy = new StageStatistics(stage);
+            copy.count = count;
+            copy.totalNanos = totalNanos;
+            copy.maxNanos = maxNanos;
+            copy.pixels = pixels;
+            copy.allocatedBytes = allocatedBytes;
+            return copy;
+        }
+    }
+}
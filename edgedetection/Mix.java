@@ -8,104 +8,117 @@ public class Mix {
 
     /**
      * Metoda pobiera obraz (w skali szarości), wyznacza jądro i pozycję oraz stosuje splot w wybranej pozycji
-     * @param input Tablica reprezentująca obraz
-     * @param x Współrzędna x pozycji splotu
-     * @param y Współrzędna y pozycji splotu
-     * @param k Tablica dwuwymiarowa reprezentująca jądro
-     * @param kernelHeight Wysokość jądra
+     * @param input Płaszczyzna reprezentująca obraz
+     * @param x Współrzędna x (kolumna) lewego górnego rogu jądra
+     * @param y Współrzędna y (wiersz) lewego górnego rogu jądra
+     * @param k Tablica dwuwymiarowa reprezentująca jądro, indeksowana [wiersz][kolumna]
      * @param kernelWidth Szerokość jądra
+     * @param kernelHeight Wysokość jądra
      * @return output Nowa wartość piksela po splocie
      */
 
-    public static double pixelMix(double[][] input, int x, int y, double[][] k, int kernelWidth, int kernelHeight) {
-        double output = 0;
-        for (int i = 0; i < kernelWidth; ++i) {
-            for (int j = 0; j < kernelHeight; ++j) {
-                output = output + (input[x + i][y + j] * k[i][j]);
+    public static float pixelMix(PixelPlane input, int x, int y, double[][] k, int kernelWidth, int kernelHeight) {
+        float[] data = input.getData();
+        float output = 0;
+        for (int i = 0; i < kernelHeight; ++i) {
+            int row = input.index(x, y + i);
+            for (int j = 0; j < kernelWidth; ++j) {
+                output = output + (data[row + j] * (float) k[i][j]);
             }
         }
         return output;
     }
 
     /**
-     * Metoda pobiera tablicę 2D poziomów szarości oraz jądro i stosuje splot nad obszarem obrazu określonym przez szerokość i wysokość
-     * @param input Podwójna tablica 2D reprezentująca obrazy
-     * @param width Szerokość obrazu
-     * @param height Wysokość obrazu
+     * Metoda pobiera płaszczyznę poziomów szarości oraz jądro i stosuje splot nad całym obszarem obrazu
+     * @param input Płaszczyzna reprezentująca obraz
      * @param kernel Tablica dwuwymiarowa reprezentująca jądro
-     * @param kernelHeight Wysokość jądra
      * @param kernelWidth Szerokość jądra
-     * @return output Tablica 2D reprezentująca nowy obraz
+     * @param kernelHeight Wysokość jądra
+     * @return output Płaszczyzna reprezentująca nowy obraz, mniejsza o rozmiar jądra - 1
      */
 
-    public static double[][] mix2D(double[][] input, int width, int height, double[][] kernel, int kernelWidth, int kernelHeight) {
-        int smallWidth = width - kernelWidth + 1;
-        int smallHeight = height - kernelHeight + 1;
-        double[][] output = new double[smallWidth][smallHeight];
-        for (int i = 0; i < smallWidth; ++i) {
-            for (int j = 0; j < smallHeight; ++j) {
-                output[i][j] = 0;
-            }
-        }
-        for (int i = 0; i < smallWidth; ++i) {
-            for (int j = 0; j < smallHeight; ++j) {
-                output[i][j] = pixelMix(input, i, j, kernel, kernelWidth, kernelHeight);
+    public static PixelPlane mix2D(PixelPlane input, double[][] kernel, int kernelWidth, int kernelHeight) {
+        int smallWidth = input.getWidth() - kernelWidth + 1;
+        int smallHeight = input.getHeight() - kernelHeight + 1;
+        PixelPlane output = new PixelPlane(smallWidth, smallHeight);
+        for (int j = 0; j < smallHeight; ++j) {
+            for (int i = 0; i < smallWidth; ++i) {
+                output.set(i, j, pixelMix(input, i, j, kernel, kernelWidth, kernelHeight));
             }
         }
         return output;
     }
 
     /**
-     * Metoda pobiera tablicę 2D poziomów szarości oraz jądro i stosuje splot nad obszarem obrazu określonym przez szerokość i wysokość i zwraca część obrazu wyjściowego
-     * @param input Podwójna tablica 2D reprezentująca obraz
-     * @param width Szerokość obrazu
-     * @param height Wysokość obrazu
+     * Metoda pobiera płaszczyznę poziomów szarości oraz jądro i stosuje splot nad całym obszarem obrazu,
+     * zwracając obraz o rozmiarach wejściowych z wyzerowaną ramką.
+     * Jądra separowalne są stosowane dwoma przebiegami jednowymiarowymi. Jądro jest przygotowywane przy każdym
+     * wywołaniu; przy wielu obrazach lepiej przygotować je raz i użyć {@link #mix2DEdge(PixelPlane, Kernel)}.
+     * @param input Płaszczyzna reprezentująca obraz
      * @param kernel Tablica dwuwymiarowa reprezentująca jądro
-     * @param kernelHeight Wysokość jądra
      * @param kernelWidth Szerokość jądra
-     * @return large Tablica 2D reprezentująca nowy obraz
+     * @param kernelHeight Wysokość jądra
+     * @return large Płaszczyzna reprezentująca nowy obraz
+     * @throws IllegalArgumentException gdy wymiary tablicy jądra różnią się od podanych
      */
 
-    public static double[][] mix2DEdge(double[][] input, int width, int height, double[][] kernel, int kernelWidth, int kernelHeight) {
-        int smallWidth = width - kernelWidth + 1;
-        int smallHeight = height - kernelHeight + 1;
-        int top = kernelHeight / 2;
-        int left = kernelWidth / 2;
+    public static PixelPlane mix2DEdge(PixelPlane input, double[][] kernel, int kernelWidth, int kernelHeight) {
+        checkSize(kernel, kernelWidth, kernelHeight);
+        return mix2DEdge(input, Kernel.of(kernel));
+    }
 
-        double[][] small = mix2D(input, width, height, kernel, kernelWidth, kernelHeight);
-        double large[][] = new double[width][height];
-        for (int j = 0; j < height; ++j) {
-            for (int i = 0; i < width; ++i) {
-                large[i][j] = 0;
-            }
-        }
-        for (int j = 0; j < smallHeight; ++j) {
-            for (int i = 0; i < smallWidth; ++i) {
-                large[i + left][j + top] = small[i][j];
-            }
-        }
-        return large;
+    /**
+     * Metoda stosuje splot tak jak mix2DEdge z tablicą wag, używając jądra przygotowanego wcześniej
+     * @param input Płaszczyzna reprezentująca obraz
+     * @param kernel Jądro splotu
+     * @return large Płaszczyzna reprezentująca nowy obraz
+     */
+
+    public static PixelPlane mix2DEdge(PixelPlane input, Kernel kernel) {
+        return Convolution.convolve(input, kernel, Convolution.Border.ZERO);
     }
 
     /**
-     * Metoda stosuje mix2DEdge dla tablicy wejściowej
-     * @param input Tablica reprezentująca obraz
-     * @param width Szerokość obrazu
-     * @param height Wysokość obrazu
-     * @param kernel Tablica 2D reprezentująca obraz
-     * @param kernelHeight Wysokość jądra
+     * Metoda stosuje mix2DEdge dla płaszczyzny wejściowej
+     * @param input Płaszczyzna reprezentująca obraz
+     * @param kernel Tablica 2D reprezentująca jądro
      * @param kernelWidth Szerokość jądra
-     * @return output Tablica 2D reprezentująca nowy obraz
+     * @param kernelHeight Wysokość jądra
+     * @return output Płaszczyzna reprezentująca nowy obraz
      */
 
-    public double[][] mixNext(double[][] input, int width, int height, double[][] kernel, int kernelWidth, int kernelHeight) {
-        double[][] newInput = input.clone();
-        double[][] output = input.clone();
+    public PixelPlane mixNext(PixelPlane input, double[][] kernel, int kernelWidth, int kernelHeight) {
+        return mix2DEdge(input, kernel, kernelWidth, kernelHeight);
+    }
+
+    /**
+     * Metoda stosuje mix2DEdge z jądrem przygotowanym wcześniej dla płaszczyzny wejściowej
+     * @param input Płaszczyzna reprezentująca obraz
+     * @param kernel Jądro splotu
+     * @return output Płaszczyzna reprezentująca nowy obraz
+     */
+
+    public PixelPlane mixNext(PixelPlane input, Kernel kernel) {
+        return mix2DEdge(input, kernel);
+    }
+
+    /**
+     * Metoda sprawdza, czy tablica jądra ma podane wymiary
+     * @param kernel Tablica dwuwymiarowa reprezentująca jądro
+     * @param kernelWidth Szerokość jądra
+     * @param kernelHeight Wysokość jądra
+     * @throws IllegalArgumentException gdy wymiary są różne
+     */
 
-        for (int i = 0; i < 1; ++i) {
-            output = mix2DEdge(newInput, width, height, kernel, kernelWidth, kernelHeight);
-            newInput = output.clone();
+    private static void checkSize(double[][] kernel, int kernelWidth, int kernelHeight) {
+        if (kernel.length != kernelHeight) {
+            throw new IllegalArgumentException("Jądro ma " + kernel.length + " wierszy zamiast " + kernelHeight);
+        }
+        for (double[] row : kernel) {
+            if (row.length != kernelWidth) {
+                throw new IllegalArgumentException("Wiersz jądra ma " + row.length + " kolumn zamiast " + kernelWidth);
+            }
         }
-        return output;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,116 @@
+package edgedetection;
+
+import java.util.Arrays;
+
+/**
+ * Klasa stosująca kilka masek o nieparzystych wymiarach do sumy składowych RGB obrazu w jednym przebiegu.
+ * Dla każdego wiersza wyniku każdy odcinek wiersza sąsiedztwa jest czytany raz i dodawany z wagami wszystkich masek,
+ * a sumy są od razu zamieniane na jasności map krawędzi, bez płaszczyzn pośrednich dla poszczególnych masek.
+ * Koszt rośnie więc z liczbą niezerowych wag, a nie z liczbą pełnych przebiegów po obrazie.
+ * Ramka o szerokości promienia maski jest zerowana, tak jak w {@link EdgeDetection#computeEdges}.
+ * Maski o wagach całkowitych są sumowane z wagami przed normalizacją, a współczynnik normalizacji jest stosowany
+ * do gotowej sumy; wszystkie sumy częściowe są wtedy liczbami całkowitymi dokładnie reprezentowanymi w typie float,
+ * więc wynik nie zależy od kolejności sumowania.
+ * @author Aneta Bień, Anna Plęs
+ */
+final class MultiMaskFilter {
+    private final float[][] weights;
+    private final float[] scales;
+    private final int[] radiusX;
+    private final int[] radiusY;
+    private final int maxRadiusX;
+    private final int maxRadiusY;
+
+    /**
+     * @param kernels jądra masek
+     */
+    MultiMaskFilter(Kernel[] kernels) {
+        weights = new float[kernels.length][];
+        scales = new float[kernels.length];
+        radiusX = new int[kernels.length];
+        radiusY = new int[kernels.length];
+        int maxX = 0;
+        int maxY = 0;
+        for (int f = 0; f < kernels.length; ++f) {
+            int[] integerWeights = kernels[f].getIntegerWeights();
+            if (integerWeights != null) {
+                weights[f] = new float[integerWeights.length];
+                for (int i = 0; i < integerWeights.length; ++i) {
+                    weights[f][i] = integerWeights[i];
+                }
+                scales[f] = (float) kernels[f].getNormalization();
+            } else {
+                weights[f] = kernels[f].getWeights();
+                scales[f] = 1;
+            }
+            radiusX[f] = kernels[f].getWidth() / 2;
+            radiusY[f] = kernels[f].getHeight() / 2;
+            maxX = Math.max(maxX, radiusX[f]);
+            maxY = Math.max(maxY, radiusY[f]);
+        }
+        maxRadiusX = maxX;
+        maxRadiusY = maxY;
+    }
+
+    /**
+     * Metoda stosuje wszystkie maski do obrazu
+     * @param channelSum płaszczyzna sumy składowych R + G + B
+     * @param outputs mapy wyników o rozmiarach obrazu, po jednej dla każdej maski
+     * @param parallelism liczba kafelków przetwarzanych równolegle
+     */
+    void apply(PixelPlane channelSum, EdgeMap[] outputs, int parallelism) {
+        RowTiles.forEach(channelSum.getHeight(), parallelism, (fromRow, toRow) -> applyRows(channelSum, outputs, fromRow, toRow));
+    }
+
+    /**
+     * Metoda stosuje wszystkie maski do wierszy wyniku z zakresu [fromRow, toRow),
+     * sumując je w buforze wierszy obszaru roboczego wątku. Wagi są przeglądane według przesunięcia względem
+     * środka maski, więc wagi różnych masek o tym samym przesunięciu czytają ten sam odcinek wiersza.
+     */
+    private void applyRows(PixelPlane channelSum, EdgeMap[] outputs, int fromRow, int toRow) {
+        int width = channelSum.getWidth();
+        int height = channelSum.getHeight();
+        int count = weights.length;
+        float[] sums = Workspace.current().floats(Workspace.Slot.FILTER_ROWS, count * width);
+        float[] source = channelSum.getData();
+        ConvolutionBackend backend = ConvolutionBackends.current();
+        boolean[] inside = new boolean[count];
+        for (int y = fromRow; y < toRow; ++y) {
+            int outputRow = y * width;
+            for (int f = 0; f < count; ++f) {
+                inside[f] = y >= radiusY[f] && y < height - radiusY[f] && width > 2 * radiusX[f];
+            }
+            Arrays.fill(sums, 0, count * width, 0);
+            for (int dy = -maxRadiusY; dy <= maxRadiusY; ++dy) {
+                for (int dx = -maxRadiusX; dx <= maxRadiusX; ++dx) {
+                    for (int f = 0; f < count; ++f) {
+                        int rx = radiusX[f];
+                        int ry = radiusY[f];
+                        if (!inside[f] || Math.abs(dx) > rx || Math.abs(dy) > ry) {
+                            continue;
+                        }
+                        float weight = weights[f][(dy + ry) * (2 * rx + 1) + dx + rx];
+                        if (weight != 0) {
+                            backend.accumulateRow(source, channelSum.index(rx + dx, y + dy), weight, sums,
+                                    f * width + rx, width - 2 * rx);
+                        }
+                    }
+                }
+            }
+            for (int f = 0; f < count; ++f) {
+                byte[] pixels = outputs[f].getPixels();
+                if (!inside[f]) {
+                    Arrays.fill(pixels, outputRow, outputRow + width, (byte) 0);
+                    continue;
+                }
+                int rx = radiusX[f];
+                float scale = scales[f];
+                Arrays.fill(pixels, outputRow, outputRow + rx, (byte) 0);
+                Arrays.fill(pixels, outputRow + width - rx, outputRow + width, (byte) 0);
+                for (int x = rx; x < width - rx; ++x) {
+                    pixels[outputRow + x] = (byte) ImageConverter.toByte(sums[f * width + x] * scale);
+                }
+            }
+        }
+    }
+}
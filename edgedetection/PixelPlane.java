@@ -0,0 +1,120 @@
+package edgedetection;
+
+import java.util.Arrays;
+
+/**
+ * Klasa reprezentująca jednokanałową płaszczyznę pikseli zapisaną wierszami w jednej tablicy typu float
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class PixelPlane {
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final float[] data;
+
+    /**
+     * Konstruktor tworzący płaszczyznę wypełnioną zerami
+     * @param width szerokość płaszczyzny
+     * @param height wysokość płaszczyzny
+     */
+    public PixelPlane(int width, int height) {
+        this(width, height, width, new float[Math.multiplyExact(width, height)]);
+    }
+
+    /**
+     * Konstruktor opakowujący istniejącą tablicę wartości pikseli
+     * @param width szerokość płaszczyzny
+     * @param height wysokość płaszczyzny
+     * @param stride odstęp pomiędzy początkami kolejnych wierszy w tablicy
+     * @param data tablica wartości pikseli zapisanych wierszami
+     */
+    public PixelPlane(int width, int height, int stride, float[] data) {
+        if (width <= 0 || height <= 0 || stride < width) {
+            throw new IllegalArgumentException("Niepoprawne wymiary płaszczyzny: " + width + "x" + height + ", stride " + stride);
+        }
+        if ((long) stride * (height - 1) + width > data.length) {
+            throw new IllegalArgumentException("Tablica jest za mała dla płaszczyzny " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+        this.data = data;
+    }
+
+    /**
+     * Metoda zwraca szerokość płaszczyzny
+     * @return szerokość w pikselach
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Metoda zwraca wysokość płaszczyzny
+     * @return wysokość w pikselach
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Metoda zwraca odstęp pomiędzy początkami kolejnych wierszy
+     * @return odstęp wierszy w tablicy danych
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Metoda zwraca tablicę, w której przechowywane są wartości pikseli
+     * @return tablica wartości pikseli zapisanych wierszami
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    /**
+     * Metoda wyznacza położenie piksela w tablicy danych
+     * @param x współrzędna x (kolumna)
+     * @param y współrzędna y (wiersz)
+     * @return indeks piksela w tablicy danych
+     */
+    public int index(int x, int y) {
+        return y * stride + x;
+    }
+
+    /**
+     * Metoda zwraca wartość piksela
+     * @param x współrzędna x (kolumna)
+     * @param y współrzędna y (wiersz)
+     * @return wartość piksela
+     */
+    public float get(int x, int y) {
+        return data[y * stride + x];
+    }
+
+    /**
+     * Metoda ustawia wartość piksela
+     * @param x współrzędna x (kolumna)
+     * @param y współrzędna y (wiersz)
+     * @param value nowa wartość piksela
+     */
+    public void set(int x, int y, float value) {
+        data[y * stride + x] = value;
+    }
+
+    /**
+     * Metoda wypełnia całą płaszczyznę jedną wartością
+     * @param value wartość wpisywana do każdego piksela
+     */
+    public void fill(float value) {
+        if (stride == width) {
+            Arrays.fill(data, 0, width * height, value);
+            return;
+        }
+        for (int y = 0; y < height; ++y) {
+            int row = y * stride;
+            Arrays.fill(data, row, row + width, value);
+        }
+    }
+}
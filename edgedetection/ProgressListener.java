@@ -0,0 +1,21 @@
+package edgedetection;
+
+/**
+ * Interfejs odbiorcy informacji o postępie detekcji krawędzi, wywoływany po zakończeniu każdego etapu algorytmu
+ * w wątku wykonującym detekcję. Odbiorca może przerwać detekcję, zgłaszając wyjątek
+ * {@link java.util.concurrent.CancellationException}, który jest przekazywany wywołującemu metodę detekcji.
+ * @author Aneta Bień, Anna Plęs
+ */
+public interface ProgressListener {
+
+    /** Odbiorca ignorujący informacje o postępie */
+    ProgressListener NONE = (stage, finishedStages, totalStages) -> { };
+
+    /**
+     * Metoda wywoływana po zakończeniu etapu algorytmu
+     * @param stage nazwa zakończonego etapu
+     * @param finishedStages liczba zakończonych etapów, łącznie z bieżącym
+     * @param totalStages liczba wszystkich etapów algorytmu
+     */
+    void stageFinished(String stage, int finishedStages, int totalStages);
+}
@@ -0,0 +1,465 @@
+package edgedetection;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Klasa przechowująca wyniki detekcji krawędzi pod kluczami wyznaczanymi z zawartości obrazu, nazwy filtru i progów,
+ * dzięki czemu ponowne przetworzenie tego samego obrazu tym samym filtrem zwraca zapamiętany wynik bez obliczeń
+ * (patrz {@link EdgeDetection#EdgeDetection(FilterRegistry, ResultCache)}). Pamięć podręczna ma dwa poziomy:
+ * <ul>
+ * <li>poziom w pamięci, ograniczony łączną liczbą bajtów wyników i usuwający najdawniej używane wyniki (LRU),</li>
+ * <li>opcjonalny katalog na dysku, do którego każdy wynik jest zapisywany przy dodaniu; wynik usunięty z pamięci
+ * lub zapisany przez poprzednie uruchomienie programu jest z niego czytany i wraca do pamięci.</li>
+ * </ul>
+ * Mapy zawierające tylko wartości 0 i 255, czyli wyniki algorytmu Canny'ego, są przechowywane jako jeden bit
+ * na piksel, a pozostałe jako jeden bajt na piksel. Metody są bezpieczne dla wielu wątków.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class ResultCache {
+    /** Domyślny rozmiar poziomu w pamięci: 256 MB, czyli ok. 170 map Canny'ego obrazów 12 MP */
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+    /** Szacowany narzut pamięci jednego wpisu poza tablicą pikseli: klucz, wpis mapy i nagłówki obiektów */
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int FILE_MAGIC = 0x45444744;
+    private static final String FILE_EXTENSION = ".edges";
+    /** Największa długość nazwy filtru w pliku; dłuższa oznacza plik uszkodzony */
+    private static final int MAX_FILTER_BYTES = 1 << 24;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    /** Osiem pikseli 0 lub 255 dla każdej wartości bajtu map binarnych; najstarszy bit to pierwszy piksel */
+    private static final long[] UNPACKED = new long[256];
+
+    static {
+        for (int bits = 0; bits < 256; ++bits) {
+            for (int i = 0; i < 8; ++i) {
+                if ((bits & (0x80 >> i)) != 0) {
+                    UNPACKED[bits] |= 0xFFL << (8 * i);
+                }
+            }
+        }
+    }
+
+    private final long maxBytes;
+    private final Path directory;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Konstruktor pamięci podręcznej bez poziomu dyskowego
+     * @param maxBytes największa łączna liczba bajtów wyników w pamięci
+     */
+    public ResultCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * Konstruktor pamięci podręcznej z opcjonalnym poziomem dyskowym
+     * @param maxBytes największa łączna liczba bajtów wyników w pamięci
+     * @param directory katalog poziomu dyskowego, tworzony w razie potrzeby, lub null dla samego poziomu w pamięci;
+     *                  rozmiar katalogu nie jest ograniczany
+     * @throws UncheckedIOException gdy nie można utworzyć katalogu
+     */
+    public ResultCache(long maxBytes, File directory) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Rozmiar pamięci podręcznej nie może być ujemny: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.directory = directory == null ? null : directory.toPath();
+        if (directory != null) {
+            try {
+                Files.createDirectories(this.directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Metoda wyznacza klucz wyniku dla pikseli obrazu w pamięci
+     * @param image obraz wejściowy
+     * @param filter nazwa filtru, rozszerzona o wszystko, od czego zależy wynik, np. o wagi maski
+     * @param lowerThreshold dolny próg algorytmu Canny'ego; 0 dla filtrów masek
+     * @param higherThreshold górny próg algorytmu Canny'ego; 0 dla filtrów masek
+     * @return klucz wyniku
+     */
+    public static Key key(BufferedImage image, String filter, double lowerThreshold, double higherThreshold) {
+        return new Key(false, ContentHash.of(image), ((long) image.getWidth() << 32) | image.getHeight(), filter,
+                lowerThreshold, higherThreshold);
+    }
+
+    /**
+     * Metoda wyznacza klucz wyniku dla zakodowanej zawartości pliku obrazu, bez jej dekodowania.
+     * Te same piksele zapisane w różnych plikach, np. z inną kompresją, mają różne klucze.
+     * @param encoded zawartość pliku obrazu
+     * @param filter nazwa filtru, rozszerzona o wszystko, od czego zależy wynik, np. o wagi maski
+     * @param lowerThreshold dolny próg algorytmu Canny'ego; 0 dla filtrów masek
+     * @param higherThreshold górny próg algorytmu Canny'ego; 0 dla filtrów masek
+     * @return klucz wyniku
+     */
+    public static Key key(byte[] encoded, String filter, double lowerThreshold, double higherThreshold) {
+        return new Key(true, ContentHash.of(encoded), encoded.length, filter, lowerThreshold, higherThreshold);
+    }
+
+    /**
+     * Metoda zwraca zapamiętany wynik, szukając go kolejno w pamięci i na dysku
+     * @param key klucz wyniku
+     * @param reuse mapa nadpisywana, jeśli ma rozmiary wyniku, lub null
+     * @return kopia zapamiętanej mapy krawędzi lub null, gdy wynik nie jest zapamiętany
+     * @throws UncheckedIOException błąd odczytu z poziomu dyskowego
+     */
+    public EdgeMap get(Key key, EdgeMap reuse) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry.toEdgeMap(reuse);
+        }
+        entry = directory == null ? null : readFile(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        diskHits.incrementAndGet();
+        store(key, entry);
+        return entry.toEdgeMap(reuse);
+    }
+
+    /**
+     * Metoda zapamiętuje wynik w pamięci, usuwając najdawniej używane wyniki ponad limit bajtów,
+     * i zapisuje go w katalogu poziomu dyskowego
+     * @param key klucz wyniku
+     * @param edges mapa krawędzi; jest kopiowana, więc może być później nadpisana
+     * @throws UncheckedIOException błąd zapisu na poziomie dyskowym
+     */
+    public void put(Key key, EdgeMap edges) {
+        Entry entry = Entry.of(edges);
+        store(key, entry);
+        if (directory != null) {
+            writeFile(key, entry);
+        }
+    }
+
+    /**
+     * Metoda usuwa wszystkie wyniki z pamięci; pliki poziomu dyskowego i liczniki pozostają bez zmian
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Metoda zwraca liczbę wyników znalezionych w pamięci
+     * @return liczba trafień w pamięci
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Metoda zwraca liczbę wyników nieznalezionych w pamięci, ale przeczytanych z dysku
+     * @return liczba trafień na dysku
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Metoda zwraca liczbę wyników nieznalezionych na żadnym poziomie
+     * @return liczba chybień
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Metoda zwraca liczbę wyników usuniętych z pamięci z powodu limitu bajtów
+     * @return liczba usunięć
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Metoda zwraca łączną liczbę bajtów wyników w pamięci, z narzutem wpisów
+     * @return zajęta pamięć w bajtach
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Metoda zwraca liczbę wyników w pamięci
+     * @return liczba wyników
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        long size;
+        int count;
+        synchronized (this) {
+            size = bytes;
+            count = entries.size();
+        }
+        return String.format("Pamięć podręczna wyników: trafienia %d, trafienia na dysku %d, chybienia %d, usunięcia %d,"
+                + " %d wyników (%.1f MB)", getHits(), getDiskHits(), getMisses(), getEvictions(), count, size / 1e6);
+    }
+
+    /**
+     * Metoda dodaje wpis do pamięci i usuwa najdawniej używane wpisy ponad limit bajtów.
+     * Wpis większy od całego limitu nie jest zapamiętywany.
+     */
+    private synchronized void store(Key key, Entry entry) {
+        long size = entry.size();
+        if (size > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        bytes += size - (previous == null ? 0 : previous.size());
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().size();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Metoda zwraca ścieżkę pliku wyniku; nazwa jest skrótem klucza, a pełny klucz jest zapisany w pliku
+     */
+    private Path file(Key key) {
+        return directory.resolve(String.format("%016x", key.digest()) + FILE_EXTENSION);
+    }
+
+    /**
+     * Metoda zapisuje wynik do pliku tymczasowego i przenosi go atomowo w miejsce pliku wyniku,
+     * więc równoległe odczyty nie widzą pliku zapisanego częściowo
+     */
+    private void writeFile(Key key, Entry entry) {
+        Path target = file(key);
+        try {
+            Path temp = Files.createTempFile(directory, "edges", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(FILE_MAGIC);
+                key.write(out);
+                entry.write(out);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Metoda czyta wynik z pliku
+     * @return wpis lub null, gdy plik nie istnieje, jest niekompletny albo zawiera inny klucz o tym samym skrócie
+     */
+    private Entry readFile(Key key) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file(key)), 1 << 16))) {
+            if (in.readInt() != FILE_MAGIC || !Key.read(in).equals(key)) {
+                return null;
+            }
+            return Entry.read(in);
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Klucz wyniku: skrót zawartości obrazu, rozmiar i rodzaj zawartości (piksele lub zakodowany plik),
+     * nazwa filtru i progi
+     */
+    public static final class Key {
+        private final boolean encoded;
+        private final long contentHash;
+        private final long contentSize;
+        private final String filter;
+        private final double lowerThreshold;
+        private final double higherThreshold;
+
+        private Key(boolean encoded, long contentHash, long contentSize, String filter, double lowerThreshold,
+                    double higherThreshold) {
+            this.encoded = encoded;
+            this.contentHash = contentHash;
+            this.contentSize = contentSize;
+            this.filter = Objects.requireNonNull(filter);
+            this.lowerThreshold = lowerThreshold;
+            this.higherThreshold = higherThreshold;
+        }
+
+        /**
+         * Metoda wyznacza 64-bitowy skrót całego klucza, używany jako nazwa pliku
+         */
+        long digest() {
+            long hash = contentHash;
+            hash = hash * 31 + (encoded ? 1 : 0);
+            hash = hash * 31 + contentSize;
+            hash = hash * 31 + filter.hashCode();
+            hash = hash * 31 + Double.doubleToLongBits(lowerThreshold);
+            hash = hash * 31 + Double.doubleToLongBits(higherThreshold);
+            hash ^= hash >>> 29;
+            hash *= 0xBF58476D1CE4E5B9L;
+            return hash ^ (hash >>> 32);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeBoolean(encoded);
+            out.writeLong(contentHash);
+            out.writeLong(contentSize);
+            // nazwa filtru masek zawiera wszystkie wagi, więc może być dłuższa niż 64 KB dopuszczane przez writeUTF
+            byte[] name = filter.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            out.writeDouble(lowerThreshold);
+            out.writeDouble(higherThreshold);
+        }
+
+        static Key read(DataInputStream in) throws IOException {
+            boolean encoded = in.readBoolean();
+            long contentHash = in.readLong();
+            long contentSize = in.readLong();
+            int length = in.readInt();
+            if (length < 0 || length > MAX_FILTER_BYTES) {
+                throw new EOFException("Niepoprawna długość nazwy filtru: " + length);
+            }
+            byte[] name = new byte[length];
+            in.readFully(name);
+            return new Key(encoded, contentHash, contentSize, new String(name, StandardCharsets.UTF_8), in.readDouble(),
+                    in.readDouble());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return encoded == key.encoded && contentHash == key.contentHash && contentSize == key.contentSize
+                    && filter.equals(key.filter)
+                    && Double.doubleToLongBits(lowerThreshold) == Double.doubleToLongBits(key.lowerThreshold)
+                    && Double.doubleToLongBits(higherThreshold) == Double.doubleToLongBits(key.higherThreshold);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(digest());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x/%d %s %s %s", contentHash, contentSize, filter, lowerThreshold, higherThreshold);
+        }
+    }
+
+    /**
+     * Zapamiętana mapa krawędzi: jeden bit na piksel dla map binarnych, w przeciwnym razie kopia pikseli
+     */
+    private static final class Entry {
+        private final int width;
+        private final int height;
+        private final boolean packed;
+        private final byte[] data;
+
+        private Entry(int width, int height, boolean packed, byte[] data) {
+            this.width = width;
+            this.height = height;
+            this.packed = packed;
+            this.data = data;
+        }
+
+        static Entry of(EdgeMap edges) {
+            byte[] pixels = edges.getPixels();
+            int length = edges.getWidth() * edges.getHeight();
+            for (int i = 0; i < length; ++i) {
+                if (pixels[i] != 0 && pixels[i] != Hysteresis.STRONG) {
+                    return new Entry(edges.getWidth(), edges.getHeight(), false, Arrays.copyOf(pixels, length));
+                }
+            }
+            byte[] bits = new byte[(length + 7) / 8];
+            for (int i = 0; i < length; ++i) {
+                bits[i >> 3] |= (pixels[i] & 0x80) >> (i & 7);
+            }
+            return new Entry(edges.getWidth(), edges.getHeight(), true, bits);
+        }
+
+        EdgeMap toEdgeMap(EdgeMap reuse) {
+            EdgeMap output = EdgeMap.reuseOrCreate(reuse, width, height);
+            byte[] pixels = output.getPixels();
+            int length = width * height;
+            if (!packed) {
+                System.arraycopy(data, 0, pixels, 0, length);
+                return output;
+            }
+            int i = 0;
+            for (; i + 8 <= length; i += 8) {
+                LONGS.set(pixels, i, UNPACKED[data[i >> 3] & 0xFF]);
+            }
+            for (; i < length; ++i) {
+                // bit piksela przesunięty na najstarszą pozycję i powielony na cały bajt: 0 lub 255
+                pixels[i] = (byte) ((data[i >> 3] << (24 + (i & 7))) >> 31);
+            }
+            return output;
+        }
+
+        long size() {
+            return data.length + ENTRY_OVERHEAD;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeBoolean(packed);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            int width = in.readInt();
+            int height = in.readInt();
+            boolean packed = in.readBoolean();
+            int length = in.readInt();
+            long pixels = (long) width * height;
+            if (width <= 0 || height <= 0 || pixels > Integer.MAX_VALUE
+                    || length != (packed ? (pixels + 7) / 8 : pixels)) {
+                throw new EOFException("Niepoprawny rozmiar mapy krawędzi: " + width + "x" + height + ", " + length + " B");
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            return new Entry(width, height, packed, data);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package edgedetection;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Klasa dzieląca obraz na poziome pasy (kafelki) wierszy i przetwarzająca je równolegle we wspólnej puli ForkJoin.
+ * Każdy etap czyta sąsiednie wiersze (halo) z płaszczyzny wejściowej całego obrazu, a zapisuje tylko wiersze swojego kafelka,
+ * dlatego wynik jest identyczny z przetwarzaniem sekwencyjnym niezależnie od liczby kafelków.
+ * @author Aneta Bień, Anna Plęs
+ */
+final class RowTiles {
+    /** Minimalna liczba wierszy kafelka, poniżej której podział się nie opłaca */
+    static final int MIN_TILE_ROWS = 16;
+
+    /**
+     * Interfejs operacji wykonywanej na zakresie wierszy [fromRow, toRow)
+     */
+    interface RowRange {
+        void process(int fromRow, int toRow);
+    }
+
+    private RowTiles() {
+    }
+
+    /**
+     * Metoda wykonuje operację dla wszystkich wierszy obrazu, dzieląc je na co najwyżej parallelism kafelków
+     * @param height liczba wierszy obrazu
+     * @param parallelism stopień równoległości; 1 oznacza wykonanie w bieżącym wątku
+     * @param action operacja wykonywana dla każdego kafelka
+     */
+    static void forEach(int height, int parallelism, RowRange action) {
+        int tiles = tileCount(height, parallelism);
+        if (tiles <= 1) {
+            action.process(0, height);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new TileTask(action, height, tiles, 0, tiles));
+    }
+
+    /**
+     * Metoda zwraca liczbę kafelków, na które forEach dzieli obraz
+     * @param height liczba wierszy obrazu
+     * @param parallelism stopień równoległości
+     * @return liczba kafelków, co najmniej 1
+     */
+    static int tileCount(int height, int parallelism) {
+        return Math.max(1, Math.min(parallelism, height / MIN_TILE_ROWS));
+    }
+
+    /**
+     * Metoda zwraca pierwszy wiersz kafelka
+     * @param height liczba wierszy obrazu
+     * @param tiles liczba kafelków
+     * @param tile numer kafelka; wartość tiles daje wysokość obrazu
+     * @return numer pierwszego wiersza kafelka
+     */
+    static int tileStart(int height, int tiles, int tile) {
+        return (int) ((long) height * tile / tiles);
+    }
+
+    /**
+     * Zadanie dzielące zakres kafelków na połowy aż do pojedynczych kafelków,
+     * dzięki czemu wolne wątki puli mogą przejmować (kraść) niewykonane części
+     */
+    private static final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RowRange action;
+        private final int height;
+        private final int tiles;
+        private final int fromTile;
+        private final int toTile;
+
+        TileTask(RowRange action, int height, int tiles, int fromTile, int toTile) {
+            this.action = action;
+            this.height = height;
+            this.tiles = tiles;
+            this.fromTile = fromTile;
+            this.toTile = toTile;
+        }
+
+        @Override
+        protected void compute() {
+            if (toTile - fromTile == 1) {
+                action.process(tileStart(height, tiles, fromTile), tileStart(height, tiles, toTile));
+                return;
+            }
+            int middle = (fromTile + toTile) >>> 1;
+            invokeAll(new TileTask(action, height, tiles, fromTile, middle),
+                    new TileTask(action, height, tiles, middle, toTile));
+        }
+    }
+}
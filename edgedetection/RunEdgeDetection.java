@@ -1,22 +1,195 @@
 package edgedetection;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
- * Klasa wywołująca program za pomocą klasy EdgeDetectionUI
+ * Klasa wywołująca program za pomocą klasy EdgeDetectionUI lub, gdy podano argumenty, w trybie wsadowym bez GUI
  * @author Aneta Bień, Anna Plęs
  */
 
 public class RunEdgeDetection {
 
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Użycie: RunEdgeDetection --input <katalog|wzorzec glob> --output <katalog> [opcje]",
+            "  --filter <nazwa>     horizontal, vertical, sobel-vertical, sobel-horizontal,",
+            "                       scharr-vertical, scharr-horizontal, sobel-5x5-vertical,",
+            "                       sobel-5x5-horizontal, log (Laplasjan funkcji Gaussa 7x7),",
+            "                       canny (domyślnie canny)",
+            "  --lower <próg>       dolny próg algorytmu Canny'ego (domyślnie " + EdgeDetection.LOWER_THRESHOLD + ")",
+            "  --higher <próg>      górny próg algorytmu Canny'ego (domyślnie " + EdgeDetection.HIGHER_THRESHOLD + ")",
+            "  --threads <n>        liczba obrazów przetwarzanych jednocześnie (domyślnie liczba procesorów)",
+            "  --tiles <n>          liczba kafelków jednego obrazu (domyślnie 1)",
+            "  --format <nazwa>     format plików wynikowych: pgm (8 bitów bez kompresji), pbm (1 bit na piksel,",
+            "                       dla algorytmu Canny'ego), png, jpg lub inny format ImageIO (domyślnie png)",
+            "  --png-level <0-9>    poziom kompresji PNG (domyślnie " + EdgeEncoders.DEFAULT_PNG_COMPRESSION + ")",
+            "  --writer-threads <n> liczba wątków kodujących wyniki równolegle z obliczeniami",
+            "                       (domyślnie 0 - kodowanie w wątku przetwarzającym obraz)",
+            "  --strip-rows <n>     przetwarzanie pasami po n wierszy bez wczytywania całego obrazu;",
+            "                       wymaga formatu zapisywanego od góry (pgm, pbm, png, tiff)",
+            "  --preview-level <n>  Canny na poziomie n piramidy obrazu (1 - 1/4, 2 - 1/16 pikseli);",
+            "                       zapisuje mniejszą mapę, np. do szybkiej selekcji obrazów",
+            "  --refine-level <n>   Canny w pełnej rozdzielczości tylko w otoczeniu krawędzi",
+            "                       znalezionych na poziomie n piramidy",
+            "  --cache-mb <n>       pamięć podręczna n MB wyników; powtórzony plik nie jest dekodowany",
+            "  --cache-dir <katalog> zapis wyników na dysku, używanych przez kolejne uruchomienia",
+            "                       (domyślnie z pamięcią podręczną " + (ResultCache.DEFAULT_MAX_BYTES >> 20) + " MB)",
+            "  --metrics <text|json> wypisuje na końcu czasy, piksele i alokacje etapów algorytmu",
+            "Bez argumentów uruchamiany jest interfejs graficzny.",
+            "Opcja JVM --add-modules jdk.incubator.vector włącza wektorową implementację splotu.");
+
     /**
-     * Przykład użycia klasy EdgeDetectionUI
-     * @param args Nieużywany
+     * Przykład użycia klasy EdgeDetectionUI; z argumentami uruchamia przetwarzanie wsadowe
+     * @param args Brak argumentów uruchamia GUI, w przeciwnym razie opcje trybu wsadowego
      * @exception IOException W przypadku błędu użytkownika wywołuje wyjątek
      */
 
     public static void main(String[] args) throws IOException {
-        System.out.println("Working Directory = " + System.getProperty("user.dir"));
-        new EdgeDetectionUI();
+        if (args.length == 0) {
+            System.out.println("Working Directory = " + System.getProperty("user.dir"));
+            new EdgeDetectionUI();
+            return;
+        }
+        System.setProperty("java.awt.headless", "true");
+        try {
+            System.exit(runBatch(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Metoda uruchamia przetwarzanie wsadowe i wypisuje podsumowanie przepustowości
+     * @param args opcje trybu wsadowego
+     * @return kod wyjścia: 0 gdy wszystkie obrazy przetworzono, 1 w przeciwnym razie
+     * @throws IOException błąd wyszukiwania plików lub tworzenia katalogu wynikowego
+     * @throws InterruptedException przerwanie przetwarzania
+     */
+    private static int runBatch(String[] args) throws IOException, InterruptedException {
+        String input = null;
+        String output = null;
+        String filter = EdgeDetection.CANNY_EDGE_DETECTION;
+        double lower = EdgeDetection.LOWER_THRESHOLD;
+        double higher = EdgeDetection.HIGHER_THRESHOLD;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int tiles = 1;
+        String format = "png";
+        int pngLevel = EdgeEncoders.DEFAULT_PNG_COMPRESSION;
+        int writerThreads = 0;
+        int stripRows = 0;
+        int pyramidLevel = 0;
+        boolean refine = false;
+        long cacheMegabytes = -1;
+        String cacheDirectory = null;
+        String metrics = null;
+        for (int i = 0; i < args.length; ++i) {
+            String option = args[i];
+            if (option.equals("--help") || option.equals("-h")) {
+                System.out.println(USAGE);
+                return 0;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Brak wartości opcji " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--input":
+                        input = value;
+                        break;
+                    case "--output":
+                        output = value;
+                        break;
+                    case "--filter":
+                        filter = BatchProcessor.resolveFilter(value);
+                        break;
+                    case "--lower":
+                        lower = Double.parseDouble(value);
+                        break;
+                    case "--higher":
+                        higher = Double.parseDouble(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--tiles":
+                        tiles = Integer.parseInt(value);
+                        break;
+                    case "--format":
+                        format = value;
+                        break;
+                    case "--png-level":
+                        pngLevel = Integer.parseInt(value);
+                        break;
+                    case "--writer-threads":
+                        writerThreads = Integer.parseInt(value);
+                        break;
+                    case "--strip-rows":
+                        stripRows = Integer.parseInt(value);
+                        break;
+                    case "--preview-level":
+                        pyramidLevel = Integer.parseInt(value);
+                        refine = false;
+                        break;
+                    case "--refine-level":
+                        pyramidLevel = Integer.parseInt(value);
+                        refine = true;
+                        break;
+                    case "--cache-mb":
+                        cacheMegabytes = Long.parseLong(value);
+                        break;
+                    case "--cache-dir":
+                        cacheDirectory = value;
+                        break;
+                    case "--metrics":
+                        if (!value.equals("text") && !value.equals("json")) {
+                            throw new IllegalArgumentException("Niepoprawna wartość opcji " + option + ": " + value);
+                        }
+                        metrics = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Nieznana opcja " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Niepoprawna wartość opcji " + option + ": " + value);
+            }
+        }
+        if (input == null || output == null) {
+            throw new IllegalArgumentException("Wymagane są opcje --input i --output");
+        }
+        File outputDirectory = new File(output);
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Nie można utworzyć katalogu " + outputDirectory);
+        }
+        List<Path> inputs = BatchProcessor.findInputs(input);
+        if (inputs.isEmpty()) {
+            System.err.println("Nie znaleziono obrazów: " + input);
+            return 1;
+        }
+        ResultCache cache = null;
+        if (cacheMegabytes > 0 || cacheDirectory != null) {
+            long maxBytes = cacheMegabytes >= 0 ? cacheMegabytes << 20 : ResultCache.DEFAULT_MAX_BYTES;
+            cache = new ResultCache(maxBytes, cacheDirectory == null ? null : new File(cacheDirectory));
+        }
+        EdgeEncoder encoder = format.equalsIgnoreCase("png") ? EdgeEncoders.png(pngLevel) : EdgeEncoders.forName(format);
+        BatchProcessor processor = new BatchProcessor(filter, lower, higher, new ImageFileSink(outputDirectory, encoder),
+                threads, tiles, stripRows, writerThreads, pyramidLevel, refine, cache);
+        BatchProcessor.Summary summary = processor.process(inputs);
+        System.out.println(summary);
+        if (cache != null) {
+            System.out.println(cache);
+        }
+        if (metrics != null) {
+            MetricsRegistry registry = MetricsRegistry.global();
+            System.out.println(metrics.equals("json") ? registry.toJson() : registry.toText());
+        }
+        return summary.getFailed() == 0 ? 0 : 1;
     }
 }
@@ -0,0 +1,50 @@
+package edgedetection;
+
+/**
+ * Skalarna implementacja pętli splotu, używana gdy moduł jdk.incubator.vector nie jest dostępny
+ * oraz dla końcówek wierszy krótszych niż wektor
+ * @author Aneta Bień, Anna Plęs
+ */
+final class ScalarBackend implements ConvolutionBackend {
+
+    @Override
+    public void convolveRow(float[] source, int sourceOffset, float[] kernel, float[] target, int targetOffset, int count) {
+        for (int n = 0; n < count; ++n) {
+            int base = sourceOffset + n;
+            float sum = 0;
+            for (int i = 0; i < kernel.length; ++i) {
+                sum += source[base + i] * kernel[i];
+            }
+            target[targetOffset + n] = sum;
+        }
+    }
+
+    @Override
+    public void scaleRow(float[] source, int sourceOffset, float weight, float[] target, int targetOffset, int count) {
+        for (int n = 0; n < count; ++n) {
+            target[targetOffset + n] = source[sourceOffset + n] * weight;
+        }
+    }
+
+    @Override
+    public void accumulateRow(float[] source, int sourceOffset, float weight, float[] target, int targetOffset, int count) {
+        for (int n = 0; n < count; ++n) {
+            target[targetOffset + n] += source[sourceOffset + n] * weight;
+        }
+    }
+
+    @Override
+    public void sobelRow(float[] source, int up, int middle, int down, float[] gx, float[] gy,
+                         float[] magnitude, int magnitudeOffset, int fromX, int toX) {
+        for (int x = fromX; x < toX; ++x) {
+            float topLeft = source[up + x - 1], top = source[up + x], topRight = source[up + x + 1];
+            float midLeft = source[middle + x - 1], midRight = source[middle + x + 1];
+            float bottomLeft = source[down + x - 1], bottom = source[down + x], bottomRight = source[down + x + 1];
+            float horizontal = (topRight + 2*midRight + bottomRight) - (topLeft + 2*midLeft + bottomLeft);
+            float vertical = (bottomLeft + 2*bottom + bottomRight) - (topLeft + 2*top + topRight);
+            gx[x] = horizontal;
+            gy[x] = vertical;
+            magnitude[magnitudeOffset + x] = (float) Math.sqrt(horizontal * horizontal + vertical * vertical);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package edgedetection;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Zdarzenie JDK Flight Recorder opisujące jeden etap detekcji krawędzi. Czas trwania zdarzenia jest czasem
+ * wykonania etapu, więc nagranie JFR pokazuje etapy dominujące bez zewnętrznego profilera.
+ * @author Aneta Bień, Anna Plęs
+ */
+@Name("edgedetection.Stage")
+@Label("Etap detekcji krawędzi")
+@Category("Edge Detection")
+@Description("Czas, liczba pikseli i pamięć zaalokowana przez jeden etap algorytmu")
+@StackTrace(false)
+final class StageEvent extends Event {
+
+    @Label("Etap")
+    String stage;
+
+    @Label("Piksele")
+    long pixels;
+
+    @Label("Zaalokowane bajty")
+    @Description("Pamięć zaalokowana w trakcie etapu przez wątek wywołujący, bez wątków kafelków; -1, gdy JVM tego nie mierzy")
+    @DataAmount
+    long allocatedBytes;
+}
@@ -0,0 +1,81 @@
+package edgedetection;
+
+import jdk.jfr.EventType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Odbiorca postępu mierzący etapy algorytmu: czas od zakończenia poprzedniego etapu (lub od utworzenia obiektu),
+ * liczbę pikseli i pamięć zaalokowaną przez bieżący wątek. Pomiar jest zapisywany jako zdarzenie {@link StageEvent}
+ * i w rejestrze {@link MetricsRegistry#global()}, a następnie przekazywany dalej do opakowanego odbiorcy.
+ * Obiekt mierzy jedno wykonanie algorytmu w jednym wątku.
+ * @author Aneta Bień, Anna Plęs
+ */
+final class StageRecorder implements ProgressListener {
+    private static final EventType EVENT_TYPE = EventType.getEventType(StageEvent.class);
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+    private final ProgressListener delegate;
+    private final long pixels;
+    private StageEvent event;
+    private long stageStart;
+    private long allocatedAtStart;
+
+    /**
+     * Konstruktor rozpoczynający pomiar pierwszego etapu
+     * @param delegate odbiorca, do którego przekazywane są informacje o postępie
+     * @param pixels liczba pikseli przetwarzanych przez każdy etap
+     */
+    StageRecorder(ProgressListener delegate, long pixels) {
+        this.delegate = delegate;
+        this.pixels = pixels;
+        start();
+    }
+
+    @Override
+    public void stageFinished(String stage, int finishedStages, int totalStages) {
+        long nanos = System.nanoTime() - stageStart;
+        long allocated = allocatedAtStart < 0 ? -1 : allocatedBytes() - allocatedAtStart;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage;
+                event.pixels = pixels;
+                event.allocatedBytes = allocated;
+                event.commit();
+            }
+        }
+        MetricsRegistry.global().record(stage, nanos, pixels, allocated);
+        delegate.stageFinished(stage, finishedStages, totalStages);
+        start();
+    }
+
+    /**
+     * Metoda rozpoczyna pomiar kolejnego etapu; zdarzenie JFR jest tworzone tylko wtedy, gdy nagrywanie jest włączone
+     */
+    private void start() {
+        event = EVENT_TYPE.isEnabled() ? new StageEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        allocatedAtStart = allocatedBytes();
+        stageStart = System.nanoTime();
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+        if (!allocationBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationBean;
+    }
+}
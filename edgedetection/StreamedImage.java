@@ -0,0 +1,203 @@
+package edgedetection;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * Obraz w skali szarości, którego wiersze są wyliczane dopiero wtedy, gdy koder ImageIO o nie poprosi.
+ * W pamięci przechowywane są tylko wiersze wyliczone, ale jeszcze nieodczytane, dlatego koder musi czytać
+ * obraz od góry do dołu, co robią m.in. kodery PNG i TIFF z JDK.
+ * @author Aneta Bień, Anna Plęs
+ */
+final class StreamedImage implements RenderedImage {
+
+    /**
+     * Interfejs źródła kolejnych wierszy obrazu
+     */
+    interface RowSource {
+        /**
+         * Metoda wylicza kolejne wiersze obrazu
+         * @return jasności pikseli kolejnych wierszy (być może żadnego) zapisane wierszami lub null po ostatnim wierszu
+         * @throws IOException błąd odczytu danych wejściowych
+         */
+        byte[] nextRows() throws IOException;
+    }
+
+    private final int width;
+    private final int height;
+    private final int tileHeight;
+    private final RowSource source;
+    private byte[] buffer = new byte[0];
+    private int bufferStart;
+    private int bufferRows;
+
+    /**
+     * @param width szerokość obrazu
+     * @param height wysokość obrazu
+     * @param tileHeight wysokość pasa zgłaszana koderom jako wysokość kafelka
+     * @param source źródło wierszy
+     */
+    StreamedImage(int width, int height, int tileHeight, RowSource source) {
+        this.width = width;
+        this.height = height;
+        this.tileHeight = Math.min(tileHeight, height);
+        this.source = source;
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        Rectangle region = rect.intersection(new Rectangle(width, height));
+        if (region.y < bufferStart) {
+            throw new IllegalStateException("Wiersz " + region.y + " został już zapisany, koder musi czytać obraz od góry");
+        }
+        discardRowsBefore(region.y);
+        int end = region.y + region.height;
+        try {
+            while (bufferStart + bufferRows < end) {
+                append(source.nextRows());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] pixels = new byte[region.width * region.height];
+        for (int y = 0; y < region.height; ++y) {
+            System.arraycopy(buffer, (region.y - bufferStart + y) * width + region.x, pixels, y * region.width, region.width);
+        }
+        return Raster.createInterleavedRaster(new DataBufferByte(pixels, pixels.length), region.width, region.height,
+                region.width, 1, new int[]{0}, new Point(region.x, region.y));
+    }
+
+    private void discardRowsBefore(int row) {
+        int count = Math.min(row - bufferStart, bufferRows);
+        System.arraycopy(buffer, count * width, buffer, 0, (bufferRows - count) * width);
+        bufferStart += count;
+        bufferRows -= count;
+    }
+
+    private void append(byte[] rows) {
+        if (rows == null) {
+            throw new IllegalStateException("Źródło zakończyło się przed ostatnim wierszem obrazu");
+        }
+        int count = rows.length / width;
+        if ((bufferRows + count) * width > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (bufferRows + count) * width);
+        }
+        System.arraycopy(rows, 0, buffer, bufferRows * width, rows.length);
+        bufferRows += count;
+    }
+
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(width, height));
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        return getData(new Rectangle(0, tileY * tileHeight, width, tileHeight));
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            raster = getColorModel().createCompatibleWritableRaster(width, height);
+        }
+        raster.setRect(getData(raster.getBounds()));
+        return raster;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return EdgeMap.GRAY_MODEL;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return EdgeMap.GRAY_MODEL.createCompatibleSampleModel(width, tileHeight);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return (height + tileHeight - 1) / tileHeight;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+}
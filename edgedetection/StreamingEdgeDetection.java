@@ -0,0 +1,187 @@
+package edgedetection;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+/**
+ * Klasa wykrywająca krawędzie w obrazach zbyt dużych, aby zmieścić je w pamięci.
+ * Obraz jest czytany poziomymi pasami przez ImageReader (ImageReadParam.setSourceRegion), każdy pas jest
+ * przetwarzany razem z zakładem wierszy sąsiednich wymaganym przez jądra splotu, a wynik jest oddawany koderowi
+ * (patrz {@link EdgeEncoders}) wiersz po wierszu. Zajętość pamięci zależy od szerokości obrazu i wysokości pasa, a nie od pola obrazu.
+ * Dla filtrów masek wynik jest identyczny z {@link EdgeDetection#computeEdges}. Dla algorytmu Canny'ego identyczne są
+ * wszystkie kroki poza histerezą, która śledzi połączenia tylko w oknie wierszy (patrz {@link Hysteresis.Window}).
+ * Czytniki PNG i JPEG nie mają swobodnego dostępu do wierszy i dekodują plik od początku dla każdego pasa,
+ * dlatego dla bardzo dużych obrazów zalecany jest format TIFF.
+ * @author Aneta Bień, Anna Plęs
+ */
+public class StreamingEdgeDetection {
+    /** Domyślna liczba wierszy obrazu przetwarzanych w jednym pasie */
+    public static final int DEFAULT_STRIP_ROWS = 256;
+    /** Domyślna liczba wierszy, o jaką histereza może sięgać w dół obrazu */
+    public static final int DEFAULT_HYSTERESIS_ROWS = 256;
+    private final EdgeDetection edgeDetection = new EdgeDetection();
+    private final String filter;
+    /** Jądro filtru masek pobrane raz z rejestru; null dla algorytmu Canny'ego */
+    private final Kernel kernel;
+    private final double lowerThreshold;
+    private final double higherThreshold;
+    private final int stripRows;
+    private final int hysteresisRows;
+    private final int parallelism;
+
+    /**
+     * Konstruktor ustawiający filtr i progi, z domyślną wysokością pasa i okna histerezy
+     * @param filter nazwa filtru (jedna ze stałych klasy EdgeDetection)
+     * @param lowerThreshold dolny próg algorytmu Canny'ego
+     * @param higherThreshold górny próg algorytmu Canny'ego
+     */
+    public StreamingEdgeDetection(String filter, double lowerThreshold, double higherThreshold) {
+        this(filter, lowerThreshold, higherThreshold, DEFAULT_STRIP_ROWS, DEFAULT_HYSTERESIS_ROWS, 1);
+    }
+
+    /**
+     * Konstruktor ustawiający wszystkie parametry przetwarzania
+     * @param filter nazwa filtru (jedna ze stałych klasy EdgeDetection)
+     * @param lowerThreshold dolny próg algorytmu Canny'ego
+     * @param higherThreshold górny próg algorytmu Canny'ego
+     * @param stripRows liczba wierszy obrazu przetwarzanych w jednym pasie
+     * @param hysteresisRows liczba wierszy, o jaką histereza może sięgać w dół obrazu
+     * @param parallelism liczba kafelków, na które dzielony jest pas
+     */
+    public StreamingEdgeDetection(String filter, double lowerThreshold, double higherThreshold, int stripRows,
+                                  int hysteresisRows, int parallelism) {
+        if (stripRows <= 0 || hysteresisRows <= 0) {
+            throw new IllegalArgumentException("Wysokość pasa i okna histerezy musi być dodatnia");
+        }
+        this.kernel = filter.equals(EdgeDetection.CANNY_EDGE_DETECTION) ? null : edgeDetection.getKernel(filter);
+        this.filter = filter;
+        this.lowerThreshold = lowerThreshold;
+        this.higherThreshold = higherThreshold;
+        this.stripRows = stripRows;
+        this.hysteresisRows = hysteresisRows;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Metoda wykrywa krawędzie w pliku wejściowym i zapisuje wynik do pliku wyjściowego
+     * @param input plik obrazu wejściowego
+     * @param output plik wynikowy, nadpisywany, jeśli istnieje
+     * @param formatName nazwa formatu, którego koder czyta obraz od góry, np. "pgm", "png" lub "tiff"
+     *                   (patrz {@link EdgeEncoders#forName})
+     * @return liczba pikseli obrazu
+     * @throws IOException błąd odczytu, zapisu lub brak czytnika/kodera dla formatu
+     */
+    public long process(File input, File output, String formatName) throws IOException {
+        return process(input, output, EdgeEncoders.forName(formatName));
+    }
+
+    /**
+     * Metoda wykrywa krawędzie w pliku wejściowym i zapisuje wynik do pliku wyjściowego podanym koderem
+     * @param input plik obrazu wejściowego
+     * @param output plik wynikowy, nadpisywany, jeśli istnieje
+     * @param encoder koder czytający obraz od góry, co spełniają wszystkie kodery z {@link EdgeEncoders}
+     *                poza koderami ImageIO formatów z przeplotem
+     * @return liczba pikseli obrazu
+     * @throws IOException błąd odczytu, zapisu lub brak czytnika/kodera dla formatu
+     */
+    public long process(File input, File output, EdgeEncoder encoder) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(input)) {
+            if (in == null) {
+                throw new IOException("Nie można otworzyć pliku " + input);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("nieobsługiwany format obrazu");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                StripSource source = new StripSource(reader);
+                StreamedImage image = new StreamedImage(source.width, source.height, stripRows, source);
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output.toPath()), 1 << 16)) {
+                    encoder.encode(image, out);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                return (long) source.width * source.height;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Źródło wierszy mapy krawędzi czytające obraz kolejnymi pasami
+     */
+    private final class StripSource implements StreamedImage.RowSource {
+        private final ImageReader reader;
+        private final int width;
+        private final int height;
+        private final int halo;
+        private final Canny canny;
+        private final Hysteresis.Window window;
+        private int nextRow;
+
+        StripSource(ImageReader reader) throws IOException {
+            this.reader = reader;
+            this.width = reader.getWidth(0);
+            this.height = reader.getHeight(0);
+            boolean isCanny = filter.equals(EdgeDetection.CANNY_EDGE_DETECTION);
+            this.halo = isCanny ? Canny.TOTAL_HALO : kernel.getHeight() / 2;
+            this.canny = isCanny ? new Canny(lowerThreshold, higherThreshold) : null;
+            this.window = isCanny ? new Hysteresis.Window(width, hysteresisRows) : null;
+        }
+
+        @Override
+        public byte[] nextRows() throws IOException {
+            if (nextRow >= height) {
+                return null;
+            }
+            int fromRow = nextRow;
+            int toRow = Math.min(fromRow + stripRows, height);
+            int readFrom = Math.max(fromRow - halo, 0);
+            int readTo = Math.min(toRow + halo, height);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, readFrom, width, readTo - readFrom));
+            BufferedImage strip = reader.read(0, param);
+            nextRow = toRow;
+            int skip = fromRow - readFrom;
+            int rows = toRow - fromRow;
+            Workspace workspace = Workspace.acquire();
+            try {
+                if (canny == null) {
+                    PixelPlane channelSum = edgeDetection.transformImageToSum(strip, workspace);
+                    PixelPlane mixed = edgeDetection.applyMix(channelSum, kernel, parallelism, workspace);
+                    float[] data = mixed.getData();
+                    byte[] core = new byte[rows * width];
+                    for (int y = 0; y < rows; ++y) {
+                        int source = mixed.index(0, skip + y);
+                        for (int x = 0; x < width; ++x) {
+                            core[y * width + x] = (byte) ImageConverter.toByte(data[source + x]);
+                        }
+                    }
+                    return core;
+                }
+                PixelPlane gray = workspace.plane(Workspace.Slot.GRAY, width, readTo - readFrom);
+                ImageConverter.toGrayscale(strip, gray, 0, gray.getHeight());
+                byte[] flags = workspace.bytes(Workspace.Slot.STRENGTH_FLAGS, gray.getWidth() * gray.getHeight());
+                canny.computeStrengthFlags(gray, flags, parallelism, workspace);
+                window.append(flags, skip, rows);
+                return window.release(toRow == height);
+            } finally {
+                workspace.release();
+            }
+        }
+    }
+}
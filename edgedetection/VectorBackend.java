@@ -0,0 +1,75 @@
+package edgedetection;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementacja pętli splotu na wektorach FloatVector z modułu jdk.incubator.vector,
+ * przetwarzająca jednocześnie tyle pikseli, ile mieści rejestr procesora (8 dla AVX2, 16 dla AVX-512).
+ * Klasa jest ładowana tylko wtedy, gdy moduł jest dostępny (patrz {@link ConvolutionBackends}).
+ * @author Aneta Bień, Anna Plęs
+ */
+final class VectorBackend implements ConvolutionBackend {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private final ScalarBackend tail = new ScalarBackend();
+
+    @Override
+    public void convolveRow(float[] source, int sourceOffset, float[] kernel, float[] target, int targetOffset, int count) {
+        int bound = SPECIES.loopBound(count);
+        int n = 0;
+        for (; n < bound; n += SPECIES.length()) {
+            FloatVector sum = FloatVector.zero(SPECIES);
+            for (int i = 0; i < kernel.length; ++i) {
+                sum = sum.add(FloatVector.fromArray(SPECIES, source, sourceOffset + n + i).mul(kernel[i]));
+            }
+            sum.intoArray(target, targetOffset + n);
+        }
+        tail.convolveRow(source, sourceOffset + n, kernel, target, targetOffset + n, count - n);
+    }
+
+    @Override
+    public void scaleRow(float[] source, int sourceOffset, float weight, float[] target, int targetOffset, int count) {
+        int bound = SPECIES.loopBound(count);
+        int n = 0;
+        for (; n < bound; n += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, source, sourceOffset + n).mul(weight).intoArray(target, targetOffset + n);
+        }
+        tail.scaleRow(source, sourceOffset + n, weight, target, targetOffset + n, count - n);
+    }
+
+    @Override
+    public void accumulateRow(float[] source, int sourceOffset, float weight, float[] target, int targetOffset, int count) {
+        int bound = SPECIES.loopBound(count);
+        int n = 0;
+        for (; n < bound; n += SPECIES.length()) {
+            FloatVector product = FloatVector.fromArray(SPECIES, source, sourceOffset + n).mul(weight);
+            FloatVector.fromArray(SPECIES, target, targetOffset + n).add(product).intoArray(target, targetOffset + n);
+        }
+        tail.accumulateRow(source, sourceOffset + n, weight, target, targetOffset + n, count - n);
+    }
+
+    @Override
+    public void sobelRow(float[] source, int up, int middle, int down, float[] gx, float[] gy,
+                         float[] magnitude, int magnitudeOffset, int fromX, int toX) {
+        int bound = fromX + SPECIES.loopBound(toX - fromX);
+        int x = fromX;
+        for (; x < bound; x += SPECIES.length()) {
+            FloatVector topLeft = FloatVector.fromArray(SPECIES, source, up + x - 1);
+            FloatVector top = FloatVector.fromArray(SPECIES, source, up + x);
+            FloatVector topRight = FloatVector.fromArray(SPECIES, source, up + x + 1);
+            FloatVector midLeft = FloatVector.fromArray(SPECIES, source, middle + x - 1);
+            FloatVector midRight = FloatVector.fromArray(SPECIES, source, middle + x + 1);
+            FloatVector bottomLeft = FloatVector.fromArray(SPECIES, source, down + x - 1);
+            FloatVector bottom = FloatVector.fromArray(SPECIES, source, down + x);
+            FloatVector bottomRight = FloatVector.fromArray(SPECIES, source, down + x + 1);
+            FloatVector horizontal = topRight.add(midRight.mul(2f)).add(bottomRight)
+                    .sub(topLeft.add(midLeft.mul(2f)).add(bottomLeft));
+            FloatVector vertical = bottomLeft.add(bottom.mul(2f)).add(bottomRight)
+                    .sub(topLeft.add(top.mul(2f)).add(topRight));
+            horizontal.intoArray(gx, x);
+            vertical.intoArray(gy, x);
+            horizontal.mul(horizontal).add(vertical.mul(vertical)).sqrt().intoArray(magnitude, magnitudeOffset + x);
+        }
+        tail.sobelRow(source, up, middle, down, gx, gy, magnitude, magnitudeOffset, x, toX);
+    }
+}
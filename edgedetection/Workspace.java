@@ -0,0 +1,223 @@
+package edgedetection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Klasa przechowująca bufory robocze etapów przetwarzania, używane ponownie przy kolejnych obrazach.
+ * Każdy wątek ma własny obszar roboczy, więc bufory nie wymagają synchronizacji. Bufor jest wydawany dla nazwanego
+ * miejsca ({@link Slot}) i tworzony od nowa tylko wtedy, gdy jest za mały, dlatego po pierwszym obrazie kolejne obrazy
+ * tego samego lub mniejszego rozmiaru nie alokują pamięci na płaszczyzny pośrednie.
+ * Bufory nie są zerowane przy wydaniu - każdy etap nadpisuje cały swój wynik. Tablice różnych typów są przechowywane
+ * osobno, więc arytmetyka stałoprzecinkowa algorytmu Canny'ego używa tych samych miejsc co zmiennoprzecinkowa.
+ * <p>
+ * Obszary robocze wątków puli ForkJoin (bufory wydawane przez {@link #current()}) żyją tak długo jak wątki puli.
+ * Ich bufory mają rozmiar kilku wierszy obrazu, a stos zalewania histerezy jest po każdym zalewaniu zmniejszany
+ * do {@link Hysteresis.IntStack#RETAINED_CAPACITY} elementów, więc bufory całego obrazu nie są w nich przechowywane.
+ * Metoda {@link #clear()} zwalnia obszar bieżącego wątku, a {@link #clearAll()} obszary wszystkich wątków.
+ * @author Aneta Bień, Anna Plęs
+ */
+public final class Workspace {
+
+    /**
+     * Miejsca na bufory robocze; każde miejsce przechowuje jeden bufor
+     */
+    enum Slot {
+        /** Obraz w skali szarości */
+        GRAY,
+        /** Wynik przebiegu poziomego splotu separowalnego */
+        CONVOLUTION_TEMP,
+        /** Obraz po rozmyciu Gaussa */
+        DENOISED,
+        /** Natężenie gradientu */
+        MAGNITUDE,
+        /** Kody kierunków gradientu */
+        DIRECTION,
+        /** Natężenie gradientu po pocienianiu krawędzi */
+        SUPPRESSED,
+        /** Flagi siły pikseli przetwarzanego pasa */
+        STRENGTH_FLAGS,
+        /** Suma składowych R + G + B obrazu */
+        CHANNEL_SUM,
+        /** Splot sumy składowych z maską */
+        MASK_MIX,
+        /** Wiersz gradientu w osi x */
+        GRADIENT_X,
+        /** Wiersz gradientu w osi y */
+        GRADIENT_Y,
+        /** Sumy wiersza wyniku dla kolejnych masek filtru wielomaskowego */
+        FILTER_ROWS,
+        /** Kwadraty natężenia i kierunki gradientu trzech kolejnych wierszy w arytmetyce stałoprzecinkowej */
+        GRADIENT_ROWS,
+        /** Sumy par wierszy sąsiedztwa rozmycia Gaussa w arytmetyce stałoprzecinkowej */
+        BLUR_ROWS
+    }
+
+    private static final ThreadLocal<Workspace> CURRENT = ThreadLocal.withInitial(Workspace::new);
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+    private final int generation = GENERATION.get();
+    private final PixelPlane[] planes = new PixelPlane[Slot.values().length];
+    private final float[][] floats = new float[Slot.values().length][];
+    private final byte[][] bytes = new byte[Slot.values().length][];
+    private final short[][] shorts = new short[Slot.values().length][];
+    private final int[][] ints = new int[Slot.values().length][];
+    private final long[][] longs = new long[Slot.values().length][];
+    private final Hysteresis.IntStack stack = new Hysteresis.IntStack();
+    private boolean inUse;
+
+    Workspace() {
+    }
+
+    /**
+     * Metoda zwalnia bufory obszaru roboczego bieżącego wątku, np. po zakończeniu przetwarzania dużych obrazów
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Metoda zwalnia bufory obszarów roboczych wszystkich wątków, również wątków puli ForkJoin. Obszar roboczy innego
+     * wątku jest zastępowany nowym przy jego następnym użyciu, więc bufory wypożyczone w chwili wywołania nie są
+     * odbierane trwającemu przetwarzaniu.
+     */
+    public static void clearAll() {
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Metoda wypożycza obszar roboczy bieżącego wątku na czas przetwarzania jednego obrazu; należy go oddać metodą
+     * {@link #release()}. Jeśli obszar jest już wypożyczony, bo przetwarzanie zostało wywołane ponownie w tym samym
+     * wątku (np. w zadaniu ForkJoin czekającym na inne zadanie), zwracany jest nowy, jednorazowy obszar.
+     * @return obszar roboczy do wyłącznego użytku wywołującego
+     */
+    static Workspace acquire() {
+        Workspace workspace = current();
+        if (workspace.inUse) {
+            workspace = new Workspace();
+        }
+        workspace.inUse = true;
+        return workspace;
+    }
+
+    /**
+     * Metoda zwraca obszar roboczy bieżącego wątku bez wypożyczania, do buforów używanych tylko wewnątrz jednego
+     * kafelka wierszy (miejsca {@link Slot#GRADIENT_X}, {@link Slot#GRADIENT_Y}, {@link Slot#FILTER_ROWS},
+     * {@link Slot#GRADIENT_ROWS}, {@link Slot#BLUR_ROWS} i {@link #stack()}).
+     * Przetwarzanie kafelka nie czeka na inne zadania, więc dwa kafelki nie korzystają z nich jednocześnie w jednym wątku.
+     * @return obszar roboczy bieżącego wątku
+     */
+    static Workspace current() {
+        Workspace workspace = CURRENT.get();
+        if (workspace.generation != GENERATION.get() && !workspace.inUse) {
+            workspace = new Workspace();
+            CURRENT.set(workspace);
+        }
+        return workspace;
+    }
+
+    /**
+     * Metoda oddaje obszar roboczy wypożyczony metodą {@link #acquire()}
+     */
+    void release() {
+        inUse = false;
+    }
+
+    /**
+     * Metoda wydaje płaszczyznę o podanych rozmiarach z danego miejsca
+     * @param slot miejsce bufora
+     * @param width szerokość płaszczyzny
+     * @param height wysokość płaszczyzny
+     * @return płaszczyzna z wierszami zapisanymi bez przerw, o nieokreślonej zawartości
+     */
+    PixelPlane plane(Slot slot, int width, int height) {
+        PixelPlane plane = planes[slot.ordinal()];
+        if (plane == null || plane.getWidth() != width || plane.getHeight() != height) {
+            plane = new PixelPlane(width, height, width, floats(slot, Math.multiplyExact(width, height)));
+            planes[slot.ordinal()] = plane;
+        }
+        return plane;
+    }
+
+    /**
+     * Metoda wydaje tablicę liczb typu float z danego miejsca
+     * @param slot miejsce bufora
+     * @param length minimalna długość tablicy
+     * @return tablica o długości co najmniej length, o nieokreślonej zawartości
+     */
+    float[] floats(Slot slot, int length) {
+        float[] values = floats[slot.ordinal()];
+        if (values == null || values.length < length) {
+            values = new float[length];
+            floats[slot.ordinal()] = values;
+            planes[slot.ordinal()] = null;
+        }
+        return values;
+    }
+
+    /**
+     * Metoda wydaje tablicę bajtów z danego miejsca
+     * @param slot miejsce bufora
+     * @param length minimalna długość tablicy
+     * @return tablica o długości co najmniej length, o nieokreślonej zawartości
+     */
+    byte[] bytes(Slot slot, int length) {
+        byte[] values = bytes[slot.ordinal()];
+        if (values == null || values.length < length) {
+            values = new byte[length];
+            bytes[slot.ordinal()] = values;
+        }
+        return values;
+    }
+
+    /**
+     * Metoda wydaje tablicę liczb typu short z danego miejsca
+     * @param slot miejsce bufora
+     * @param length minimalna długość tablicy
+     * @return tablica o długości co najmniej length, o nieokreślonej zawartości
+     */
+    short[] shorts(Slot slot, int length) {
+        short[] values = shorts[slot.ordinal()];
+        if (values == null || values.length < length) {
+            values = new short[length];
+            shorts[slot.ordinal()] = values;
+        }
+        return values;
+    }
+
+    /**
+     * Metoda wydaje tablicę liczb typu int z danego miejsca
+     * @param slot miejsce bufora
+     * @param length minimalna długość tablicy
+     * @return tablica o długości co najmniej length, o nieokreślonej zawartości
+     */
+    int[] ints(Slot slot, int length) {
+        int[] values = ints[slot.ordinal()];
+        if (values == null || values.length < length) {
+            values = new int[length];
+            ints[slot.ordinal()] = values;
+        }
+        return values;
+    }
+
+    /**
+     * Metoda wydaje tablicę liczb typu long z danego miejsca
+     * @param slot miejsce bufora
+     * @param length minimalna długość tablicy
+     * @return tablica o długości co najmniej length, o nieokreślonej zawartości
+     */
+    long[] longs(Slot slot, int length) {
+        long[] values = longs[slot.ordinal()];
+        if (values == null || values.length < length) {
+            values = new long[length];
+            longs[slot.ordinal()] = values;
+        }
+        return values;
+    }
+
+    /**
+     * Metoda zwraca stos zalewania histerezy; po każdym zalewaniu stos jest pusty
+     * @return stos liczb całkowitych
+     */
+    Hysteresis.IntStack stack() {
+        return stack;
+    }
+}
@@ -0,0 +1,45 @@
+package edgedetection;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Testy wyznaczania nazw plików wynikowych przetwarzania wsadowego
+ * @author Aneta Bień, Anna Plęs
+ */
+class BatchProcessorTest {
+
+    @Test
+    void singleFileKeepsNameWithoutExtension() {
+        Path input = Paths.get("input", "x.png");
+        assertEquals(Collections.singletonMap(input, "x"),
+                BatchProcessor.outputNames(Collections.singletonList(input)));
+    }
+
+    @Test
+    void sameNameInDifferentDirectoriesKeepsDirectories() {
+        Path first = Paths.get("input", "a", "x.png");
+        Path second = Paths.get("input", "b", "x.png");
+        Map<Path, String> names = BatchProcessor.outputNames(Arrays.asList(first, second));
+        assertEquals("a/x", names.get(first));
+        assertEquals("b/x", names.get(second));
+    }
+
+    @Test
+    void sameNameWithDifferentExtensionsKeepsExtensions() {
+        Path jpg = Paths.get("input", "x.jpg");
+        Path png = Paths.get("input", "x.png");
+        Path other = Paths.get("input", "y.png");
+        Map<Path, String> names = BatchProcessor.outputNames(Arrays.asList(jpg, png, other));
+        assertEquals("x.jpg", names.get(jpg));
+        assertEquals("x.png", names.get(png));
+        assertEquals("y", names.get(other));
+    }
+}
@@ -0,0 +1,28 @@
+package edgedetection;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testy równoważności przetwarzania sekwencji klatek i przeliczania każdej klatki od nowa
+ * @author Aneta Bień, Anna Plęs
+ */
+class CannySequenceTest {
+
+    @Test
+    void zeroChangeThresholdEqualsComputeEdges() {
+        Canny canny = new Canny(EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD);
+        for (int tileSize : new int[]{CannySequence.DEFAULT_TILE_SIZE, 16, 7}) {
+            CannySequence sequence = new CannySequence(EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD,
+                    tileSize, 0, 2);
+            BufferedImage frame = TestImages.create(1L);
+            EdgeMap reuse = null;
+            for (int i = 0; i < 6; ++i) {
+                reuse = sequence.next(frame, reuse);
+                TestImages.assertSameEdges(canny.computeEdges(frame, 1), reuse, "kafelek " + tileSize + ", klatka " + i);
+                frame = i == 3 ? TestImages.create(2L) : TestImages.nextFrame(frame, i);
+            }
+        }
+    }
+}
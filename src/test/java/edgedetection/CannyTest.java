@@ -0,0 +1,91 @@
+package edgedetection;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Testy algorytmu Canny'ego
+ * @author Aneta Bień, Anna Plęs
+ */
+class CannyTest {
+    /** Znaki składowych gradientu: wszystkie cztery ćwiartki */
+    private static final int[][] SIGNS = {{1, 1}, {-1, 1}, {1, -1}, {-1, -1}};
+    /** Pary progów: domyślne, niskie (wiele pikseli słabych) i wysokie */
+    private static final double[][] THRESHOLDS = {
+            {EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD},
+            {2, 10},
+            {60, 150}
+    };
+
+    @Test
+    void directionIsQuantizedAtSectorBoundaries() {
+        // tg(22,5°) * 1000 = 414,2...; tg(67,5°) * 1000 = 2414,2...
+        for (int[] sign : SIGNS) {
+            byte diagonal = sign[0] == sign[1] ? Canny.DIRECTION_45 : Canny.DIRECTION_135;
+            assertDirection(Canny.DIRECTION_0, sign[0] * 1000, sign[1] * 414);
+            assertDirection(diagonal, sign[0] * 1000, sign[1] * 415);
+            assertDirection(diagonal, sign[0] * 1000, sign[1] * 2414);
+            assertDirection(Canny.DIRECTION_90, sign[0] * 1000, sign[1] * 2415);
+        }
+    }
+
+    @Test
+    void directionOnAxes() {
+        assertDirection(Canny.DIRECTION_0, 0, 0);
+        assertDirection(Canny.DIRECTION_0, 7, 0);
+        assertDirection(Canny.DIRECTION_0, -7, 0);
+        assertDirection(Canny.DIRECTION_90, 0, 7);
+        assertDirection(Canny.DIRECTION_90, 0, -7);
+    }
+
+    @Test
+    void floatBoundariesBelongToAxisSectors() {
+        float tan22 = (float) Math.tan(Math.toRadians(22.5));
+        float tan67 = (float) Math.tan(Math.toRadians(67.5));
+        for (int[] sign : SIGNS) {
+            byte diagonal = sign[0] == sign[1] ? Canny.DIRECTION_45 : Canny.DIRECTION_135;
+            assertEquals(Canny.DIRECTION_0, Canny.quantizeDirection(sign[0], sign[1] * tan22));
+            assertEquals(diagonal, Canny.quantizeDirection(sign[0], sign[1] * Math.nextUp(tan22)));
+            assertEquals(diagonal, Canny.quantizeDirection(sign[0], sign[1] * Math.nextDown(tan67)));
+            assertEquals(Canny.DIRECTION_90, Canny.quantizeDirection(sign[0], sign[1] * tan67));
+        }
+    }
+
+    @Test
+    void fixedPointDirectionEqualsFloatDirection() {
+        for (int gx = -60; gx <= 60; ++gx) {
+            for (int gy = -60; gy <= 60; ++gy) {
+                assertEquals(Canny.quantizeDirection(gx, gy), FixedPointCanny.quantizeDirection(gx, gy),
+                        "gx = " + gx + ", gy = " + gy);
+            }
+        }
+    }
+
+    @Test
+    void fixedPointOutputEqualsFloatOutput() {
+        for (long seed = 1; seed <= 3; ++seed) {
+            BufferedImage image = TestImages.create(seed);
+            for (double[] thresholds : THRESHOLDS) {
+                Canny floatCanny = new Canny(thresholds[0], thresholds[1], Canny.Arithmetic.FLOAT);
+                Canny fixedPointCanny = new Canny(thresholds[0], thresholds[1], Canny.Arithmetic.FIXED_POINT);
+                EdgeMap expected = floatCanny.computeEdges(image, 1);
+                for (int parallelism : new int[]{1, 4}) {
+                    TestImages.assertSameEdges(expected, fixedPointCanny.computeEdges(image, parallelism),
+                            "obraz " + seed + ", progi " + thresholds[0] + "/" + thresholds[1] + ", równolegle " + parallelism);
+                }
+            }
+        }
+    }
+
+    /**
+     * Metoda sprawdza kod kierunku zwracany dla tego samego gradientu w arytmetyce zmiennoprzecinkowej i całkowitej
+     */
+    private static void assertDirection(byte expected, int gx, int gy) {
+        String message = "gx = " + gx + ", gy = " + gy;
+        assertEquals(expected, Canny.quantizeDirection((float) gx, (float) gy), message);
+        assertEquals(expected, FixedPointCanny.quantizeDirection(gx, gy), message);
+    }
+}
@@ -0,0 +1,97 @@
+package edgedetection;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Testy równoważności ścieżek obliczeń klasy EdgeDetection: równoległej i szeregowej, obszarów zainteresowania
+ * i całego obrazu oraz wielu filtrów naraz i pojedynczych filtrów
+ * @author Aneta Bień, Anna Plęs
+ */
+class EdgeDetectionTest {
+    private static final BufferedImage IMAGE = TestImages.create(1L);
+    /** Obszary wewnątrz obrazu, przy jego brzegach i częściowo poza nim */
+    private static final List<Rectangle> REGIONS = List.of(
+            new Rectangle(40, 30, 50, 40),
+            new Rectangle(0, 0, 20, 15),
+            new Rectangle(TestImages.WIDTH - 33, TestImages.HEIGHT - 17, 33, 17),
+            new Rectangle(-10, 50, 30, 200),
+            new Rectangle(70, 0, 1, TestImages.HEIGHT));
+
+    private final EdgeDetection edgeDetection = new EdgeDetection();
+
+    @Test
+    void parallelOutputEqualsSerialOutput() {
+        for (String filter : allFilters()) {
+            EdgeMap serial = compute(filter, 1);
+            for (int parallelism : new int[]{2, 3, 4, 7}) {
+                TestImages.assertSameEdges(serial, compute(filter, parallelism), filter + ", równolegle " + parallelism);
+            }
+        }
+    }
+
+    @Test
+    void regionOutputEqualsCropOfFullImage() {
+        Rectangle bounds = new Rectangle(TestImages.WIDTH, TestImages.HEIGHT);
+        for (String filter : allFilters()) {
+            EdgeMap full = compute(filter, 1);
+            List<EdgeMap> regions = edgeDetection.computeEdges(IMAGE, REGIONS, filter, EdgeDetection.LOWER_THRESHOLD,
+                    EdgeDetection.HIGHER_THRESHOLD, 2);
+            assertEquals(REGIONS.size(), regions.size());
+            for (int i = 0; i < REGIONS.size(); ++i) {
+                TestImages.assertSameEdges(TestImages.crop(full, REGIONS.get(i).intersection(bounds)), regions.get(i),
+                        filter + ", obszar " + REGIONS.get(i));
+            }
+        }
+    }
+
+    @Test
+    void multiFilterOutputEqualsSingleFilterOutput() {
+        List<String> filters = edgeDetection.getFilterRegistry().getNames();
+        for (int parallelism : new int[]{1, 4}) {
+            Map<String, EdgeMap> multi = edgeDetection.computeEdges(IMAGE, filters, parallelism);
+            assertEquals(filters, new ArrayList<>(multi.keySet()));
+            for (String filter : filters) {
+                EdgeMap single = compute(filter, 1);
+                if (edgeDetection.getKernel(filter).getIntegerWeights() != null) {
+                    TestImages.assertSameEdges(single, multi.get(filter), filter + ", wiele filtrów");
+                } else {
+                    assertWithinOneLevel(single, multi.get(filter), filter + ", wiele filtrów");
+                }
+            }
+        }
+    }
+
+    private List<String> allFilters() {
+        List<String> filters = new ArrayList<>(edgeDetection.getFilterRegistry().getNames());
+        filters.add(EdgeDetection.CANNY_EDGE_DETECTION);
+        return filters;
+    }
+
+    private EdgeMap compute(String filter, int parallelism) {
+        return edgeDetection.computeEdges(IMAGE, filter, EdgeDetection.LOWER_THRESHOLD, EdgeDetection.HIGHER_THRESHOLD,
+                parallelism);
+    }
+
+    /**
+     * Filtry o wagach niecałkowitych mogą się różnić o jeden poziom jasności, bo sumy zależą od kolejności dodawania
+     */
+    private static void assertWithinOneLevel(EdgeMap expected, EdgeMap actual, String message) {
+        assertEquals(expected.getWidth(), actual.getWidth(), message + ": szerokość");
+        assertEquals(expected.getHeight(), actual.getHeight(), message + ": wysokość");
+        byte[] expectedPixels = expected.getPixels();
+        byte[] actualPixels = actual.getPixels();
+        for (int i = 0; i < expectedPixels.length; ++i) {
+            int difference = Math.abs((expectedPixels[i] & 0xFF) - (actualPixels[i] & 0xFF));
+            assertTrue(difference <= 1, message + ": piksel " + i + " różni się o " + difference);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package edgedetection;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Testy koderów map krawędzi i asynchronicznego zapisu
+ * @author Aneta Bień, Anna Plęs
+ */
+class EdgeEncodersTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void pgmHasHeaderAndRawPixels() throws IOException {
+        byte[] pixels = {0, (byte) 255, 7, (byte) 128, 1, 2};
+        EdgeMap edges = new EdgeMap(3, 2, pixels);
+        assertArrayEquals(concat("P5\n3 2\n255\n", pixels), encode(EdgeEncoders.pgm(), edges.toImage()));
+    }
+
+    @Test
+    void pbmRowsArePaddedToWholeBytes() throws IOException {
+        int width = 10;
+        byte[] pixels = new byte[2 * width];
+        for (int x = 1; x < width - 1; ++x) {
+            pixels[x] = (byte) 255;
+        }
+        pixels[3] = (byte) EdgeEncoders.PACKED_BITS_THRESHOLD;
+        pixels[4] = (byte) (EdgeEncoders.PACKED_BITS_THRESHOLD - 1);
+        // bit 1 oznacza piksel czarny; dopełnienie ostatniego bajtu wiersza jest zerowe
+        byte[] expected = concat("P4\n10 2\n", new byte[]{(byte) 0x88, 0x40, (byte) 0xFF, (byte) 0xC0});
+        EdgeMap edges = new EdgeMap(width, 2, pixels);
+        assertArrayEquals(expected, encode(EdgeEncoders.packedBits(), edges.toImage()));
+        // obraz, którego bufor nie jest oddawany w całości, jest czytany pasami
+        BufferedImage padded = new BufferedImage(width + 3, 4, BufferedImage.TYPE_BYTE_GRAY);
+        padded.getRaster().setDataElements(2, 1, width, 2, pixels);
+        assertArrayEquals(expected, encode(EdgeEncoders.packedBits(), padded.getSubimage(2, 1, width, 2)));
+    }
+
+    @Test
+    void asyncSinkReportsWriteErrors() {
+        EdgeEncoder failing = new EdgeEncoder() {
+            @Override
+            public String getExtension() {
+                return "pgm";
+            }
+
+            @Override
+            public void encode(RenderedImage image, OutputStream out) throws IOException {
+                throw new IOException("błąd zapisu");
+            }
+        };
+        EdgeMap edges = new EdgeMap(2, 2, new byte[4]);
+        try (AsyncEdgeSink sink = new AsyncEdgeSink(new ImageFileSink(directory.toFile(), failing), 1, 1)) {
+            // miejsce w kolejce jest zwalniane także po błędzie, więc kolejne zapisy nie czekają w nieskończoność
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                for (int i = 0; i < 3; ++i) {
+                    CompletableFuture<File> result = sink.submit(edges, "mapa" + i);
+                    ExecutionException error = assertThrows(ExecutionException.class, result::get);
+                    assertEquals(UncheckedIOException.class, error.getCause().getClass());
+                    assertEquals("błąd zapisu", error.getCause().getCause().getMessage());
+                }
+            });
+        }
+    }
+
+    private static byte[] encode(EdgeEncoder encoder, RenderedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(image, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(String header, byte[] data) {
+        byte[] bytes = header.getBytes(StandardCharsets.US_ASCII);
+        byte[] result = new byte[bytes.length + data.length];
+        System.arraycopy(bytes, 0, result, 0, bytes.length);
+        System.arraycopy(data, 0, result, bytes.length, data.length);
+        return result;
+    }
+}
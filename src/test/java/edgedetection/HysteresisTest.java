@@ -0,0 +1,65 @@
+package edgedetection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Testy śledzenia krawędzi z histerezą
+ * @author Aneta Bień, Anna Plęs
+ */
+class HysteresisTest {
+
+    @Test
+    void weakChainLongerThanOnePixelIsConnected() {
+        int width = 12;
+        int height = 5;
+        byte[] flags = new byte[width * height];
+        byte[] expected = new byte[width * height];
+        set(flags, expected, width, 1, 2, Hysteresis.STRONG, true);
+        int[][] chain = {{2, 2}, {3, 1}, {4, 1}, {5, 2}, {6, 3}, {7, 3}, {8, 3}, {9, 4}};
+        for (int[] pixel : chain) {
+            set(flags, expected, width, pixel[0], pixel[1], Hysteresis.WEAK, true);
+        }
+        set(flags, expected, width, 11, 0, Hysteresis.WEAK, false);
+        set(flags, expected, width, 11, 1, Hysteresis.WEAK, false);
+        Hysteresis.track(flags, width, height, 1);
+        assertArrayEquals(expected, flags);
+    }
+
+    @Test
+    void chainsCrossingTileBordersAreMerged() {
+        int width = 10;
+        int height = 4 * RowTiles.MIN_TILE_ROWS;
+        byte[] expected = new byte[width * height];
+        byte[] flags = new byte[width * height];
+        // łańcuch od silnego piksela w ostatnim wierszu w górę do pierwszego wiersza i z powrotem w dół
+        set(flags, expected, width, 8, height - 1, Hysteresis.STRONG, true);
+        for (int y = 0; y < height - 1; ++y) {
+            set(flags, expected, width, 8, y, Hysteresis.WEAK, true);
+            set(flags, expected, width, 1, y + 1, Hysteresis.WEAK, true);
+        }
+        for (int x = 1; x < 8; ++x) {
+            set(flags, expected, width, x, 0, Hysteresis.WEAK, true);
+        }
+        // łańcuch przechodzący przez granice kafelków, ale bez silnego piksela
+        for (int y = 5; y < height - 5; ++y) {
+            set(flags, expected, width, 4, y, Hysteresis.WEAK, false);
+        }
+        assertEquals(4, RowTiles.tileCount(height, 4));
+        for (int parallelism : new int[]{1, 2, 4}) {
+            byte[] tracked = flags.clone();
+            Hysteresis.track(tracked, width, height, parallelism);
+            assertArrayEquals(expected, tracked, "równolegle " + parallelism);
+        }
+    }
+
+    /**
+     * Metoda ustawia flagę piksela oraz jego oczekiwaną jasność po histerezie
+     */
+    private static void set(byte[] flags, byte[] expected, int width, int x, int y, byte flag, boolean edge) {
+        flags[y * width + x] = flag;
+        expected[y * width + x] = edge ? Hysteresis.STRONG : Hysteresis.NONE;
+    }
+}
@@ -0,0 +1,69 @@
+package edgedetection;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Testy rozmiarów i wartości poziomów piramidy obrazu
+ * @author Aneta Bień, Anna Plęs
+ */
+class ImagePyramidTest {
+
+    @Test
+    void oddSizesAreRoundedUp() {
+        ImagePyramid pyramid = new ImagePyramid(new BufferedImage(7, 5, BufferedImage.TYPE_INT_RGB), 5, 1);
+        int[][] sizes = {{7, 5}, {4, 3}, {2, 2}, {1, 1}, {1, 1}};
+        assertEquals(sizes.length, pyramid.getLevelCount());
+        for (int level = 0; level < sizes.length; ++level) {
+            PixelPlane plane = pyramid.getLevel(level);
+            assertArrayEquals(sizes[level], new int[]{plane.getWidth(), plane.getHeight()}, "poziom " + level);
+        }
+    }
+
+    @Test
+    void defaultLevelsOfTestImage() {
+        ImagePyramid pyramid = new ImagePyramid(TestImages.create(1L));
+        assertEquals(ImagePyramid.DEFAULT_LEVELS, pyramid.getLevelCount());
+        for (int level = 0; level < ImagePyramid.DEFAULT_LEVELS; ++level) {
+            assertEquals(TestImages.WIDTH >> level, pyramid.getLevel(level).getWidth(), "poziom " + level);
+            assertEquals(TestImages.HEIGHT >> level, pyramid.getLevel(level).getHeight(), "poziom " + level);
+        }
+    }
+
+    @Test
+    void uniformImageStaysUniform() {
+        BufferedImage image = new BufferedImage(33, 17, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(90, 90, 90));
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.dispose();
+        ImagePyramid pyramid = new ImagePyramid(image, 4, 2);
+        for (int level = 0; level < pyramid.getLevelCount(); ++level) {
+            PixelPlane plane = pyramid.getLevel(level);
+            for (int y = 0; y < plane.getHeight(); ++y) {
+                for (int x = 0; x < plane.getWidth(); ++x) {
+                    assertEquals(90, plane.getData()[plane.index(x, y)], 1e-3f, "poziom " + level);
+                }
+            }
+        }
+    }
+
+    @Test
+    void expandRestoresFullSize() {
+        ImagePyramid pyramid = new ImagePyramid(new BufferedImage(7, 5, BufferedImage.TYPE_INT_RGB), 3, 1);
+        byte[] pixels = {1, 2, 3, 4};
+        EdgeMap expanded = pyramid.expand(new EdgeMap(2, 2, pixels), 2);
+        assertEquals(7, expanded.getWidth());
+        assertEquals(5, expanded.getHeight());
+        assertEquals(1, expanded.getPixels()[3 * 7 + 3]);
+        assertEquals(2, expanded.getPixels()[3 * 7 + 4]);
+        assertEquals(3, expanded.getPixels()[4 * 7 + 3]);
+        assertEquals(4, expanded.getPixels()[4 * 7 + 6]);
+    }
+}
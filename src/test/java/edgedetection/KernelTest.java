@@ -0,0 +1,138 @@
+package edgedetection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Testy rozkładu jąder splotu na czynniki separowalne
+ * @author Aneta Bień, Anna Plęs
+ */
+class KernelTest {
+    private final FilterRegistry registry = FilterRegistry.standard();
+
+    @Test
+    void scharrFactorsAreIntegers() {
+        Kernel vertical = registry.get(EdgeDetection.SCHARR_VERTICAL);
+        assertEquals(1, vertical.getRank());
+        assertArrayEquals(new float[]{1, 0, -1}, vertical.getHorizontal(0));
+        assertArrayEquals(new float[]{3, 10, 3}, vertical.getVertical(0));
+        Kernel horizontal = registry.get(EdgeDetection.SCHARR_HORIZONTAL);
+        assertEquals(1, horizontal.getRank());
+        assertArrayEquals(new float[]{3, 10, 3}, horizontal.getHorizontal(0));
+        assertArrayEquals(new float[]{1, 0, -1}, horizontal.getVertical(0));
+    }
+
+    @Test
+    void integerFactorsReproduceIntegerWeights() {
+        for (String name : registry.getNames()) {
+            Kernel kernel = registry.get(name);
+            if (kernel.getIntegerWeights() == null) {
+                continue;
+            }
+            Kernel integerKernel = kernel.getIntegerKernel();
+            assertNotNull(integerKernel, name);
+            for (int factor = 0; factor < integerKernel.getRank(); ++factor) {
+                assertIntegers(integerKernel.getHorizontal(factor), name);
+                assertIntegers(integerKernel.getVertical(factor), name);
+            }
+            float[] expected = new float[kernel.getIntegerWeights().length];
+            for (int i = 0; i < expected.length; ++i) {
+                expected[i] = kernel.getIntegerWeights()[i];
+            }
+            assertArrayEquals(expected, product(integerKernel), name);
+        }
+    }
+
+    @Test
+    void factorsReproduceWeights() {
+        for (String name : registry.getNames()) {
+            Kernel kernel = registry.get(name);
+            assertTrue(kernel.getRank() > 0, name);
+            assertClose(kernel.getWeights(), product(kernel), name);
+        }
+        Kernel laplacian = registry.get(EdgeDetection.LAPLACIAN_OF_GAUSSIAN);
+        assertEquals(2, laplacian.getRank());
+    }
+
+    @Test
+    void normalizationIsAppliedToHorizontalVectors() {
+        Kernel gaussian = Kernel.of(new double[][]{{1, 2, 1}, {2, 4, 2}, {1, 2, 1}}, 1.0 / 16);
+        assertEquals(1, gaussian.getRank());
+        assertArrayEquals(new float[]{1, 2, 1}, gaussian.getVertical(0));
+        assertArrayEquals(new float[]{1f / 16, 2f / 16, 1f / 16}, gaussian.getHorizontal(0));
+        // jądro rzędu 2 o wagach niecałkowitych: współczynnik trafia tylko do wektorów poziomych
+        double[] u = {1, 2, 3, 2, 1};
+        double[] v = {0.5, 1.5, 2.5, 1.5, 0.5};
+        double[] p = {1, 0.5, -1, 0.5, 1};
+        double[] q = {0.25, 0.5, 0.25, 0.5, 0.25};
+        double[][] rows = new double[5][5];
+        for (int i = 0; i < 5; ++i) {
+            for (int j = 0; j < 5; ++j) {
+                rows[i][j] = u[i] * v[j] + p[i] * q[j];
+            }
+        }
+        Kernel unscaled = Kernel.of(rows, 1);
+        Kernel scaled = Kernel.of(rows, 0.25);
+        assertEquals(2, scaled.getRank());
+        for (int factor = 0; factor < scaled.getRank(); ++factor) {
+            assertArrayEquals(unscaled.getVertical(factor), scaled.getVertical(factor), 1e-6f);
+            float[] expected = unscaled.getHorizontal(factor).clone();
+            for (int i = 0; i < expected.length; ++i) {
+                expected[i] *= 0.25f;
+            }
+            assertArrayEquals(expected, scaled.getHorizontal(factor), 1e-6f);
+        }
+        assertClose(scaled.getWeights(), product(scaled), "jądro rzędu 2");
+    }
+
+    @Test
+    void gaussianKernelIsConvolvedInTwoDimensions() {
+        assertEquals(0, Canny.gaussian.getRank());
+        float[] expected = new float[25];
+        for (int i = 0; i < 5; ++i) {
+            for (int j = 0; j < 5; ++j) {
+                expected[i * 5 + j] = (float) Canny.gaussianKernel[i][j];
+            }
+        }
+        assertArrayEquals(expected, Canny.gaussian.getWeights());
+    }
+
+    /**
+     * Metoda składa wagi jądra z jego czynników: sumę iloczynów wag pionowych i poziomych
+     */
+    static float[] product(Kernel kernel) {
+        int width = kernel.getWidth();
+        float[] weights = new float[width * kernel.getHeight()];
+        for (int factor = 0; factor < kernel.getRank(); ++factor) {
+            float[] horizontal = kernel.getHorizontal(factor);
+            float[] vertical = kernel.getVertical(factor);
+            for (int i = 0; i < vertical.length; ++i) {
+                for (int j = 0; j < width; ++j) {
+                    weights[i * width + j] += vertical[i] * horizontal[j];
+                }
+            }
+        }
+        return weights;
+    }
+
+    private static void assertClose(float[] expected, float[] actual, String message) {
+        float max = 0;
+        for (float value : expected) {
+            max = Math.max(max, Math.abs(value));
+        }
+        assertEquals(expected.length, actual.length, message);
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i], actual[i], 1e-5f * max, message + ": waga " + i);
+        }
+    }
+
+    private static void assertIntegers(float[] values, String message) {
+        for (float value : values) {
+            assertEquals(Math.rint(value), value, message);
+        }
+    }
+}
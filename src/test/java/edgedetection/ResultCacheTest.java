@@ -0,0 +1,141 @@
+package edgedetection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Testy pamięci podręcznej wyników: rozliczania bajtów, usuwania najdawniej używanych wyników i poziomu dyskowego
+ * @author Aneta Bień, Anna Plęs
+ */
+class ResultCacheTest {
+    private static final int SIZE = 80;
+    /** Rozmiar wpisu mapy binarnej SIZE x SIZE: bit na piksel i narzut wpisu */
+    private static final long BINARY_ENTRY = SIZE * SIZE / 8 + 128;
+    /** Nazwa filtru w kluczu; w pliku zajmuje jeden bajt */
+    private static final String FILTER = "f";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        ResultCache cache = new ResultCache(3 * BINARY_ENTRY);
+        EdgeMap[] maps = new EdgeMap[4];
+        for (int i = 0; i < 3; ++i) {
+            maps[i] = binaryMap(SIZE, SIZE, i);
+            cache.put(key(i), maps[i]);
+        }
+        assertEquals(3, cache.size());
+        assertEquals(3 * BINARY_ENTRY, cache.getBytes());
+        TestImages.assertSameEdges(maps[0], cache.get(key(0), null), "wynik 0");
+        maps[3] = binaryMap(SIZE, SIZE, 3);
+        cache.put(key(3), maps[3]);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3 * BINARY_ENTRY, cache.getBytes());
+        assertNull(cache.get(key(1), null));
+        for (int i : new int[]{0, 2, 3}) {
+            TestImages.assertSameEdges(maps[i], cache.get(key(i), null), "wynik " + i);
+        }
+        assertEquals(4, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        // zastąpienie wyniku pod tym samym kluczem nie zmienia liczby bajtów
+        cache.put(key(3), binaryMap(SIZE, SIZE, 4));
+        assertEquals(3 * BINARY_ENTRY, cache.getBytes());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void entryLargerThanLimitIsNotStored() {
+        ResultCache cache = new ResultCache(3 * BINARY_ENTRY);
+        cache.put(key(0), binaryMap(SIZE, SIZE, 0));
+        cache.put(key(1), grayMap(SIZE, SIZE, 1));
+        assertEquals(1, cache.size());
+        assertEquals(BINARY_ENTRY, cache.getBytes());
+        assertEquals(0, cache.getEvictions());
+        assertNull(cache.get(key(1), null));
+    }
+
+    @Test
+    void diskTierSurvivesNewCache() {
+        // wymiary, dla których liczba pikseli nie jest wielokrotnością 8
+        EdgeMap binary = binaryMap(13, 7, 0);
+        EdgeMap gray = grayMap(13, 7, 1);
+        ResultCache writer = new ResultCache(ResultCache.DEFAULT_MAX_BYTES, directory.toFile());
+        writer.put(key(0), binary);
+        writer.put(key(1), gray);
+        ResultCache reader = new ResultCache(ResultCache.DEFAULT_MAX_BYTES, directory.toFile());
+        TestImages.assertSameEdges(binary, reader.get(key(0), null), "mapa binarna");
+        TestImages.assertSameEdges(gray, reader.get(key(1), null), "mapa w skali szarości");
+        assertEquals(2, reader.getDiskHits());
+        TestImages.assertSameEdges(binary, reader.get(key(0), null), "mapa binarna w pamięci");
+        assertEquals(1, reader.getHits());
+        assertNull(reader.get(key(2), null));
+        assertEquals(1, reader.getMisses());
+    }
+
+    @Test
+    void inconsistentFileIsMiss() throws IOException {
+        new ResultCache(ResultCache.DEFAULT_MAX_BYTES, directory.toFile()).put(key(0), binaryMap(13, 7, 0));
+        Path file = single(directory);
+        byte[] original = Files.readAllBytes(file);
+        // nagłówek, klucz (znacznik, skrót, rozmiar, długość i bajty nazwy filtru, dwa progi), potem szerokość mapy
+        int widthOffset = 4 + 1 + 8 + 8 + 4 + FILTER.length() + 8 + 8;
+        assertEquals(13, ByteBuffer.wrap(original).getInt(widthOffset));
+        for (int width : new int[]{0, -13, 14, 1 << 20}) {
+            byte[] corrupted = original.clone();
+            ByteBuffer.wrap(corrupted).putInt(widthOffset, width);
+            Files.write(file, corrupted);
+            assertNull(new ResultCache(ResultCache.DEFAULT_MAX_BYTES, directory.toFile()).get(key(0), null),
+                    "szerokość " + width);
+        }
+        Files.write(file, Arrays.copyOf(original, original.length - 1));
+        assertNull(new ResultCache(ResultCache.DEFAULT_MAX_BYTES, directory.toFile()).get(key(0), null), "plik obcięty");
+    }
+
+    private static ResultCache.Key key(int content) {
+        return ResultCache.key(new byte[]{(byte) content}, FILTER, 1, 2);
+    }
+
+    /**
+     * Metoda tworzy losową mapę o jasnościach 0 i 255, przechowywaną jako bit na piksel
+     */
+    private static EdgeMap binaryMap(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] pixels = new byte[width * height];
+        for (int i = 0; i < pixels.length; ++i) {
+            pixels[i] = random.nextBoolean() ? Hysteresis.STRONG : 0;
+        }
+        return new EdgeMap(width, height, pixels);
+    }
+
+    /**
+     * Metoda tworzy losową mapę o dowolnych jasnościach, przechowywaną jako bajt na piksel
+     */
+    private static EdgeMap grayMap(int width, int height, long seed) {
+        byte[] pixels = new byte[width * height];
+        new Random(seed).nextBytes(pixels);
+        pixels[0] = 7;
+        return new EdgeMap(width, height, pixels);
+    }
+
+    private static Path single(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> list = files.collect(Collectors.toList());
+            assertEquals(1, list.size());
+            return list.get(0);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package edgedetection;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Testy równoważności przetwarzania pasami z pliku i przetwarzania całego obrazu w pamięci
+ * @author Aneta Bień, Anna Plęs
+ */
+class StreamingEdgeDetectionTest {
+    private static final BufferedImage IMAGE = TestImages.create(1L);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void streamingOutputEqualsInMemoryOutput() throws IOException {
+        File input = directory.resolve("input.png").toFile();
+        ImageIO.write(IMAGE, "png", input);
+        EdgeDetection edgeDetection = new EdgeDetection();
+        List<String> filters = new ArrayList<>(edgeDetection.getFilterRegistry().getNames());
+        filters.add(EdgeDetection.CANNY_EDGE_DETECTION);
+        for (String filter : filters) {
+            EdgeMap expected = edgeDetection.computeEdges(IMAGE, filter, EdgeDetection.LOWER_THRESHOLD,
+                    EdgeDetection.HIGHER_THRESHOLD);
+            for (int stripRows : new int[]{TestImages.HEIGHT, 32, 5}) {
+                StreamingEdgeDetection streaming = new StreamingEdgeDetection(filter, EdgeDetection.LOWER_THRESHOLD,
+                        EdgeDetection.HIGHER_THRESHOLD, stripRows, StreamingEdgeDetection.DEFAULT_HYSTERESIS_ROWS, 3);
+                File output = directory.resolve("output.pgm").toFile();
+                long pixels = streaming.process(input, output, EdgeEncoders.pgm());
+                assertEquals((long) TestImages.WIDTH * TestImages.HEIGHT, pixels);
+                TestImages.assertSameEdges(expected, readPgm(output), filter + ", pas " + stripRows);
+            }
+        }
+    }
+
+    /**
+     * Metoda czyta plik PGM (P5) zapisany koderem {@link EdgeEncoders#pgm()}
+     */
+    private static EdgeMap readPgm(File file) throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        int position = 0;
+        String[] header = new String[4];
+        for (int i = 0; i < header.length; ++i) {
+            while (Character.isWhitespace(data[position])) {
+                ++position;
+            }
+            int start = position;
+            while (!Character.isWhitespace(data[position])) {
+                ++position;
+            }
+            header[i] = new String(data, start, position - start, StandardCharsets.US_ASCII);
+        }
+        ++position;
+        assertEquals("P5", header[0]);
+        assertEquals("255", header[3]);
+        int width = Integer.parseInt(header[1]);
+        int height = Integer.parseInt(header[2]);
+        return new EdgeMap(width, height, Arrays.copyOfRange(data, position, position + width * height));
+    }
+}
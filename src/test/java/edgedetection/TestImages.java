@@ -0,0 +1,127 @@
+package edgedetection;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Klasa tworząca małe, powtarzalne obrazy testowe: gradient tła, figury o ostrych i rozmytych krawędziach oraz szum
+ * @author Aneta Bień, Anna Plęs
+ */
+final class TestImages {
+    /** Szerokość obrazu testowego */
+    static final int WIDTH = 160;
+    /** Wysokość obrazu testowego */
+    static final int HEIGHT = 120;
+
+    private TestImages() {
+    }
+
+    /**
+     * Metoda tworzy obraz testowy TYPE_INT_RGB o rozmiarze {@value #WIDTH}x{@value #HEIGHT}
+     * @param seed ziarno generatora; to samo ziarno daje ten sam obraz
+     * @return obraz testowy
+     */
+    static BufferedImage create(long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.DARK_GRAY, WIDTH, HEIGHT, Color.LIGHT_GRAY));
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        for (int i = 0; i < 20; ++i) {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, random.nextBoolean()
+                    ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            int x = random.nextInt(WIDTH);
+            int y = random.nextInt(HEIGHT);
+            int w = 4 + random.nextInt(WIDTH / 3);
+            int h = 4 + random.nextInt(HEIGHT / 3);
+            switch (random.nextInt(3)) {
+                case 0:
+                    graphics.fillOval(x, y, w, h);
+                    break;
+                case 1:
+                    graphics.fillRect(x, y, w, h);
+                    break;
+                default:
+                    graphics.setStroke(new BasicStroke(1 + random.nextInt(4)));
+                    graphics.drawLine(x, y, x + w - WIDTH / 6, y + h - HEIGHT / 6);
+            }
+        }
+        graphics.dispose();
+        addNoise(image, random);
+        return image;
+    }
+
+    /**
+     * Metoda tworzy kopię obrazu, w której zmieniony jest tylko prostokąt, tak jak w kolejnej klatce nagrania
+     * @param frame poprzednia klatka
+     * @param seed ziarno generatora
+     * @return nowa klatka
+     */
+    static BufferedImage nextFrame(BufferedImage frame, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.drawImage(frame, 0, 0, null);
+        graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+        graphics.fillRect(random.nextInt(frame.getWidth()), random.nextInt(frame.getHeight()), 10 + random.nextInt(30),
+                10 + random.nextInt(30));
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Metoda zwraca fragment mapy krawędzi
+     * @param edges mapa krawędzi
+     * @param region prostokąt leżący w mapie
+     * @return mapa krawędzi o wymiarach prostokąta
+     */
+    static EdgeMap crop(EdgeMap edges, Rectangle region) {
+        byte[] pixels = new byte[region.width * region.height];
+        for (int y = 0; y < region.height; ++y) {
+            System.arraycopy(edges.getPixels(), (region.y + y) * edges.getWidth() + region.x, pixels, y * region.width,
+                    region.width);
+        }
+        return new EdgeMap(region.width, region.height, pixels);
+    }
+
+    /**
+     * Metoda sprawdza, czy mapy krawędzi mają te same wymiary i piksele
+     * @param expected oczekiwana mapa krawędzi
+     * @param actual sprawdzana mapa krawędzi
+     * @param message opis porównywanych wyników
+     */
+    static void assertSameEdges(EdgeMap expected, EdgeMap actual, String message) {
+        assertEquals(expected.getWidth(), actual.getWidth(), message + ": szerokość");
+        assertEquals(expected.getHeight(), actual.getHeight(), message + ": wysokość");
+        assertArrayEquals(expected.getPixels(), actual.getPixels(), message);
+    }
+
+    private static void addNoise(BufferedImage image, Random random) {
+        int[] row = new int[WIDTH];
+        for (int y = 0; y < HEIGHT; ++y) {
+            image.getRGB(0, y, WIDTH, 1, row, 0, WIDTH);
+            for (int x = 0; x < WIDTH; ++x) {
+                int noise = random.nextInt(9) - 4;
+                int r = clamp(((row[x] >> 16) & 0xFF) + noise);
+                int g = clamp(((row[x] >> 8) & 0xFF) + noise);
+                int b = clamp((row[x] & 0xFF) + noise);
+                row[x] = (r << 16) | (g << 8) | b;
+            }
+            image.setRGB(0, y, WIDTH, 1, row, 0, WIDTH);
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
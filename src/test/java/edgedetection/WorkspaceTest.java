@@ -0,0 +1,40 @@
+package edgedetection;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Testy zwalniania buforów obszarów roboczych wątków
+ * @author Aneta Bień, Anna Plęs
+ */
+class WorkspaceTest {
+
+    @Test
+    void clearAllReplacesWorkspacesOfOtherThreads() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Workspace before = executor.submit(Workspace::current).get();
+            assertSame(before, executor.submit(Workspace::current).get());
+            Workspace.clearAll();
+            assertNotSame(before, executor.submit(Workspace::current).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void clearAllKeepsAcquiredWorkspace() {
+        Workspace workspace = Workspace.acquire();
+        try {
+            Workspace.clearAll();
+            assertSame(workspace, Workspace.current());
+        } finally {
+            workspace.release();
+        }
+    }
+}